@@ -20,8 +20,8 @@ for SERVICE in "${SERVICES[@]}"; do
   # Enter service directory
   cd "$SERVICE" || { echo "Directory $SERVICE not found! Skipping..."; continue; }
 
-  # Build
-  docker buildx build -t "$USERNAME/$SERVICE" .
+  # Build, with the shared threadly-commons module as an extra build context
+  docker buildx build --build-context threadly-commons=../threadly-commons -t "$USERNAME/$SERVICE" .
 
   # Push
   docker push "$USERNAME/$SERVICE"
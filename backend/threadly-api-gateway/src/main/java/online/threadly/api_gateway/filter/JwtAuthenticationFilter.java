@@ -1,5 +1,8 @@
 package online.threadly.api_gateway.filter;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import online.threadly.api_gateway.service.JwtService;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
@@ -14,9 +17,11 @@ import reactor.core.publisher.Mono;
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
 
     private final JwtService jwtService;
+    private final ObservationRegistry observationRegistry;
 
-    public JwtAuthenticationFilter(JwtService jwtService) {
+    public JwtAuthenticationFilter(JwtService jwtService, ObservationRegistry observationRegistry) {
         this.jwtService = jwtService;
+        this.observationRegistry = observationRegistry;
     }
 
     @Override
@@ -34,28 +39,35 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         }
 
         String token = authorizationHeader.substring(7);
-        if (!jwtService.validateToken(token)) {
-            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
-            return exchange.getResponse().setComplete();
-        }
 
-        // Derive X-USER-ID from the JWT and enforce it on outgoing request to
-        // downstream services
-        String userId = jwtService.extractUserId(token);
+        // the server request observation lives in the Reactor context, not on this thread
+        return Mono.deferContextual(context -> {
+            Observation observation = Observation.createNotStarted("gateway.jwt.validation", observationRegistry)
+                    .parentObservation(context.getOrDefault(ObservationThreadLocalAccessor.KEY, null));
+            boolean valid = observation.observe(() -> jwtService.validateToken(token));
+            if (!valid) {
+                exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+                return exchange.getResponse().setComplete();
+            }
+
+            // Derive X-USER-ID from the JWT and enforce it on outgoing request to
+            // downstream services
+            String userId = jwtService.extractUserId(token);
 
-        ServerWebExchange mutatedExchange = exchange.mutate()
-                .request(builder -> {
-                    // Remove any client-sent X-USER-ID and set our trusted value
-                    builder.headers(httpHeaders -> {
-                        httpHeaders.remove("X-USER-ID");
-                        if (userId != null) {
-                            httpHeaders.add("X-USER-ID", userId);
-                        }
-                    });
-                })
-                .build();
+            ServerWebExchange mutatedExchange = exchange.mutate()
+                    .request(builder -> {
+                        // Remove any client-sent X-USER-ID and set our trusted value
+                        builder.headers(httpHeaders -> {
+                            httpHeaders.remove("X-USER-ID");
+                            if (userId != null) {
+                                httpHeaders.add("X-USER-ID", userId);
+                            }
+                        });
+                    })
+                    .build();
 
-        return chain.filter(mutatedExchange);
+            return chain.filter(mutatedExchange);
+        });
     }
 
     @Override
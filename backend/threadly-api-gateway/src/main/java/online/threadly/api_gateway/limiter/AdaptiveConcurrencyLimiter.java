@@ -0,0 +1,127 @@
+package online.threadly.api_gateway.limiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit for one downstream service that follows its latency, in the
+ * style of Netflix's gradient limiter. Every window of round trips, the ratio of
+ * the long-term average RTT to the window's RTT says whether requests are
+ * queueing: below 1 the limit shrinks proportionally, otherwise it probes upwards
+ * by sqrt(limit). Timeouts and 503/504 answers cut it multiplicatively.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    // the long-term RTT is the no-queueing baseline: it follows a faster service within seconds, but
+    // rises over minutes, or sustained queueing would become the new normal and the limit would ratchet up
+    private static final double LONG_RTT_WEIGHT_DOWN = 0.05;
+    private static final double LONG_RTT_WEIGHT_UP = 0.001;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // guarded by this
+    private long windowStartNanos;
+    private long windowRttSumNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double rttTolerance, LongSupplier nanoClock) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.nanoClock = nanoClock;
+        this.windowStartNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Admits a request if the in-flight count is below this priority's share of
+     * the current limit.
+     */
+    public boolean tryAcquire(Priority priority) {
+        int ceiling = Math.max(1, (int) (limit * priority.shareOfLimit()));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= ceiling) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        onSample(rttNanos, dropped, inFlightBefore, nanoClock.getAsLong());
+    }
+
+    /**
+     * Releases a request whose round trip says nothing about the service, such
+     * as one the client cancelled.
+     */
+    public void releaseWithoutSample() {
+        inFlight.decrementAndGet();
+    }
+
+    public double limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onSample(long rttNanos, boolean dropped, int inFlightBefore, long nowNanos) {
+        windowRttSumNanos += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+        windowDropped |= dropped;
+        if (nowNanos - windowStartNanos < WINDOW_NANOS || windowSamples < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+
+        updateLimit((double) windowRttSumNanos / windowSamples, windowDropped, windowMaxInFlight);
+        windowStartNanos = nowNanos;
+        windowRttSumNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    private void updateLimit(double shortRttNanos, boolean dropped, int maxInFlight) {
+        if (longRttNanos == 0) {
+            longRttNanos = shortRttNanos;
+        } else {
+            double weight = shortRttNanos < longRttNanos ? LONG_RTT_WEIGHT_DOWN : LONG_RTT_WEIGHT_UP;
+            longRttNanos = longRttNanos * (1 - weight) + shortRttNanos * weight;
+        }
+
+        double current = limit;
+        double target;
+        if (dropped) {
+            target = current * BACKOFF;
+        } else if (maxInFlight < current / 2) {
+            // demand is far below the limit, so this window says nothing about where the limit should be
+            return;
+        } else {
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+            target = current * gradient + Math.sqrt(current);
+        }
+        double smoothed = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+}
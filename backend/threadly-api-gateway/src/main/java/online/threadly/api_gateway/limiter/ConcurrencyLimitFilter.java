@@ -0,0 +1,120 @@
+package online.threadly.api_gateway.limiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * One {@link AdaptiveConcurrencyLimiter} per lb:// service. A request over its
+ * route's priority share of the limit is answered 503 straight away instead of
+ * joining the downstream queue, so under overload the service keeps serving the
+ * requests it admits within their timeouts.
+ */
+@Component
+public class ConcurrencyLimitFilter implements GlobalFilter, Ordered {
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ConcurrencyLimitFilter(@Value("${threadly.concurrency-limit.enabled:true}") boolean enabled,
+                                  @Value("${threadly.concurrency-limit.initial-limit:50}") int initialLimit,
+                                  @Value("${threadly.concurrency-limit.min-limit:8}") int minLimit,
+                                  @Value("${threadly.concurrency-limit.max-limit:500}") int maxLimit,
+                                  @Value("${threadly.concurrency-limit.rtt-tolerance:1.5}") double rttTolerance,
+                                  MeterRegistry meterRegistry) {
+        this(enabled, initialLimit, minLimit, maxLimit, rttTolerance, meterRegistry, System::nanoTime);
+    }
+
+    ConcurrencyLimitFilter(boolean enabled, int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                           MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (!enabled || route == null || !"lb".equals(route.getUri().getScheme())) {
+            return chain.filter(exchange);
+        }
+
+        String serviceId = route.getUri().getHost();
+        Priority priority = Priority.of(route);
+        AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(serviceId, this::newLimiter);
+        if (!limiter.tryAcquire(priority)) {
+            rejections(serviceId, priority).increment();
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return exchange.getResponse().setComplete();
+        }
+
+        long start = nanoClock.getAsLong();
+        return chain.filter(exchange).doFinally(signal -> {
+            if (signal == SignalType.CANCEL) {
+                limiter.releaseWithoutSample();
+                return;
+            }
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            boolean dropped = signal == SignalType.ON_ERROR
+                    || (status != null && (status.value() == 503 || status.value() == 504));
+            limiter.release(nanoClock.getAsLong() - start, dropped);
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        // after authentication, before an instance is chosen
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 1;
+    }
+
+    private AdaptiveConcurrencyLimiter newLimiter(String serviceId) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, rttTolerance, nanoClock);
+        Gauge.builder("gateway.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit of a downstream service")
+                .tag("service", serviceId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .tag("service", serviceId)
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    private Counter rejections(String serviceId, Priority priority) {
+        return Counter.builder("gateway.concurrency.rejected")
+                .description("Requests shed by the adaptive concurrency limiter")
+                .tag("service", serviceId)
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry);
+    }
+}
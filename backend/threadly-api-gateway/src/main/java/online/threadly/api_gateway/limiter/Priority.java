@@ -0,0 +1,57 @@
+package online.threadly.api_gateway.limiter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Priority class of a route, from its {@code priority} metadata. Each class may
+ * use only part of a service's concurrency limit, so as the limit shrinks under
+ * load the lower classes hit their ceiling, and are shed, first.
+ */
+public enum Priority {
+
+    // sign-in, cart and checkout: may use the whole limit
+    CRITICAL(1.0),
+    // anything not marked
+    NORMAL(0.8),
+    // catalog browsing: the first to go
+    SHEDDABLE(0.5);
+
+    public static final String METADATA_KEY = "priority";
+
+    private static final Logger log = LoggerFactory.getLogger(Priority.class);
+    private static final Set<String> WARNED_ROUTES = ConcurrentHashMap.newKeySet();
+
+    private final double shareOfLimit;
+
+    Priority(double shareOfLimit) {
+        this.shareOfLimit = shareOfLimit;
+    }
+
+    double shareOfLimit() {
+        return shareOfLimit;
+    }
+
+    // an unknown value is a configuration mistake: the route is served as NORMAL rather than failing its requests
+    public static Priority of(Route route) {
+        Object value = route.getMetadata().get(METADATA_KEY);
+        if (value == null) {
+            return NORMAL;
+        }
+        String name = value.toString().trim().toUpperCase(Locale.ROOT);
+        for (Priority priority : values()) {
+            if (priority.name().equals(name)) {
+                return priority;
+            }
+        }
+        if (WARNED_ROUTES.add(route.getId() + "=" + value)) {
+            log.warn("Route {} has unknown priority '{}', treating it as normal", route.getId(), value);
+        }
+        return NORMAL;
+    }
+}
@@ -0,0 +1,115 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What the gateway has observed of one service instance: a peak-sensitive,
+ * time-decayed EWMA of response time, the requests currently in flight, and the
+ * consecutive-failure count that drives outlier ejection.
+ */
+final class InstanceStatistics {
+
+    private static final double MIN_SLOW_START_WEIGHT = 0.1;
+    // repeat offenders stay out longer, up to this many base ejection times
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+    private final long firstSeenNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // guarded by this
+    private double ewmaNanos;
+    private long ewmaUpdatedNanos;
+    private int consecutiveFailures;
+    private int ejections;
+    private long ejectedUntilNanos;
+
+    InstanceStatistics(long nowNanos, double initialEwmaNanos) {
+        this.firstSeenNanos = nowNanos;
+        this.ewmaNanos = initialEwmaNanos;
+        this.ewmaUpdatedNanos = nowNanos;
+    }
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void requestCancelled() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Records a finished request and returns true when it was the failure that
+     * crossed the consecutive-failure threshold; the caller decides whether the
+     * instance may actually be ejected.
+     */
+    synchronized boolean requestFinished(long latencyNanos, boolean failed, long nowNanos, long decayNanos,
+                                         int failureThreshold) {
+        inFlight.decrementAndGet();
+        if (failed) {
+            // a fast failure must not make a broken instance look attractive, so failures only ever raise the EWMA
+            if (latencyNanos > decayedEwma(nowNanos, decayNanos)) {
+                ewmaNanos = latencyNanos;
+                ewmaUpdatedNanos = nowNanos;
+            }
+            return ++consecutiveFailures >= failureThreshold && !isEjected(nowNanos);
+        }
+        observe(latencyNanos, nowNanos, decayNanos);
+        consecutiveFailures = 0;
+        return false;
+    }
+
+    synchronized void eject(long nowNanos, long baseEjectionNanos) {
+        ejections = Math.min(ejections + 1, MAX_EJECTION_MULTIPLIER);
+        ejectedUntilNanos = nowNanos + baseEjectionNanos * ejections;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void forgiveEjections(long nowNanos, long baseEjectionNanos) {
+        if (ejections > 0 && nowNanos - ejectedUntilNanos > baseEjectionNanos) {
+            ejections = 0;
+        }
+    }
+
+    synchronized boolean isEjected(long nowNanos) {
+        return nowNanos < ejectedUntilNanos;
+    }
+
+    synchronized int ejections() {
+        return ejections;
+    }
+
+    /**
+     * Expected cost of sending one more request here: decayed EWMA times
+     * (in-flight + 1), inflated while the instance is still warming up.
+     */
+    synchronized double cost(long nowNanos, long decayNanos, long slowStartNanos) {
+        double latency = decayedEwma(nowNanos, decayNanos) + 1;
+        return latency * (inFlight.get() + 1) / slowStartWeight(nowNanos, slowStartNanos);
+    }
+
+    synchronized double decayedEwma(long nowNanos, long decayNanos) {
+        long elapsed = Math.max(0, nowNanos - ewmaUpdatedNanos);
+        // an instance nobody picks drifts back towards zero so that it gets probed again
+        return ewmaNanos * Math.exp(-(double) elapsed / decayNanos);
+    }
+
+    private void observe(long latencyNanos, long nowNanos, long decayNanos) {
+        long elapsed = Math.max(0, nowNanos - ewmaUpdatedNanos);
+        if (latencyNanos > ewmaNanos) {
+            // peak-sensitive: a pause shows up at once, recovery is smoothed
+            ewmaNanos = latencyNanos;
+        } else {
+            double weight = Math.exp(-(double) elapsed / decayNanos);
+            ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+        }
+        ewmaUpdatedNanos = nowNanos;
+    }
+
+    private double slowStartWeight(long nowNanos, long slowStartNanos) {
+        long age = nowNanos - firstSeenNanos;
+        if (slowStartNanos <= 0 || age >= slowStartNanos) {
+            return 1;
+        }
+        return Math.max(MIN_SLOW_START_WEIGHT, (double) age / slowStartNanos);
+    }
+}
@@ -0,0 +1,108 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power-of-two-choices over {@link ServiceStatistics#cost}: picks two random
+ * instances that are not ejected and sends the request to the cheaper one, so a
+ * GC-pausing or overloaded instance quickly stops getting its round-robin share
+ * without the herding a plain least-latency pick causes.
+ * <p>
+ * Only routes with {@code metadata: load-balancer: latency-aware} are balanced
+ * this way; every other request for the service is handed to Spring Cloud's
+ * round-robin balancer.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    public static final String METADATA_KEY = "load-balancer";
+    public static final String LATENCY_AWARE = "latency-aware";
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final ServiceStatistics statistics;
+    private final RoundRobinLoadBalancer roundRobin;
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                    String serviceId, LoadBalancerStatistics statistics) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.statistics = statistics.forService(serviceId);
+        this.roundRobin = new RoundRobinLoadBalancer(serviceInstanceListSupplierProvider, serviceId);
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        if (!isLatencyAware(request)) {
+            return roundRobin.choose(request);
+        }
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> {
+            Response<ServiceInstance> response = choose(instances);
+            if (supplier instanceof SelectedInstanceCallback callback && response.hasServer()) {
+                callback.selectedServiceInstance(response.getServer());
+            }
+            return response;
+        });
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        statistics.retain(instances);
+
+        List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!statistics.isEjected(instance)) {
+                candidates.add(instance);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // ejection is capped, but instances can also disappear; anything beats no answer
+            candidates = instances;
+        }
+        if (candidates.size() == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return new DefaultResponse(statistics.cost(a) <= statistics.cost(b) ? a : b);
+    }
+
+    private static boolean isLatencyAware(Request request) {
+        if (!(request.getContext() instanceof RequestDataContext context)) {
+            return false;
+        }
+        RequestData requestData = context.getClientRequest();
+        if (requestData == null || requestData.getAttributes() == null) {
+            return false;
+        }
+        Object route = requestData.getAttributes().get(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route instanceof Route gatewayRoute && LATENCY_AWARE.equals(gatewayRoute.getMetadata().get(METADATA_KEY));
+    }
+}
@@ -0,0 +1,13 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Every lb:// service gets {@link LatencyAwareLoadBalancer}; which strategy a
+ * request actually uses is decided per route from its metadata.
+ */
+@Configuration
+@LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerConfiguration.class)
+public class LoadBalancerConfiguration {
+}
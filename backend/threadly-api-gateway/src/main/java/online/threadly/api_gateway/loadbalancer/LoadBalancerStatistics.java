@@ -0,0 +1,80 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-instance latency and failure statistics for every load-balanced service,
+ * fed by {@link LoadBalancerStatisticsFilter} and read by
+ * {@link LatencyAwareLoadBalancer}. Lives in the gateway's own context so the
+ * per-service load-balancer contexts all see the same numbers.
+ */
+@Component
+public class LoadBalancerStatistics {
+
+    private final long ewmaDecayNanos;
+    private final long slowStartNanos;
+    private final int consecutiveFailures;
+    private final long baseEjectionNanos;
+    private final int maxEjectionPercent;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, ServiceStatistics> services = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LoadBalancerStatistics(@Value("${threadly.load-balancer.ewma-decay:10s}") Duration ewmaDecay,
+                                  @Value("${threadly.load-balancer.slow-start-window:30s}") Duration slowStartWindow,
+                                  @Value("${threadly.load-balancer.ejection.consecutive-failures:5}") int consecutiveFailures,
+                                  @Value("${threadly.load-balancer.ejection.base-time:30s}") Duration baseEjectionTime,
+                                  @Value("${threadly.load-balancer.ejection.max-percent:50}") int maxEjectionPercent) {
+        this(ewmaDecay, slowStartWindow, consecutiveFailures, baseEjectionTime, maxEjectionPercent, System::nanoTime);
+    }
+
+    LoadBalancerStatistics(Duration ewmaDecay, Duration slowStartWindow, int consecutiveFailures,
+                           Duration baseEjectionTime, int maxEjectionPercent, LongSupplier nanoClock) {
+        this.ewmaDecayNanos = ewmaDecay.toNanos();
+        this.slowStartNanos = slowStartWindow.toNanos();
+        this.consecutiveFailures = consecutiveFailures;
+        this.baseEjectionNanos = baseEjectionTime.toNanos();
+        this.maxEjectionPercent = maxEjectionPercent;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Service ids are matched case-insensitively: routes say threadly-product,
+     * Eureka reports THREADLY-PRODUCT.
+     */
+    public ServiceStatistics forService(String serviceId) {
+        return services.computeIfAbsent(serviceId.toLowerCase(Locale.ROOT), id -> new ServiceStatistics(id, this));
+    }
+
+    public long nanoTime() {
+        return nanoClock.getAsLong();
+    }
+
+    long ewmaDecayNanos() {
+        return ewmaDecayNanos;
+    }
+
+    long slowStartNanos() {
+        return slowStartNanos;
+    }
+
+    int consecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    long baseEjectionNanos() {
+        return baseEjectionNanos;
+    }
+
+    int maxEjectionPercent() {
+        return maxEjectionPercent;
+    }
+}
@@ -0,0 +1,58 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Runs right after the instance has been chosen and reports in-flight count,
+ * response time and 5xx/connection failures of every load-balanced request.
+ * A filter rather than a LoadBalancerLifecycle because the gateway does not tell
+ * lifecycles about cancelled exchanges, which would leak in-flight counts.
+ */
+@Component
+public class LoadBalancerStatisticsFilter implements GlobalFilter, Ordered {
+
+    private final LoadBalancerStatistics statistics;
+
+    public LoadBalancerStatisticsFilter(LoadBalancerStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> loadBalancerResponse =
+                exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (loadBalancerResponse == null || !loadBalancerResponse.hasServer()) {
+            return chain.filter(exchange);
+        }
+
+        ServiceInstance instance = loadBalancerResponse.getServer();
+        ServiceStatistics service = statistics.forService(instance.getServiceId());
+        service.requestStarted(instance);
+        long start = statistics.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            if (signal == SignalType.CANCEL) {
+                service.requestCancelled(instance);
+                return;
+            }
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            boolean failed = signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError());
+            service.requestFinished(instance, statistics.nanoTime() - start, failed);
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
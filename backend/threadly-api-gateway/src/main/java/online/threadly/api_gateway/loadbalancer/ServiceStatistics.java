@@ -0,0 +1,97 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Instance statistics of one service, shared by every route that points at it,
+ * whichever load-balancing strategy the route uses.
+ */
+public final class ServiceStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceStatistics.class);
+
+    private final String serviceId;
+    private final LoadBalancerStatistics settings;
+    private final ConcurrentMap<String, InstanceStatistics> instances = new ConcurrentHashMap<>();
+
+    ServiceStatistics(String serviceId, LoadBalancerStatistics settings) {
+        this.serviceId = serviceId;
+        this.settings = settings;
+    }
+
+    public void requestStarted(ServiceInstance instance) {
+        statistics(instance).requestStarted();
+    }
+
+    public void requestCancelled(ServiceInstance instance) {
+        statistics(instance).requestCancelled();
+    }
+
+    public void requestFinished(ServiceInstance instance, long latencyNanos, boolean failed) {
+        InstanceStatistics statistics = statistics(instance);
+        long now = settings.nanoTime();
+        boolean crossedThreshold = statistics.requestFinished(latencyNanos, failed, now,
+                settings.ewmaDecayNanos(), settings.consecutiveFailures());
+        if (!failed) {
+            statistics.forgiveEjections(now, settings.baseEjectionNanos());
+        } else if (crossedThreshold && mayEject(now)) {
+            statistics.eject(now, settings.baseEjectionNanos());
+            log.warn("Ejecting {} instance {} after {} consecutive failures (ejection #{})",
+                    serviceId, key(instance), settings.consecutiveFailures(), statistics.ejections());
+        }
+    }
+
+    public boolean isEjected(ServiceInstance instance) {
+        return statistics(instance).isEjected(settings.nanoTime());
+    }
+
+    public double cost(ServiceInstance instance) {
+        return statistics(instance).cost(settings.nanoTime(), settings.ewmaDecayNanos(), settings.slowStartNanos());
+    }
+
+    /**
+     * Drops statistics of instances that are no longer registered.
+     */
+    void retain(List<ServiceInstance> current) {
+        if (current.size() == instances.size()) {
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        for (ServiceInstance instance : current) {
+            keys.add(key(instance));
+        }
+        instances.keySet().retainAll(keys);
+    }
+
+    private boolean mayEject(long now) {
+        long ejected = instances.values().stream().filter(statistics -> statistics.isEjected(now)).count();
+        return (ejected + 1) * 100 <= (long) settings.maxEjectionPercent() * instances.size();
+    }
+
+    private InstanceStatistics statistics(ServiceInstance instance) {
+        String key = key(instance);
+        InstanceStatistics statistics = instances.get(key);
+        if (statistics != null) {
+            return statistics;
+        }
+        // a newcomer is assumed to be as slow as the slowest known instance until it answers
+        long now = settings.nanoTime();
+        double initialEwma = instances.values().stream()
+                .mapToDouble(existing -> existing.decayedEwma(now, settings.ewmaDecayNanos()))
+                .max()
+                .orElse(0);
+        return instances.computeIfAbsent(key, ignored -> new InstanceStatistics(now, initialEwma));
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getInstanceId() != null ? instance.getInstanceId() : instance.getHost() + ":" + instance.getPort();
+    }
+}
@@ -0,0 +1,109 @@
+package online.threadly.api_gateway.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the limiter on a virtual clock. Each window fills the limit with
+ * CRITICAL requests, then releases them one by one with a scripted RTT over
+ * 100ms, so every window closes after the same number of samples.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private long now;
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 200, 1.5, () -> now);
+
+    @Test
+    void theLimitProbesUpwardsWhileTheRoundTripStaysFlat() {
+        windows(20, 10 * MILLIS, false);
+
+        assertThat(limiter.limit()).isGreaterThan(40);
+    }
+
+    @Test
+    void theLimitShrinksWhenTheRoundTripRisesAndRecoversOnceItFallsBack() {
+        windows(20, 10 * MILLIS, false);
+        double settled = limiter.limit();
+
+        windows(20, 40 * MILLIS, false);
+        double queueing = limiter.limit();
+        assertThat(queueing).isLessThan(settled / 2);
+
+        windows(20, 10 * MILLIS, false);
+        assertThat(limiter.limit()).isGreaterThan(queueing * 2);
+    }
+
+    @Test
+    void droppedRequestsBackTheLimitOffEvenAtAFlatRoundTrip() {
+        double before = limiter.limit();
+
+        windows(20, 10 * MILLIS, true);
+
+        assertThat(limiter.limit()).isLessThan(before * 0.7).isGreaterThanOrEqualTo(4);
+    }
+
+    @Test
+    void theLimitNeverLeavesItsBounds() {
+        windows(200, 10 * MILLIS, true);
+        assertThat(limiter.limit()).isEqualTo(4);
+
+        windows(200, 10 * MILLIS, false);
+        assertThat(limiter.limit()).isEqualTo(200);
+    }
+
+    @Test
+    void aWindowWithLittleDemandLeavesTheLimitAlone() {
+        for (int i = 0; i < 50; i++) {
+            assertThat(limiter.tryAcquire(Priority.CRITICAL)).isTrue();
+            now += 10 * MILLIS;
+            limiter.release(100 * MILLIS, false);
+        }
+
+        assertThat(limiter.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void sheddableRequestsAreRejectedBeforeNormalAndCriticalOnes() {
+        // a limit of 20: SHEDDABLE may use 10, NORMAL 16, CRITICAL all 20
+        assertThat(acquire(Priority.SHEDDABLE, 20)).isEqualTo(10);
+        assertThat(acquire(Priority.NORMAL, 20)).isEqualTo(6);
+        assertThat(acquire(Priority.CRITICAL, 20)).isEqualTo(4);
+        assertThat(limiter.inFlight()).isEqualTo(20);
+
+        limiter.releaseWithoutSample();
+        assertThat(limiter.tryAcquire(Priority.SHEDDABLE)).isFalse();
+        assertThat(limiter.tryAcquire(Priority.NORMAL)).isFalse();
+        assertThat(limiter.tryAcquire(Priority.CRITICAL)).isTrue();
+    }
+
+    @Test
+    void asTheLimitShrinksSheddableRequestsGoFirst() {
+        windows(20, 10 * MILLIS, true);
+        int limit = (int) limiter.limit();
+
+        assertThat(acquire(Priority.SHEDDABLE, limit)).isEqualTo((int) (limiter.limit() * 0.5));
+        assertThat(acquire(Priority.CRITICAL, limit)).isEqualTo(limit - (int) (limiter.limit() * 0.5));
+    }
+
+    private void windows(int count, long rttNanos, boolean dropped) {
+        for (int window = 0; window < count; window++) {
+            int admitted = acquire(Priority.CRITICAL, Integer.MAX_VALUE);
+            long step = 100 * MILLIS / admitted;
+            for (int i = 0; i < admitted; i++) {
+                now += step + 1;
+                limiter.release(rttNanos, dropped);
+            }
+        }
+    }
+
+    private int acquire(Priority priority, int atMost) {
+        int admitted = 0;
+        while (admitted < atMost && limiter.tryAcquire(priority)) {
+            admitted++;
+        }
+        return admitted;
+    }
+}
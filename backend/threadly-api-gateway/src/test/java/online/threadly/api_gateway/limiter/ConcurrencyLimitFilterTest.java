@@ -0,0 +1,128 @@
+package online.threadly.api_gateway.limiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the filter against scripted downstream outcomes on a virtual clock and
+ * watches the limiter through its gauges.
+ */
+class ConcurrencyLimitFilterTest {
+
+    private static final long MILLIS = 1_000_000L;
+    private static final String SERVICE = "threadly-product";
+
+    private long now;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(true, 20, 4, 200, 1.5, meterRegistry, () -> now);
+
+    @Test
+    void errorsAnd503sAnd504sCountAsDropped() {
+        sequential("critical", exchange -> Mono.error(new IllegalStateException("connection reset")), 10);
+        double afterErrors = limit();
+        assertThat(afterErrors).isLessThan(20);
+
+        sequential("critical", status(HttpStatus.SERVICE_UNAVAILABLE), 10);
+        assertThat(limit()).isLessThan(afterErrors);
+        double after503s = limit();
+
+        sequential("critical", status(HttpStatus.GATEWAY_TIMEOUT), 10);
+        assertThat(limit()).isLessThan(after503s);
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void successfulResponsesDoNotBackOff() {
+        sequential("critical", status(HttpStatus.OK), 10);
+        sequential("critical", status(HttpStatus.NOT_FOUND), 10);
+
+        assertThat(limit()).isEqualTo(20);
+        assertThat(inFlight()).isZero();
+    }
+
+    @Test
+    void aCancelledRequestFreesItsSlotWithoutASample() {
+        for (int i = 0; i < 30; i++) {
+            Disposable request = filter.filter(exchange("critical"), exchange -> Mono.never()).subscribe();
+            assertThat(inFlight()).isEqualTo(1);
+            now += 20 * MILLIS;
+            request.dispose();
+        }
+
+        assertThat(inFlight()).isZero();
+        assertThat(limit()).isEqualTo(20);
+    }
+
+    @Test
+    void requestsOverTheirPriorityShareAreAnswered503() {
+        List<Disposable> pending = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            pending.add(filter.filter(exchange("sheddable"), exchange -> Mono.never()).subscribe());
+        }
+
+        MockServerWebExchange shed = exchange("sheddable");
+        filter.filter(shed, exchange -> Mono.error(new AssertionError("must not reach the service"))).block();
+        assertThat(shed.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(shed.getResponse().getHeaders().getFirst("Retry-After")).isEqualTo("1");
+        assertThat(meterRegistry.counter("gateway.concurrency.rejected", "service", SERVICE, "priority", "sheddable").count())
+                .isEqualTo(1);
+
+        MockServerWebExchange critical = exchange("critical");
+        filter.filter(critical, status(HttpStatus.OK)).block();
+        assertThat(critical.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        pending.forEach(Disposable::dispose);
+        assertThat(inFlight()).isZero();
+    }
+
+    private void sequential(String priority, GatewayFilterChain chain, int requests) {
+        for (int i = 0; i < requests; i++) {
+            MockServerWebExchange exchange = exchange(priority);
+            Mono<Void> response = filter.filter(exchange, chain);
+            now += 20 * MILLIS;
+            response.onErrorComplete().block();
+        }
+    }
+
+    private static GatewayFilterChain status(HttpStatus status) {
+        return exchange -> {
+            exchange.getResponse().setStatusCode(status);
+            return Mono.empty();
+        };
+    }
+
+    private static MockServerWebExchange exchange(String priority) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/products"));
+        Route route = Route.async()
+                .id(priority)
+                .uri("lb://" + SERVICE)
+                .predicate((ServerWebExchange ignored) -> true)
+                .metadata(Map.of(Priority.METADATA_KEY, priority))
+                .build();
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        return exchange;
+    }
+
+    private double limit() {
+        return meterRegistry.get("gateway.concurrency.limit").tag("service", SERVICE).gauge().value();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("gateway.concurrency.in-flight").tag("service", SERVICE).gauge().value();
+    }
+}
@@ -0,0 +1,33 @@
+package online.threadly.api_gateway.limiter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriorityTest {
+
+    @Test
+    void readsThePriorityFromRouteMetadata() {
+        assertThat(Priority.of(route(Map.of()))).isEqualTo(Priority.NORMAL);
+        assertThat(Priority.of(route(Map.of(Priority.METADATA_KEY, "critical")))).isEqualTo(Priority.CRITICAL);
+        assertThat(Priority.of(route(Map.of(Priority.METADATA_KEY, " Sheddable")))).isEqualTo(Priority.SHEDDABLE);
+    }
+
+    @Test
+    void anUnknownPriorityIsTreatedAsNormal() {
+        assertThat(Priority.of(route(Map.of(Priority.METADATA_KEY, "critcal")))).isEqualTo(Priority.NORMAL);
+        assertThat(Priority.of(route(Map.of(Priority.METADATA_KEY, "critcal")))).isEqualTo(Priority.NORMAL);
+    }
+
+    private static Route route(Map<String, Object> metadata) {
+        return Route.async()
+                .id("cart")
+                .uri("lb://threadly-order-and-cart-management")
+                .predicate(exchange -> true)
+                .metadata(metadata)
+                .build();
+    }
+}
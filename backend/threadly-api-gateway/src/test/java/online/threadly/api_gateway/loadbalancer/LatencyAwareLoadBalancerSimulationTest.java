@@ -0,0 +1,278 @@
+package online.threadly.api_gateway.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the balancer and its statistics on a virtual clock against stand-in
+ * instances whose response times and failures are scripted, one request every
+ * few milliseconds, completions delivered in time order.
+ */
+class LatencyAwareLoadBalancerSimulationTest {
+
+    private static final String SERVICE_ID = "threadly-product";
+    private static final long MILLIS = 1_000_000L;
+    private static final long SECONDS = 1_000 * MILLIS;
+
+    private final Random random = new Random(42);
+    private final List<ServiceInstance> instances = new ArrayList<>();
+    private long now;
+
+    private final LoadBalancerStatistics statistics = new LoadBalancerStatistics(
+            Duration.ofSeconds(10), Duration.ofSeconds(30), 5, Duration.ofSeconds(30), 50, () -> now);
+    private final LatencyAwareLoadBalancer balancer = new LatencyAwareLoadBalancer(
+            new StaticListableBeanFactory(Map.of("supplier", new StandInSupplier()))
+                    .getBeanProvider(ServiceInstanceListSupplier.class),
+            SERVICE_ID, statistics);
+
+    @Test
+    void slowInstanceLosesItsShareAndTheTailWithIt() {
+        addInstances(4);
+        Behaviour oneSlow = (instance, at) -> Outcome.ok(isInstance(instance, 3) ? 200 * MILLIS : normal());
+
+        Result latencyAware = simulate(route(true), oneSlow, 60 * SECONDS, 5 * MILLIS);
+        Result roundRobin = simulate(route(false), oneSlow, 60 * SECONDS, 5 * MILLIS);
+
+        assertThat(roundRobin.share(3)).isBetween(0.24, 0.26);
+        assertThat(latencyAware.share(3)).isLessThan(0.02);
+        assertThat(roundRobin.percentile(0.99)).isGreaterThanOrEqualTo(200 * MILLIS);
+        assertThat(latencyAware.percentile(0.99)).isLessThan(20 * MILLIS);
+    }
+
+    @Test
+    void gcPausingInstanceIsAvoidedWhileItPauses() {
+        addInstances(4);
+        // instance 3 stops the world for 800ms every 5s; requests arriving during a pause wait it out
+        Behaviour pausing = (instance, at) -> {
+            long intoCycle = at % (5 * SECONDS);
+            if (isInstance(instance, 3) && intoCycle < 800 * MILLIS) {
+                return Outcome.ok(800 * MILLIS - intoCycle + normal());
+            }
+            return Outcome.ok(normal());
+        };
+
+        Result latencyAware = simulate(route(true), pausing, 60 * SECONDS, 2 * MILLIS);
+        Result roundRobin = simulate(route(false), pausing, 60 * SECONDS, 2 * MILLIS);
+
+        // round-robin sends a quarter of all requests during every pause into it: 4% of traffic waits
+        assertThat(roundRobin.percentile(0.99)).isGreaterThan(300 * MILLIS);
+        assertThat(latencyAware.percentile(0.99)).isLessThan(roundRobin.percentile(0.99) / 10);
+    }
+
+    @Test
+    void failingInstanceIsEjectedAndProbedAgainLater() {
+        addInstances(4);
+        Behaviour oneFailing = (instance, at) -> isInstance(instance, 2) ? Outcome.failed(MILLIS) : Outcome.ok(normal());
+
+        Result result = simulate(route(true), oneFailing, 70 * SECONDS, 5 * MILLIS);
+
+        // 5 failures, 30s out, 5 failures, 60s out
+        assertThat(result.requestsTo(2)).isBetween(10L, 14L);
+        assertThat(result.requestsTo(2, 5 * SECONDS, 30 * SECONDS)).isZero();
+        assertThat(result.failures).isEqualTo(result.requestsTo(2));
+    }
+
+    @Test
+    void neverEjectsMoreThanHalfOfTheInstances() {
+        addInstances(4);
+        Behaviour allFailing = (instance, at) -> Outcome.failed(MILLIS);
+
+        simulate(route(true), allFailing, 10 * SECONDS, 5 * MILLIS);
+
+        long ejected = instances.stream().filter(statistics.forService(SERVICE_ID)::isEjected).count();
+        assertThat(ejected).isEqualTo(2);
+    }
+
+    @Test
+    void newInstanceRampsUpDuringSlowStart() {
+        addInstances(3);
+        Behaviour uniform = (instance, at) -> Outcome.ok(normal());
+        simulate(route(true), uniform, 30 * SECONDS, 5 * MILLIS);
+
+        addInstances(1);
+        Result afterJoin = simulate(route(true), uniform, 60 * SECONDS, 5 * MILLIS);
+
+        long start = afterJoin.startedAt;
+        double firstSeconds = afterJoin.share(3, start, start + 5 * SECONDS);
+        double settled = afterJoin.share(3, start + 40 * SECONDS, start + 60 * SECONDS);
+        assertThat(firstSeconds).isLessThan(0.1);
+        assertThat(settled).isBetween(0.15, 0.35);
+    }
+
+    @Test
+    void routesWithoutMetadataKeepRoundRobin() {
+        addInstances(4);
+        Behaviour oneFailing = (instance, at) -> isInstance(instance, 0) ? Outcome.failed(MILLIS) : Outcome.ok(normal());
+
+        Result result = simulate(route(false), oneFailing, 10 * SECONDS, 5 * MILLIS);
+
+        // statistics are still collected, but the round-robin path neither weighs nor ejects
+        assertThat(result.requestsTo(0)).isEqualTo(result.total() / 4);
+    }
+
+    private Result simulate(Route route, Behaviour behaviour, long duration, long interval) {
+        Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext(new RequestData(
+                HttpMethod.GET, URI.create("http://gateway/api/v1/products"), new HttpHeaders(),
+                new LinkedMultiValueMap<>(), Map.of(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route))));
+        ServiceStatistics service = statistics.forService(SERVICE_ID);
+        PriorityQueue<Completion> inFlight = new PriorityQueue<>((a, b) -> Long.compare(a.at, b.at));
+        Result result = new Result(now);
+
+        long end = now + duration;
+        for (long arrival = now; arrival < end; arrival += interval) {
+            while (!inFlight.isEmpty() && inFlight.peek().at <= arrival) {
+                Completion completion = inFlight.poll();
+                now = completion.at;
+                service.requestFinished(completion.instance, completion.outcome.latency, completion.outcome.failed);
+            }
+            now = arrival;
+
+            ServiceInstance chosen = balancer.choose(request).block().getServer();
+            service.requestStarted(chosen);
+            Outcome outcome = behaviour.respond(chosen, arrival);
+            inFlight.add(new Completion(arrival + outcome.latency, chosen, outcome));
+            result.record(arrival, indexOf(chosen), outcome);
+        }
+        while (!inFlight.isEmpty()) {
+            Completion completion = inFlight.poll();
+            now = completion.at;
+            service.requestFinished(completion.instance, completion.outcome.latency, completion.outcome.failed);
+        }
+        now = end;
+        return result;
+    }
+
+    private void addInstances(int count) {
+        for (int i = 0; i < count; i++) {
+            int index = instances.size();
+            instances.add(new DefaultServiceInstance("product-" + index, SERVICE_ID, "10.0.0." + index, 8080, false));
+        }
+    }
+
+    private boolean isInstance(ServiceInstance instance, int index) {
+        return instances.get(index).equals(instance);
+    }
+
+    private int indexOf(ServiceInstance instance) {
+        return instances.indexOf(instance);
+    }
+
+    // 8-12ms
+    private long normal() {
+        return 8 * MILLIS + (long) (random.nextDouble() * 4 * MILLIS);
+    }
+
+    private static Route route(boolean latencyAware) {
+        Route.AsyncBuilder builder = Route.async()
+                .id("products")
+                .uri(URI.create("lb://" + SERVICE_ID))
+                .predicate(exchange -> true);
+        if (latencyAware) {
+            builder.metadata(LatencyAwareLoadBalancer.METADATA_KEY, LatencyAwareLoadBalancer.LATENCY_AWARE);
+        }
+        return builder.build();
+    }
+
+    private class StandInSupplier implements ServiceInstanceListSupplier {
+
+        @Override
+        public String getServiceId() {
+            return SERVICE_ID;
+        }
+
+        @Override
+        public Flux<List<ServiceInstance>> get() {
+            return Flux.just(List.copyOf(instances));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Behaviour {
+        Outcome respond(ServiceInstance instance, long at);
+    }
+
+    private record Outcome(long latency, boolean failed) {
+        static Outcome ok(long latency) {
+            return new Outcome(latency, false);
+        }
+
+        static Outcome failed(long latency) {
+            return new Outcome(latency, true);
+        }
+    }
+
+    private record Completion(long at, ServiceInstance instance, Outcome outcome) {
+    }
+
+    private static class Result {
+
+        private final long startedAt;
+        private final List<long[]> requests = new ArrayList<>();
+        private final Map<Integer, Long> perInstance = new HashMap<>();
+        private long failures;
+
+        Result(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void record(long at, int instance, Outcome outcome) {
+            requests.add(new long[]{at, instance, outcome.latency});
+            perInstance.merge(instance, 1L, Long::sum);
+            if (outcome.failed) {
+                failures++;
+            }
+        }
+
+        long total() {
+            return requests.size();
+        }
+
+        long requestsTo(int instance) {
+            return perInstance.getOrDefault(instance, 0L);
+        }
+
+        long requestsTo(int instance, long from, long to) {
+            return requests.stream().filter(r -> r[1] == instance && r[0] >= from && r[0] < to).count();
+        }
+
+        double share(int instance) {
+            return (double) requestsTo(instance) / total();
+        }
+
+        double share(int instance, long from, long to) {
+            long inWindow = requests.stream().filter(r -> r[0] >= from && r[0] < to).count();
+            return (double) requestsTo(instance, from, to) / inWindow;
+        }
+
+        long percentile(double quantile) {
+            long[] latencies = requests.stream().mapToLong(r -> r[2]).toArray();
+            Arrays.sort(latencies);
+            return latencies[(int) Math.ceil(quantile * latencies.length) - 1];
+        }
+    }
+}
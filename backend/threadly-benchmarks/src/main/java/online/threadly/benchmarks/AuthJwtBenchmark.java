@@ -0,0 +1,31 @@
+package online.threadly.benchmarks;
+
+import online.threadly.user_authentication.model.User;
+import online.threadly.user_authentication.service.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// token issuing on every signup and login
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthJwtBenchmark {
+
+    private JwtService jwtService;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        jwtService = Fixtures.authJwtService();
+        user = Fixtures.user();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+}
@@ -0,0 +1,88 @@
+package online.threadly.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import online.threadly.product.model.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The cart's bulk product lookup in JSON and in CBOR: the product service
+ * encoding the response, the cart decoding it into its own Product DTO, and the
+ * request body of ids. Bytes on the wire, raw and gzipped, are printed once per
+ * trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkLookupEncodingBenchmark {
+
+    private static final TypeReference<List<online.threadly.order_and_cart_management.dto.Product>> CART_PRODUCTS =
+            new TypeReference<>() {
+            };
+
+    @Param({"1", "20", "100"})
+    private int productCount;
+
+    @Param({"json", "cbor"})
+    private String encoding;
+
+    private ObjectMapper objectMapper;
+    private List<Product> products;
+    private List<UUID> productIds;
+    private byte[] encodedResponse;
+
+    @Setup
+    public void setUp() throws IOException {
+        // configured like the ObjectMapper Spring Boot builds for the services
+        objectMapper = ("cbor".equals(encoding) ? CBORMapper.builder() : JsonMapper.builder())
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        products = Fixtures.products(productCount);
+        productIds = products.stream().map(Product::getId).toList();
+        encodedResponse = objectMapper.writeValueAsBytes(products);
+
+        byte[] encodedRequest = objectMapper.writeValueAsBytes(productIds);
+        System.out.printf("%n%s, %d products: request %d B (gzip %d B), response %d B (gzip %d B)%n",
+                encoding, productCount, encodedRequest.length, gzip(encodedRequest).length,
+                encodedResponse.length, gzip(encodedResponse).length);
+    }
+
+    @Benchmark
+    public byte[] encodeResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public List<online.threadly.order_and_cart_management.dto.Product> decodeResponse() throws IOException {
+        return objectMapper.readValue(encodedResponse, CART_PRODUCTS);
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() throws IOException {
+        return objectMapper.writeValueAsBytes(productIds);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package online.threadly.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.order_and_cart_management.dto.CartResponse;
+import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.dto.ProductLookupResult;
+import online.threadly.order_and_cart_management.pricing.PricingEngine;
+import online.threadly.order_and_cart_management.projection.CartItemView;
+import online.threadly.order_and_cart_management.repository.CartItemRepository;
+import online.threadly.order_and_cart_management.repository.CartRepository;
+import online.threadly.order_and_cart_management.service.CartETags;
+import online.threadly.order_and_cart_management.service.CartService;
+import online.threadly.order_and_cart_management.service.ProductLookupService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CartService.getCartForUser with the database and threadly-product replaced
+ * by in-memory stubs, so only the item matching and pricing (with no promotions
+ * loaded) are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CartServiceBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    private int cartSize;
+
+    private CartService cartService;
+    private UUID userId;
+
+    @Setup
+    public void setUp() {
+        userId = UUID.randomUUID();
+        UUID cartId = UUID.randomUUID();
+        List<CartItemView> rows = new ArrayList<>(cartSize);
+        List<Product> products = new ArrayList<>(cartSize);
+        for (int i = 0; i < cartSize; i++) {
+            UUID productId = UUID.randomUUID();
+            rows.add(new Row(cartId, 1L, productId, 1 + i % 3));
+            Product product = new Product();
+            product.setId(productId);
+            product.setName("Product " + i);
+            product.setSlug("product-" + i);
+            product.setBrand("BRAND" + i % 5);
+            product.setPrice(499.0 + i);
+            products.add(product);
+        }
+
+        CartRepository cartRepository = stub(CartRepository.class, "findItemViewsByUserId", rows);
+        CartItemRepository cartItemRepository = stub(CartItemRepository.class, null, null);
+        ProductLookupService productLookupService = new ProductLookupService(null, null, new SimpleMeterRegistry()) {
+            @Override
+            public ProductLookupResult getProductsByIds(List<UUID> productIds) {
+                return new ProductLookupResult(products, false);
+            }
+        };
+        PricingEngine pricingEngine = new PricingEngine(new ObjectMapper(), new DefaultResourceLoader(), new SimpleMeterRegistry(), "");
+        cartService = new CartService(cartRepository, cartItemRepository, productLookupService, pricingEngine,
+                new CartETags(pricingEngine, Duration.ofMinutes(1)));
+    }
+
+    @Benchmark
+    public CartResponse getCartForUser() {
+        return cartService.getCartForUser(userId, null);
+    }
+
+    private static <T> T stub(Class<T> repository, String methodName, Object result) {
+        return repository.cast(Proxy.newProxyInstance(repository.getClassLoader(), new Class<?>[]{repository},
+                (proxy, method, args) -> {
+                    if (method.getName().equals(methodName)) {
+                        return result;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    private record Row(UUID cartId, Long version, UUID productId, Integer quantity) implements CartItemView {
+        @Override
+        public UUID getCartId() {
+            return cartId;
+        }
+
+        @Override
+        public Long getVersion() {
+            return version;
+        }
+
+        @Override
+        public UUID getProductId() {
+            return productId;
+        }
+
+        @Override
+        public Integer getQuantity() {
+            return quantity;
+        }
+    }
+}
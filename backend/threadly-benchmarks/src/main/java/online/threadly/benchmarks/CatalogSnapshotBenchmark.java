@@ -0,0 +1,101 @@
+package online.threadly.benchmarks;
+
+import online.threadly.product.catalog.CatalogSnapshot;
+import online.threadly.product.catalog.CatalogSnapshotWriter;
+import online.threadly.product.model.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking a product up by id and by slug in the memory-mapped catalog
+ * snapshot, which builds the Product from the mapped bytes, against maps of
+ * Product entities held on the heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogSnapshotBenchmark {
+
+    @Param({"100000"})
+    private int catalogSize;
+
+    private Path directory;
+    private CatalogSnapshot snapshot;
+    private Map<UUID, Product> byId;
+    private Map<String, Product> bySlug;
+    private UUID[] ids;
+    private String[] slugs;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Product> products = Fixtures.products(catalogSize);
+        products.sort(Comparator.comparing(Product::getId, (first, second) -> {
+            int comparison = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+            return comparison != 0 ? comparison : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+        }));
+        directory = Files.createTempDirectory("catalog-benchmark");
+        Path file = directory.resolve("products.snapshot");
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file)) {
+            for (Product product : products) {
+                writer.add(product);
+            }
+            writer.finish();
+        }
+        snapshot = CatalogSnapshot.open(file);
+
+        byId = new HashMap<>();
+        bySlug = new HashMap<>();
+        ids = new UUID[catalogSize];
+        slugs = new String[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            Product product = products.get(i);
+            byId.put(product.getId(), product);
+            bySlug.put(product.getSlug(), product);
+            ids[i] = product.getId();
+            slugs[i] = product.getSlug();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Product byIdFromHeap() {
+        return byId.get(ids[ThreadLocalRandom.current().nextInt(catalogSize)]);
+    }
+
+    @Benchmark
+    public Product byIdFromSnapshot() {
+        return snapshot.product(snapshot.indexOf(ids[ThreadLocalRandom.current().nextInt(catalogSize)]));
+    }
+
+    @Benchmark
+    public Product bySlugFromHeap() {
+        return bySlug.get(slugs[ThreadLocalRandom.current().nextInt(catalogSize)]);
+    }
+
+    @Benchmark
+    public Product bySlugFromSnapshot() {
+        return snapshot.product(snapshot.indexOfSlug(slugs[ThreadLocalRandom.current().nextInt(catalogSize)]));
+    }
+}
@@ -0,0 +1,73 @@
+package online.threadly.benchmarks;
+
+import online.threadly.product.model.Product;
+import online.threadly.user_authentication.model.Role;
+import online.threadly.user_authentication.model.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Test data shared by the benchmarks. Values mirror what the services see in
+ * production: the local JWT secret, realistic product payloads and UUID ids.
+ */
+final class Fixtures {
+
+    // same key as application-local.yml of the gateway and the auth service
+    static final String JWT_SECRET = "bZ1C/BhnIVRROhmEch4+xyoc1wc/aI9z1J1+gxRp5qACifGl3iVz3DczLoCZz382pFsjzlXwnLvMzKaf8sPjyA==";
+    static final long JWT_EXPIRATION = 86400000L;
+
+    private Fixtures() {
+    }
+
+    static online.threadly.api_gateway.service.JwtService gatewayJwtService() {
+        var jwtService = new online.threadly.api_gateway.service.JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", JWT_SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", JWT_EXPIRATION);
+        return jwtService;
+    }
+
+    static online.threadly.user_authentication.service.JwtService authJwtService() {
+        var jwtService = new online.threadly.user_authentication.service.JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", JWT_SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", JWT_EXPIRATION);
+        return jwtService;
+    }
+
+    static User user() {
+        return User.builder()
+                .id(UUID.randomUUID())
+                .name("Benchmark User")
+                .email("benchmark.user@threadly.online")
+                .password("$2a$10$7EqJtq98hPqEX7fNZaFWoOHiZxZ9fQ6n0b0Ck8bZ6vZ3ZQ0b6S1mG")
+                .role(Role.USER)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setId(UUID.randomUUID());
+            product.setName("Men Slim Fit Smart Formal Shirt " + i);
+            product.setSlug("men-slim-fit-smart-formal-shirt-" + i);
+            product.setImages(new String[]{
+                    "https://cdn.threadly.online/products/" + i + "/front.jpg",
+                    "https://cdn.threadly.online/products/" + i + "/back.jpg"});
+            product.setBrand("POLO");
+            product.setDescription("Breathable cotton shirt with a slim fit, spread collar and full sleeves.");
+            product.setStock(120);
+            product.setPrice(1499.0 + i);
+            product.setRating(4.3);
+            product.setRatingCount(1843);
+            product.setIsFeatured(i % 5 == 0);
+            product.setCreatedAt(LocalDateTime.now());
+            products.add(product);
+        }
+        return products;
+    }
+}
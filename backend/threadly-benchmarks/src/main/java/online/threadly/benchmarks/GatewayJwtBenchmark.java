@@ -0,0 +1,44 @@
+package online.threadly.benchmarks;
+
+import online.threadly.api_gateway.service.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The gateway validates the bearer token and extracts the user id on every
+ * authenticated request (JwtAuthenticationFilter).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GatewayJwtBenchmark {
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = Fixtures.gatewayJwtService();
+        token = Fixtures.authJwtService().generateToken(Fixtures.user());
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtService.validateToken(token);
+    }
+
+    @Benchmark
+    public String extractUserId() {
+        return jwtService.extractUserId(token);
+    }
+
+    // what JwtAuthenticationFilter does per request today
+    @Benchmark
+    public String validateThenExtractUserId() {
+        return jwtService.validateToken(token) ? jwtService.extractUserId(token) : null;
+    }
+}
@@ -0,0 +1,96 @@
+package online.threadly.benchmarks;
+
+import online.threadly.order_and_cart_management.pricing.CartLine;
+import online.threadly.order_and_cart_management.pricing.Pricing;
+import online.threadly.order_and_cart_management.pricing.Promotion;
+import online.threadly.order_and_cart_management.pricing.PromotionIndex;
+import online.threadly.order_and_cart_management.pricing.PromotionType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pricing a 10-line cart against a growing number of active promotions: the
+ * PromotionIndex, which only visits rules for the cart's products, brands and
+ * reachable thresholds, against testing every rule against every line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PricingEngineBenchmark {
+
+    private static final int BRANDS = 500;
+
+    @Param({"100", "1000", "10000"})
+    private int promotionCount;
+
+    private List<Promotion> promotions;
+    private PromotionIndex index;
+    private List<CartLine> cart;
+    private Instant now;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        List<UUID> catalog = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            catalog.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        promotions = new ArrayList<>(promotionCount);
+        for (int i = 0; i < promotionCount; i++) {
+            String id = "promotion-" + i;
+            promotions.add(switch (i % 3) {
+                case 0 -> new Promotion(id, PromotionType.BRAND_PERCENT_OFF, id, "BRAND" + random.nextInt(BRANDS), null,
+                        null, null, null, BigDecimal.valueOf(5 + random.nextInt(30)), null, null, null, null);
+                case 1 -> new Promotion(id, PromotionType.BUY_X_GET_Y, id, null, catalog.get(random.nextInt(catalog.size())),
+                        2, 1, null, null, null, null, null, null);
+                default -> new Promotion(id, PromotionType.CART_THRESHOLD, id, null, null, null, null,
+                        BigDecimal.valueOf(50L * (1 + random.nextInt(200))), null, BigDecimal.valueOf(5 + random.nextInt(50)),
+                        null, null, null);
+            });
+        }
+        index = new PromotionIndex(promotions);
+        cart = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cart.add(new CartLine(catalog.get(random.nextInt(catalog.size())), "BRAND" + random.nextInt(BRANDS),
+                    BigDecimal.valueOf(1999 + random.nextInt(5000), 2), 1 + random.nextInt(4)));
+        }
+        now = Instant.now();
+    }
+
+    @Benchmark
+    public Pricing indexed() {
+        return index.price(cart, null, now);
+    }
+
+    // the best item rule per line and best cart rule, found by testing every promotion
+    @Benchmark
+    public BigDecimal scanAllPromotions() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartLine line : cart) {
+            BigDecimal best = BigDecimal.ZERO;
+            for (Promotion promotion : promotions) {
+                if (promotion.isActiveAt(now) && promotion.appliesTo(line)) {
+                    best = best.max(promotion.itemDiscount(line));
+                }
+            }
+            total = total.add(line.subtotal().subtract(best));
+        }
+        BigDecimal best = BigDecimal.ZERO;
+        for (Promotion promotion : promotions) {
+            if (promotion.isActiveAt(now)) {
+                best = best.max(promotion.cartDiscount(total));
+            }
+        }
+        return total.subtract(best);
+    }
+}
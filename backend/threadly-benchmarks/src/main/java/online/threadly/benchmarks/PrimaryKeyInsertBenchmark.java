@@ -0,0 +1,88 @@
+package online.threadly.benchmarks;
+
+import online.threadly.commons.id.UuidV7Generator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Inserts the same number of cart_item-shaped rows into two fresh Postgres
+ * tables, one keyed by random v4 UUIDs and one by time-ordered v7 UUIDs, and
+ * prints insert throughput per tenth of the run (random keys slow down as the
+ * index outgrows the buffer cache) and the final primary-key index size.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar online.threadly.benchmarks.PrimaryKeyInsertBenchmark &lt;jdbc-url&gt; &lt;user&gt; &lt;password&gt; [rows] [batch]
+ * </pre>
+ */
+public class PrimaryKeyInsertBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: PrimaryKeyInsertBenchmark <jdbc-url> <user> <password> [rows] [batch]");
+            System.exit(2);
+        }
+        int rows = args.length > 3 ? Integer.parseInt(args[3]) : 2_000_000;
+        int batch = args.length > 4 ? Integer.parseInt(args[4]) : 1_000;
+
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            connection.setAutoCommit(false);
+            run(connection, "uuid_pk_v4", UUID::randomUUID, rows, batch);
+            run(connection, "uuid_pk_v7", UuidV7Generator::next, rows, batch);
+        }
+    }
+
+    private static void run(Connection connection, String table, Supplier<UUID> ids, int rows, int batch) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (id uuid PRIMARY KEY, cart_id uuid NOT NULL, "
+                    + "product_id uuid NOT NULL, quantity integer NOT NULL)");
+        }
+        connection.commit();
+
+        System.out.printf("%n%s, %,d rows in batches of %,d%n", table, rows, batch);
+        int tenth = Math.max(batch, rows / 10);
+        long start = System.nanoTime();
+        long chunkStart = start;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, cart_id, product_id, quantity) VALUES (?, ?, ?, ?)")) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int row = 1; row <= rows; row++) {
+                insert.setObject(1, ids.get());
+                insert.setObject(2, new UUID(random.nextLong(), random.nextLong()));
+                insert.setObject(3, new UUID(random.nextLong(), random.nextLong()));
+                insert.setInt(4, 1 + random.nextInt(5));
+                insert.addBatch();
+                if (row % batch == 0 || row == rows) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+                if (row % tenth == 0) {
+                    long now = System.nanoTime();
+                    System.out.printf("  up to %,10d rows: %,8.0f rows/s%n", row,
+                            tenth / ((now - chunkStart) / 1e9));
+                    chunkStart = now;
+                }
+            }
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try (Statement statement = connection.createStatement();
+             ResultSet sizes = statement.executeQuery("SELECT pg_relation_size('" + table + "_pkey'), "
+                     + "pg_relation_size('" + table + "')")) {
+            sizes.next();
+            System.out.printf("  total %,d ms (%,.0f rows/s), primary key index %,d MB, table %,d MB%n",
+                    elapsedMillis, rows / (elapsedMillis / 1e3),
+                    sizes.getLong(1) / (1024 * 1024), sizes.getLong(2) / (1024 * 1024));
+        }
+        connection.commit();
+    }
+}
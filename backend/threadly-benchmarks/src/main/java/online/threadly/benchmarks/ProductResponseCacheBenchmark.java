@@ -0,0 +1,141 @@
+package online.threadly.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import online.threadly.product.dao.Response;
+import online.threadly.product.model.Product;
+import online.threadly.product.serialization.EncodedProduct;
+import online.threadly.product.serialization.EncodedProducts;
+import online.threadly.product.serialization.EncodedProductsHttpMessageConverter;
+import online.threadly.product.serialization.ProductEncoding;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing product-detail and bulk response bodies into a response buffer
+ * through Spring's message converters: Jackson encoding the entities on every
+ * request, as ProductController used to, against copying the fragments held by
+ * ProductResponseCache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductResponseCacheBenchmark {
+
+    @Param({"1", "20", "100"})
+    private int productCount;
+
+    @Param({"application/json", "application/cbor"})
+    private String mediaType;
+
+    private AbstractJackson2HttpMessageConverter jacksonConverter;
+    private EncodedProductsHttpMessageConverter converter;
+    private MediaType contentType;
+    private List<Product> products;
+    private EncodedProducts encodedDetail;
+    private EncodedProducts encodedBulk;
+    private ResponseBuffer response;
+
+    @Setup
+    public void setUp() {
+        // configured like the ObjectMappers Spring MVC writes product responses with
+        ObjectMapper jsonMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        jacksonConverter = "application/cbor".equals(mediaType)
+                ? new MappingJackson2CborHttpMessageConverter(cborMapper)
+                : new MappingJackson2HttpMessageConverter(jsonMapper);
+
+        ProductEncoding encoding = new ProductEncoding(jsonMapper, cborMapper);
+        converter = new EncodedProductsHttpMessageConverter(encoding);
+        contentType = MediaType.valueOf(mediaType);
+        products = Fixtures.products(productCount);
+        List<EncodedProduct> encoded = products.stream().map(encoding::encode).toList();
+        encodedDetail = EncodedProducts.wrapped("product fetched successfully", encoded.get(0));
+        encodedBulk = EncodedProducts.array(encoded);
+        response = new ResponseBuffer();
+    }
+
+    @Benchmark
+    public int detailWithJackson() throws IOException {
+        response.reset();
+        jacksonConverter.write(new Response("product fetched successfully", products.get(0)), contentType, response);
+        return response.size();
+    }
+
+    @Benchmark
+    public int detailFromCache() throws IOException {
+        response.reset();
+        converter.write(encodedDetail, contentType, response);
+        return response.size();
+    }
+
+    @Benchmark
+    public int bulkWithJackson() throws IOException {
+        response.reset();
+        jacksonConverter.write(products, contentType, response);
+        return response.size();
+    }
+
+    @Benchmark
+    public int bulkFromCache() throws IOException {
+        response.reset();
+        converter.write(encodedBulk, contentType, response);
+        return response.size();
+    }
+
+    // a reused body buffer standing in for the servlet response; headers are new per response, as in a server
+    private static final class ResponseBuffer implements HttpOutputMessage {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+        private final OutputStream unclosableBody = new OutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                body.write(bytes, offset, length);
+            }
+        };
+        private HttpHeaders headers = new HttpHeaders();
+
+        void reset() {
+            body.reset();
+            headers = new HttpHeaders();
+        }
+
+        int size() {
+            return body.size();
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return unclosableBody;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package online.threadly.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files and exits with status 1 if any benchmark
+ * in the current run is slower, or allocates more per operation, than the
+ * baseline by more than the threshold (10% unless given) and by more than the
+ * runs' error bars.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar online.threadly.benchmarks.ResultComparator baseline.json jmh-result.json [thresholdPercent]
+ * </pre>
+ */
+public class ResultComparator {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    // differences below this many bytes per operation are noise from the profiler itself
+    private static final double MIN_ALLOCATION_DELTA = 16.0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ResultComparator <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100.0 : 0.10;
+
+        int regressions = compare(read(new File(args[0])), read(new File(args[1])), threshold, System.out);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /**
+     * Prints one line per benchmark and returns the number of regressions. A
+     * difference counts only if it is larger than the threshold and than the two
+     * runs' error bars together; against a baseline of 0 any difference past
+     * the error bars is larger than the threshold. Benchmarks missing from the
+     * current run are listed but do not fail it, since a run may be filtered.
+     */
+    static int compare(Map<String, JsonNode> baseline, Map<String, JsonNode> current, double threshold, PrintStream out) {
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                out.printf("NEW        %s%n", entry.getKey());
+                continue;
+            }
+            JsonNode after = entry.getValue();
+
+            JsonNode scoreBefore = before.path("primaryMetric");
+            JsonNode scoreAfter = after.path("primaryMetric");
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            double scoreChange = relativeChange(scoreBefore, scoreAfter, 0);
+            boolean slower = higherIsBetter ? scoreChange < -threshold : scoreChange > threshold;
+
+            JsonNode allocationBefore = before.path("secondaryMetrics").path(ALLOCATION_METRIC);
+            JsonNode allocationAfter = after.path("secondaryMetrics").path(ALLOCATION_METRIC);
+            boolean allocatesMore = relativeChange(allocationBefore, allocationAfter, MIN_ALLOCATION_DELTA) > threshold;
+
+            String verdict = slower || allocatesMore ? "REGRESSION" : "ok";
+            if (slower || allocatesMore) {
+                regressions++;
+            }
+            out.printf("%-10s %s  score %.3f -> %.3f %s (%+.1f%%)  alloc %.0f -> %.0f B/op%n",
+                    verdict, entry.getKey(), score(scoreBefore), score(scoreAfter),
+                    scoreAfter.path("scoreUnit").asText(), scoreChange * 100,
+                    score(allocationBefore), score(allocationAfter));
+        }
+        int missing = 0;
+        for (String benchmark : baseline.keySet()) {
+            if (!current.containsKey(benchmark)) {
+                out.printf("MISSING    %s%n", benchmark);
+                missing++;
+            }
+        }
+
+        out.printf("%d regression(s) above %.0f%%, %d benchmark(s) missing from the current run%n",
+                regressions, threshold * 100, missing);
+        return regressions;
+    }
+
+    // benchmark name plus its @Param values, e.g. CartServiceBenchmark.getCartForUser{cartSize=50}
+    static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            String benchmark = result.path("benchmark").asText().replace("online.threadly.benchmarks.", "");
+            results.put(benchmark + result.path("params"), result);
+        }
+        return results;
+    }
+
+    // 0 while the difference is within both error bars (and minDelta); infinite for any other change from a baseline of 0
+    private static double relativeChange(JsonNode before, JsonNode after, double minDelta) {
+        double difference = score(after) - score(before);
+        if (Math.abs(difference) <= Math.max(minDelta, error(before) + error(after))) {
+            return 0;
+        }
+        return score(before) == 0 ? Math.copySign(Double.POSITIVE_INFINITY, difference) : difference / score(before);
+    }
+
+    private static double score(JsonNode metric) {
+        return metric.path("score").asDouble();
+    }
+
+    // JMH writes "NaN" when there were too few iterations to estimate the error
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
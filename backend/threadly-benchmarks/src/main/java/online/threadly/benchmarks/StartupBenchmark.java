@@ -0,0 +1,119 @@
+package online.threadly.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a service process several times and measures, for each run, the time
+ * from launching the JVM to the first 2xx response from the given URL, and the
+ * process's resident memory at that moment (read from /proc, Linux only).
+ * Prints every run and the median, min and max.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar online.threadly.benchmarks.StartupBenchmark &lt;url&gt; &lt;runs&gt; -- &lt;command...&gt;
+ * </pre>
+ */
+public class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int separator = Arrays.asList(args).indexOf("--");
+        if (args.length < 4 || separator != 2) {
+            System.err.println("usage: StartupBenchmark <url> <runs> -- <command...>");
+            System.exit(2);
+        }
+        URI url = URI.create(args[0]);
+        int runs = Integer.parseInt(args[1]);
+        List<String> command = List.of(args).subList(separator + 1, args.length);
+
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        List<Long> startupMillis = new ArrayList<>();
+        List<Long> residentKilobytes = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            long[] result = runOnce(command, url, httpClient);
+            startupMillis.add(result[0]);
+            residentKilobytes.add(result[1]);
+            System.out.printf("run %d: first successful request after %d ms, RSS %d MB%n", run, result[0], result[1] / 1024);
+        }
+
+        System.out.printf("%ntime to first successful request  median %d ms  min %d ms  max %d ms%n",
+                median(startupMillis), min(startupMillis), max(startupMillis));
+        System.out.printf("resident memory                   median %d MB  min %d MB  max %d MB%n",
+                median(residentKilobytes) / 1024, min(residentKilobytes) / 1024, max(residentKilobytes) / 1024);
+    }
+
+    private static long[] runOnce(List<String> command, URI url, HttpClient httpClient) throws Exception {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(1)).build();
+            long deadline = start + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("service exited with status " + process.exitValue() + " before answering");
+                }
+                if (succeeds(httpClient, request)) {
+                    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    return new long[]{elapsedMillis, residentKilobytes(process.pid())};
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            throw new IllegalStateException("no successful response from " + url + " within " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static boolean succeeds(HttpClient httpClient, HttpRequest request) throws InterruptedException {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    // VmRSS from /proc/<pid>/status, -1 where there is no procfs
+    private static long residentKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = values.stream().sorted().toList();
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static long min(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    private static long max(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+}
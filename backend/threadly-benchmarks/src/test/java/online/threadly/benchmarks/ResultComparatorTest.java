@@ -0,0 +1,78 @@
+package online.threadly.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * results/baseline.json and results/current.json hold one pair of results per
+ * case below, in JMH's JSON format.
+ */
+class ResultComparatorTest {
+
+    private List<String> lines;
+    private int regressions;
+
+    @BeforeEach
+    void compareFixtures() throws IOException, URISyntaxException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        regressions = ResultComparator.compare(fixture("baseline.json"), fixture("current.json"), 0.10,
+                new PrintStream(output, true, StandardCharsets.UTF_8));
+        lines = Arrays.asList(output.toString(StandardCharsets.UTF_8).split("\\R"));
+    }
+
+    @Test
+    void aSlowdownPastTheThresholdAndTheErrorBarsIsARegression() {
+        assertThat(verdict("ProductResponseCacheBenchmark.cachedBulk")).isEqualTo("REGRESSION");
+        assertThat(verdict("UuidGenerationBenchmark.uuidV7")).isEqualTo("REGRESSION");
+    }
+
+    @Test
+    void aSlowdownBelowTheThresholdOrWithinTheErrorBarsIsNot() {
+        assertThat(verdict("CartServiceBenchmark.getCartForUser{\"cartSize\":\"50\"}")).isEqualTo("ok");
+        assertThat(verdict("PricingEngineBenchmark.price")).isEqualTo("ok");
+    }
+
+    @Test
+    void anyIncreaseFromABaselineOfZeroIsARegression() {
+        assertThat(verdict("CatalogSnapshotBenchmark.byId")).isEqualTo("REGRESSION");
+        assertThat(verdict("AuthJwtBenchmark.sign")).isEqualTo("REGRESSION");
+    }
+
+    @Test
+    void allocationBelowTheMinimumDeltaIsNoise() {
+        assertThat(verdict("CatalogSnapshotBenchmark.bySlug")).isEqualTo("ok");
+    }
+
+    @Test
+    void newAndMissingBenchmarksAreListedWithoutFailingTheRun() {
+        assertThat(lines).contains("NEW        StartupBenchmark.refresh", "MISSING    GatewayJwtBenchmark.verify");
+        assertThat(regressions).isEqualTo(4);
+        assertThat(lines.get(lines.size() - 1))
+                .isEqualTo("4 regression(s) above 10%, 1 benchmark(s) missing from the current run");
+    }
+
+    private String verdict(String benchmark) {
+        return lines.stream()
+                .filter(line -> line.substring(11).startsWith(benchmark + "  "))
+                .map(line -> line.substring(0, 10).trim())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Map<String, JsonNode> fixture(String name) throws IOException, URISyntaxException {
+        return ResultComparator.read(new File(ResultComparatorTest.class.getResource("/results/" + name).toURI()));
+    }
+}
@@ -0,0 +1,40 @@
+package online.threadly.commons.diagnostics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marks the repository method running on this thread, so SqlStatistics can
+ * attribute the statements it issues, e.g. CartItemRepository.findByCartIdAndProductId.
+ * A repository called from inside another one, say by a custom fragment, hands
+ * the thread back to its caller when it returns. Calls a default method makes
+ * on its own repository do not go back through the proxy, so they are filed
+ * under the default method.
+ */
+@Aspect
+public class RepositorySqlAttributionAspect {
+
+    private final SqlStatistics sqlStatistics;
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    public RepositorySqlAttributionAspect(SqlStatistics sqlStatistics) {
+        this.sqlStatistics = sqlStatistics;
+    }
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object attribute(ProceedingJoinPoint joinPoint) throws Throwable {
+        String repository = repositoryNames.computeIfAbsent(joinPoint.getThis().getClass(),
+                type -> AopProxyUtils.proxiedUserInterfaces(joinPoint.getThis())[0].getSimpleName());
+        String previous = sqlStatistics.enterRepositoryMethod(repository + "." + joinPoint.getSignature().getName());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            sqlStatistics.exitRepositoryMethod(previous);
+        }
+    }
+}
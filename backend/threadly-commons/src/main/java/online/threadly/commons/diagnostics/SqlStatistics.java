@@ -0,0 +1,250 @@
+package online.threadly.commons.diagnostics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts JDBC statements, rows (returned or affected) and time, attributed to the
+ * repository method that issued them and to the HTTP endpoint of the request.
+ * Statements issued outside a repository call (flush on commit, for example) are
+ * attributed to "outside-repository". Requests that issue more than
+ * nPlusOneThreshold statements are logged with their per-method breakdown, and
+ * statements slower than slowThreshold are logged with their bind shape
+ * (parameter types, never values).
+ */
+public class SqlStatistics implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatistics.class);
+    private static final String OUTSIDE_REPOSITORY = "outside-repository";
+
+    private final long slowThresholdNanos;
+    private final int nPlusOneThreshold;
+    private final Map<String, Counters> repositoryMethods = new ConcurrentHashMap<>();
+    private final Map<String, EndpointCounters> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder slowStatements = new LongAdder();
+
+    private final ThreadLocal<String> currentRepositoryMethod = new ThreadLocal<>();
+    private final ThreadLocal<RequestScope> currentRequest = new ThreadLocal<>();
+    private final ThreadLocal<long[]> statementStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    public SqlStatistics(Duration slowThreshold, int nPlusOneThreshold) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    String enterRepositoryMethod(String method) {
+        String previous = currentRepositoryMethod.get();
+        currentRepositoryMethod.set(method);
+        counters(method).calls.increment();
+        return previous;
+    }
+
+    void exitRepositoryMethod(String previous) {
+        if (previous == null) {
+            currentRepositoryMethod.remove();
+        } else {
+            currentRepositoryMethod.set(previous);
+        }
+    }
+
+    void beginRequest() {
+        currentRequest.set(new RequestScope());
+    }
+
+    void endRequest(String endpoint) {
+        RequestScope request = currentRequest.get();
+        currentRequest.remove();
+        if (request == null || request.statements == 0) {
+            return;
+        }
+        EndpointCounters counters = endpoints.computeIfAbsent(endpoint, key -> new EndpointCounters());
+        counters.requests.increment();
+        counters.statements.add(request.statements);
+        counters.rows.add(request.rows);
+        counters.nanos.add(request.nanos);
+        counters.maxStatements.accumulateAndGet(request.statements, Math::max);
+        if (request.statements > nPlusOneThreshold) {
+            counters.nPlusOneSuspects.increment();
+            log.warn("{} issued {} SQL statements (threshold {}), by repository method: {}",
+                    endpoint, request.statements, nPlusOneThreshold, request.statementsByMethod);
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        statementStart.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long nanos = System.nanoTime() - statementStart.get()[0];
+        long affected = affectedRows(execInfo.getResult());
+        String method = repositoryMethod();
+
+        Counters counters = counters(method);
+        counters.statements.increment();
+        counters.rows.add(affected);
+        counters.nanos.add(nanos);
+        counters.maxNanos.accumulateAndGet(nanos, Math::max);
+
+        RequestScope request = currentRequest.get();
+        if (request != null) {
+            request.statements++;
+            request.rows += affected;
+            request.nanos += nanos;
+            request.statementsByMethod.merge(method, 1, Integer::sum);
+        }
+
+        if (nanos >= slowThresholdNanos) {
+            slowStatements.increment();
+            for (QueryInfo query : queryInfoList) {
+                log.warn("Slow SQL ({} ms) in {}: {} binds {}",
+                        TimeUnit.NANOSECONDS.toMillis(nanos), method, query.getQuery(), bindShape(query));
+            }
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    // rows returned are counted as the result sets are read
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (executionContext.getTarget() instanceof ResultSet
+                && executionContext.getMethod().getName().equals("next")
+                && Boolean.TRUE.equals(executionContext.getResult())) {
+            counters(repositoryMethod()).rows.increment();
+            RequestScope request = currentRequest.get();
+            if (request != null) {
+                request.rows++;
+            }
+        }
+    }
+
+    private String repositoryMethod() {
+        String method = currentRepositoryMethod.get();
+        return method != null ? method : OUTSIDE_REPOSITORY;
+    }
+
+    private Counters counters(String method) {
+        return repositoryMethods.computeIfAbsent(method, key -> new Counters());
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(count, 0);
+        }
+        if (result instanceof int[] counts) {
+            long total = 0;
+            for (int count : counts) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        return 0;
+    }
+
+    // parameter types in bind order, plus the number of parameter sets for a batch
+    private static String bindShape(QueryInfo query) {
+        List<List<ParameterSetOperation>> parameterSets = query.getParametersList();
+        if (parameterSets.isEmpty()) {
+            return "()";
+        }
+        StringJoiner shape = new StringJoiner(", ", "(", ")");
+        parameterSets.get(0).stream()
+                .sorted(Comparator.comparing(operation -> String.valueOf(operation.getArgs()[0])))
+                .forEach(operation -> shape.add(operation.getMethod().getName().equals("setNull")
+                        ? "null"
+                        : operation.getArgs()[1] == null ? "null" : operation.getArgs()[1].getClass().getSimpleName()));
+        return parameterSets.size() > 1 ? shape + " x " + parameterSets.size() : shape.toString();
+    }
+
+    public Report report() {
+        List<RepositoryMethodStats> methods = repositoryMethods.entrySet().stream()
+                .map(entry -> entry.getValue().toStats(entry.getKey()))
+                .sorted(Comparator.comparingDouble(RepositoryMethodStats::totalMs).reversed())
+                .toList();
+        List<EndpointStats> endpointStats = endpoints.entrySet().stream()
+                .map(entry -> entry.getValue().toStats(entry.getKey()))
+                .sorted(Comparator.comparingDouble(EndpointStats::statementsPerRequest).reversed())
+                .toList();
+        return new Report(TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos), nPlusOneThreshold, slowStatements.sum(),
+                methods, endpointStats);
+    }
+
+    public void reset() {
+        repositoryMethods.clear();
+        endpoints.clear();
+        slowStatements.reset();
+    }
+
+    public record Report(long slowThresholdMs, int nPlusOneThreshold, long slowStatements,
+                         List<RepositoryMethodStats> repositoryMethods, List<EndpointStats> endpoints) {
+    }
+
+    public record RepositoryMethodStats(String method, long calls, long statements, long rows,
+                                        double totalMs, double meanMs, double maxMs) {
+    }
+
+    public record EndpointStats(String endpoint, long requests, long statements, double statementsPerRequest,
+                                long maxStatements, long rows, double totalMs, long nPlusOneSuspects) {
+    }
+
+    private static final class RequestScope {
+        private int statements;
+        private long rows;
+        private long nanos;
+        private final Map<String, Integer> statementsByMethod = new HashMap<>();
+    }
+
+    private static final class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private RepositoryMethodStats toStats(String method) {
+            long statementCount = statements.sum();
+            double totalMs = nanos.sum() / 1_000_000.0;
+            return new RepositoryMethodStats(method, calls.sum(), statementCount, rows.sum(), totalMs,
+                    statementCount == 0 ? 0 : totalMs / statementCount, maxNanos.get() / 1_000_000.0);
+        }
+    }
+
+    private static final class EndpointCounters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+        private final LongAdder nPlusOneSuspects = new LongAdder();
+
+        private EndpointStats toStats(String endpoint) {
+            long requestCount = requests.sum();
+            long statementCount = statements.sum();
+            return new EndpointStats(endpoint, requestCount, statementCount,
+                    requestCount == 0 ? 0 : (double) statementCount / requestCount,
+                    maxStatements.get(), rows.sum(), nanos.sum() / 1_000_000.0, nPlusOneSuspects.sum());
+        }
+    }
+}
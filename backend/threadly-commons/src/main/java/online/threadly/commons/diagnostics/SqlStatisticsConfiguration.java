@@ -0,0 +1,66 @@
+package online.threadly.commons.diagnostics;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Wraps the application DataSource in a datasource-proxy that reports every
+ * statement to SqlStatistics. Applies to servlet services with datasource-proxy
+ * on the classpath; off with threadly.sql-stats.enabled=false.
+ */
+@AutoConfiguration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnClass(name = {"net.ttddyy.dsproxy.support.ProxyDataSourceBuilder", "org.springframework.data.repository.Repository",
+        "org.springframework.boot.actuate.endpoint.annotation.Endpoint"})
+@ConditionalOnProperty(name = "threadly.sql-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsConfiguration {
+
+    @Bean
+    public SqlStatistics sqlStatistics(@Value("${threadly.sql-stats.slow-threshold:100ms}") Duration slowThreshold,
+                                       @Value("${threadly.sql-stats.n-plus-one-threshold:20}") int nPlusOneThreshold) {
+        return new SqlStatistics(slowThreshold, nPlusOneThreshold);
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourceProxy(ObjectProvider<SqlStatistics> sqlStatistics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource)) {
+                    return bean;
+                }
+                SqlStatistics statistics = sqlStatistics.getObject();
+                return ProxyDataSourceBuilder.create(beanName, dataSource)
+                        .listener(statistics)
+                        .methodListener(statistics)
+                        .proxyResultSet()
+                        .build();
+            }
+        };
+    }
+
+    @Bean
+    public RepositorySqlAttributionAspect repositorySqlAttributionAspect(SqlStatistics sqlStatistics) {
+        return new RepositorySqlAttributionAspect(sqlStatistics);
+    }
+
+    @Bean
+    public SqlStatisticsFilter sqlStatisticsFilter(SqlStatistics sqlStatistics) {
+        return new SqlStatisticsFilter(sqlStatistics);
+    }
+
+    @Bean
+    public SqlStatisticsEndpoint sqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+        return new SqlStatisticsEndpoint(sqlStatistics);
+    }
+}
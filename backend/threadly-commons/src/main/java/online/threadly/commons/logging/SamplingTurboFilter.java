@@ -0,0 +1,39 @@
+package online.threadly.commons.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one in sampleRate events logged with the SAMPLED marker, counted per
+ * message template, so each high-volume call site (one per endpoint) is thinned
+ * on its own. Runs before the logging event is built, so a dropped event costs
+ * a map lookup and an increment. Events without the marker pass untouched.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private int sampleRate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (marker == null || format == null || !marker.contains(SAMPLED) || !logger.isEnabledFor(level)) {
+            return FilterReply.NEUTRAL;
+        }
+        long count = counters.computeIfAbsent(format, key -> new AtomicLong()).getAndIncrement();
+        return count % sampleRate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+}
@@ -0,0 +1,49 @@
+package online.threadly.commons.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.observation.ObservationAutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Local span exporters, selected with threadly.tracing.exporter=file|memory.
+ * Spring Boot hands every SpanExporter bean to the batch span processor, so these
+ * sit next to the OTLP exporter, which is enabled by setting
+ * management.otlp.tracing.endpoint. Which requests get traced at all is decided
+ * once at the edge by management.tracing.sampling.probability.
+ * <p>
+ * Applies to services with the OpenTelemetry SDK on the classpath; those with
+ * Spring Data and AOP as well also get a span per repository call.
+ */
+@AutoConfiguration(after = ObservationAutoConfiguration.class)
+@ConditionalOnClass(name = "io.opentelemetry.sdk.trace.export.SpanExporter")
+public class TracingConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "threadly.tracing.exporter", havingValue = "file")
+    public JsonLinesSpanExporter jsonLinesSpanExporter(ObjectMapper objectMapper,
+                                                       @Value("${threadly.tracing.file:spans.jsonl}") Path file) throws IOException {
+        return new JsonLinesSpanExporter(objectMapper, file);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "threadly.tracing.exporter", havingValue = "memory")
+    public InMemorySpanExporter inMemorySpanExporter(@Value("${threadly.tracing.memory.max-spans:10000}") int maxSpans) {
+        return new InMemorySpanExporter(maxSpans);
+    }
+
+    @Bean
+    @ConditionalOnClass(name = {"org.springframework.data.repository.Repository", "org.aspectj.lang.annotation.Aspect"})
+    @ConditionalOnBean(ObservationRegistry.class)
+    public RepositoryObservationAspect repositoryObservationAspect(ObservationRegistry observationRegistry) {
+        return new RepositoryObservationAspect(observationRegistry);
+    }
+}
@@ -0,0 +1,29 @@
+package online.threadly.commons.warmup;
+
+/**
+ * Decides when the per-round latency of the warm-up traffic has stopped moving:
+ * once it stays within the tolerance of the previous round for the given
+ * number of rounds in a row.
+ */
+public class LatencyPlateau {
+
+    private final double tolerance;
+    private final int roundsNeeded;
+    private long previousNanos = -1;
+    private int stableRounds;
+
+    public LatencyPlateau(double tolerance, int roundsNeeded) {
+        this.tolerance = tolerance;
+        this.roundsNeeded = roundsNeeded;
+    }
+
+    public boolean reached(long latencyNanos) {
+        if (previousNanos > 0 && Math.abs(latencyNanos - previousNanos) <= previousNanos * tolerance) {
+            stableRounds++;
+        } else {
+            stableRounds = 0;
+        }
+        previousNanos = latencyNanos;
+        return stableRounds >= roundsNeeded;
+    }
+}
@@ -0,0 +1,31 @@
+package online.threadly.commons.warmup;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+
+/**
+ * The instance registers with Eureka as STARTING (eureka.instance.initial-status)
+ * and is switched to UP here once the application accepts traffic, which is
+ * after the warm-up runner has returned. Gateways and Feign clients only route
+ * to UP instances. On shutdown it goes OUT_OF_SERVICE before deregistering.
+ */
+public class RegistryStatusPublisher {
+
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+
+    public RegistryStatusPublisher(ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+        this.applicationInfoManager = applicationInfoManager;
+    }
+
+    @EventListener
+    public void onReadinessChange(AvailabilityChangeEvent<ReadinessState> event) {
+        InstanceStatus status = event.getState() == ReadinessState.ACCEPTING_TRAFFIC
+                ? InstanceStatus.UP
+                : InstanceStatus.OUT_OF_SERVICE;
+        applicationInfoManager.ifAvailable(manager -> manager.setInstanceStatus(status));
+    }
+}
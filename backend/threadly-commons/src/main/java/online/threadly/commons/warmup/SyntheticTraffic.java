@@ -0,0 +1,120 @@
+package online.threadly.commons.warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends a fixed mix of requests to this instance's own HTTP port, so they pass
+ * through the same filters, controllers and message converters as real
+ * traffic, and reports the latency of each round.
+ */
+public class SyntheticTraffic implements AutoCloseable {
+
+    public record Request(String method, String path, Map<String, String> headers, String body) {
+
+        public static Request get(String path, String accept) {
+            return new Request("GET", path, Map.of("Accept", accept), null);
+        }
+
+        public static Request post(String path, String accept, String jsonBody) {
+            return new Request("POST", path, Map.of("Accept", accept, "Content-Type", "application/json"), jsonBody);
+        }
+
+        public Request withHeader(String name, String value) {
+            Map<String, String> withHeader = new HashMap<>(headers);
+            withHeader.put(name, value);
+            return new Request(method, path, Map.copyOf(withHeader), body);
+        }
+    }
+
+    // a 5xx or a request that got no response counts as failed; 4xx answers are part of the mix
+    public record Round(Duration median, Duration p99, int failed) {
+    }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private final HttpClient client;
+    private final ExecutorService workers;
+    private final URI base;
+    private final List<Request> mix;
+    private final int concurrency;
+    private final int requestsPerRound;
+    private final AtomicInteger position = new AtomicInteger();
+
+    public SyntheticTraffic(int port, List<Request> mix, int concurrency, int requestsPerRound) {
+        this.workers = Executors.newFixedThreadPool(concurrency, Thread.ofPlatform().name("warm-up-", 0).daemon(true).factory());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        this.base = URI.create("http://localhost:" + port);
+        this.mix = List.copyOf(mix);
+        this.concurrency = concurrency;
+        this.requestsPerRound = requestsPerRound;
+    }
+
+    public Round run() throws InterruptedException {
+        long[] latencies = new long[requestsPerRound];
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> running = new ArrayList<>(concurrency);
+        for (int worker = 0; worker < concurrency; worker++) {
+            running.add(workers.submit(() -> {
+                for (int i = sent.getAndIncrement(); i < requestsPerRound; i = sent.getAndIncrement()) {
+                    Request request = mix.get(Math.floorMod(position.getAndIncrement(), mix.size()));
+                    long started = System.nanoTime();
+                    if (!send(request)) {
+                        failed.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - started;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : running) {
+            try {
+                worker.get();
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException("warm-up request failed", exception.getCause());
+            }
+        }
+        Arrays.sort(latencies);
+        return new Round(Duration.ofNanos(latencies[requestsPerRound / 2]),
+                Duration.ofNanos(latencies[requestsPerRound * 99 / 100]), failed.get());
+    }
+
+    private boolean send(Request request) throws InterruptedException {
+        HttpRequest.BodyPublisher body = request.body() == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(request.body());
+        HttpRequest.Builder http = HttpRequest.newBuilder(base.resolve(request.path()))
+                .timeout(REQUEST_TIMEOUT)
+                .method(request.method(), body);
+        request.headers().forEach(http::header);
+        try {
+            return client.send(http.build(), HttpResponse.BodyHandlers.discarding()).statusCode() < 500;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,38 @@
+package online.threadly.commons.warmup;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Imported by the services that warm up before taking traffic, next to their
+ * own WarmUpRunner. The health indicator is there even with warm-up
+ * disabled, as the readiness group lists it.
+ */
+@Configuration(proxyBeanMethods = false)
+public class WarmUpConfiguration {
+
+    @Bean
+    public WarmUpHealthIndicator warmUpHealthIndicator() {
+        return new WarmUpHealthIndicator();
+    }
+
+    @Bean
+    public WarmUpSettings warmUpSettings(@Value("${threadly.warm-up.connections:10}") int connections,
+                                         @Value("${threadly.warm-up.concurrency:4}") int concurrency,
+                                         @Value("${threadly.warm-up.requests-per-round:200}") int requestsPerRound,
+                                         @Value("${threadly.warm-up.tolerance:0.1}") double tolerance,
+                                         @Value("${threadly.warm-up.stable-rounds:3}") int stableRounds,
+                                         @Value("${threadly.warm-up.max-duration:60s}") Duration maxDuration) {
+        return new WarmUpSettings(connections, concurrency, requestsPerRound, tolerance, stableRounds, maxDuration);
+    }
+
+    @Bean
+    public RegistryStatusPublisher registryStatusPublisher(ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+        return new RegistryStatusPublisher(applicationInfoManager);
+    }
+}
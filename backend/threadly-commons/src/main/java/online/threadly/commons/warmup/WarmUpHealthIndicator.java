@@ -0,0 +1,48 @@
+package online.threadly.commons.warmup;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.time.Duration;
+
+/**
+ * The "warmUp" health component, part of the readiness group: OUT_OF_SERVICE
+ * from the moment the WarmUpRunner is created until it has finished, UP
+ * otherwise (including when warm-up is disabled).
+ */
+public class WarmUpHealthIndicator implements HealthIndicator {
+
+    private volatile boolean warming;
+    private volatile String phase = "none";
+    private volatile int rounds;
+    private volatile Duration medianLatency;
+
+    @Override
+    public Health health() {
+        Health.Builder health = warming ? Health.outOfService() : Health.up();
+        health.withDetail("phase", phase).withDetail("rounds", rounds);
+        if (medianLatency != null) {
+            health.withDetail("medianLatencyMillis", medianLatency.toNanos() / 1_000_000.0);
+        }
+        return health.build();
+    }
+
+    public void pending() {
+        warming = true;
+        phase = "pending";
+    }
+
+    public void phase(String phase) {
+        this.phase = phase;
+    }
+
+    public void round(int rounds, Duration medianLatency) {
+        this.rounds = rounds;
+        this.medianLatency = medianLatency;
+    }
+
+    public void finished() {
+        phase = "finished";
+        warming = false;
+    }
+}
@@ -0,0 +1,160 @@
+package online.threadly.commons.warmup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Warms a new instance up before it takes traffic. Spring Boot only reports
+ * the application ready, and RegistryStatusPublisher only marks it UP in
+ * Eureka, once this runner returns. Until then the instance is registered as
+ * STARTING and the readiness probe answers 503.
+ * <ol>
+ * <li>opens and validates the configured number of connections on each of
+ * the service's connection targets;</li>
+ * <li>runs the service's preload step, which returns the request mix;</li>
+ * <li>replays that mix against the local port, round after round, until the
+ * median latency of a round stays within the tolerance of the one before.</li>
+ * </ol>
+ * Every step is best effort: a failure is logged and the next step runs, and
+ * max-duration bounds the whole replay.
+ */
+public abstract class WarmUpRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    /**
+     * Where connections are opened: on the read side of a routing DataSource
+     * when readOnly, and inside around, e.g. to pick a shard.
+     */
+    public record ConnectionTarget(String name, boolean readOnly, Consumer<Runnable> around) {
+
+        public static ConnectionTarget primary() {
+            return new ConnectionTarget("read-write", false, Runnable::run);
+        }
+
+        public static ConnectionTarget readSide() {
+            return new ConnectionTarget("read-only", true, Runnable::run);
+        }
+    }
+
+    private final ApplicationContext applicationContext;
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+    private final WarmUpHealthIndicator health;
+    private final WarmUpSettings settings;
+
+    protected WarmUpRunner(ApplicationContext applicationContext, DataSource dataSource,
+                           PlatformTransactionManager transactionManager, WarmUpHealthIndicator health,
+                           WarmUpSettings settings) {
+        this.applicationContext = applicationContext;
+        this.dataSource = dataSource;
+        this.transactionManager = transactionManager;
+        this.health = health;
+        this.settings = settings;
+        health.pending();
+    }
+
+    protected abstract List<ConnectionTarget> connectionTargets();
+
+    /**
+     * Fills the service's caches and returns the requests to replay; failures
+     * are the implementation's to log, with whatever it managed to load.
+     */
+    protected abstract List<SyntheticTraffic.Request> preload();
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        long started = System.nanoTime();
+        try {
+            health.phase("connections");
+            for (ConnectionTarget target : connectionTargets()) {
+                warmConnections(target);
+            }
+
+            health.phase("catalog");
+            List<SyntheticTraffic.Request> mix = preload();
+
+            health.phase("traffic");
+            replay(mix);
+        } finally {
+            health.finished();
+        }
+        log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    // each transaction holds its connection until all are open, so the pool really grows to that many
+    private void warmConnections(ConnectionTarget target) throws InterruptedException {
+        int connections = settings.connections();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(target.readOnly());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        CountDownLatch open = new CountDownLatch(connections);
+        try (ExecutorService opener = Executors.newFixedThreadPool(connections)) {
+            for (int i = 0; i < connections; i++) {
+                opener.execute(() -> target.around().accept(() -> {
+                    try {
+                        transaction.executeWithoutResult(status -> {
+                            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                            open.countDown();
+                            awaitQuietly(open);
+                        });
+                    } catch (RuntimeException exception) {
+                        open.countDown();
+                        log.warn("Warm-up could not open a {} connection: {}", target.name(), exception.getMessage());
+                    }
+                }));
+            }
+        }
+    }
+
+    private void replay(List<SyntheticTraffic.Request> mix) throws InterruptedException {
+        if (!(applicationContext instanceof WebServerApplicationContext web) || web.getWebServer() == null) {
+            return;
+        }
+        int requestsPerRound = settings.requestsPerRound();
+        long deadline = System.nanoTime() + settings.maxDuration().toNanos();
+        LatencyPlateau plateau = new LatencyPlateau(settings.tolerance(), settings.stableRounds());
+        try (SyntheticTraffic traffic = new SyntheticTraffic(web.getWebServer().getPort(), mix,
+                settings.concurrency(), requestsPerRound)) {
+            for (int round = 1; System.nanoTime() < deadline; round++) {
+                SyntheticTraffic.Round result = traffic.run();
+                health.round(round, result.median());
+                log.debug("Warm-up round {}: median {} us, p99 {} us, {} failed", round,
+                        result.median().toNanos() / 1000, result.p99().toNanos() / 1000, result.failed());
+                if (result.failed() == requestsPerRound) {
+                    log.warn("Warm-up stopped: none of the {} requests of round {} succeeded", requestsPerRound, round);
+                    return;
+                }
+                if (plateau.reached(result.median().toNanos())) {
+                    log.info("Warm-up latency settled after {} rounds at a median of {} us", round,
+                            result.median().toNanos() / 1000);
+                    return;
+                }
+            }
+            log.warn("Warm-up latency had not settled after {}", settings.maxDuration());
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
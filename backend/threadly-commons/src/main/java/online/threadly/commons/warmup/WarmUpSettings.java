@@ -0,0 +1,18 @@
+package online.threadly.commons.warmup;
+
+import java.time.Duration;
+
+/**
+ * The threadly.warm-up.* settings every WarmUpRunner shares; what a service
+ * preloads is configured next to its own runner.
+ *
+ * @param connections connections opened and validated on each ConnectionTarget
+ * @param concurrency requests in flight at once during the replay
+ * @param requestsPerRound requests per replay round
+ * @param tolerance relative change of the median latency still counted as settled
+ * @param stableRounds settled rounds in a row that end the replay
+ * @param maxDuration bound on the whole replay
+ */
+public record WarmUpSettings(int connections, int concurrency, int requestsPerRound, double tolerance,
+                             int stableRounds, Duration maxDuration) {
+}
@@ -0,0 +1,143 @@
+package online.threadly.commons.diagnostics;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Id;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The whole path on H2: the auto-configuration proxies the DataSource and
+ * advises the Spring Data repositories, and the statements end up filed under
+ * the repository method that issued them.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sql-stats;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "threadly.sql-stats.n-plus-one-threshold=5"
+})
+class RepositorySqlAttributionAspectTest {
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private SqlStatistics sqlStatistics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void threeNotes() {
+        noteRepository.deleteAll();
+        for (String title : List.of("draft", "draft", "final")) {
+            noteRepository.save(new Note(UUID.randomUUID(), title));
+        }
+        sqlStatistics.reset();
+    }
+
+    @Test
+    void statementsAndRowsAreFiledUnderTheRepositoryMethod() {
+        assertThat(noteRepository.findByTitle("draft")).hasSize(2);
+        jdbcTemplate.queryForList("SELECT title FROM note", String.class);
+
+        Map<String, SqlStatistics.RepositoryMethodStats> methods = methods();
+        assertThat(methods.get("NoteRepository.findByTitle"))
+                .extracting(SqlStatistics.RepositoryMethodStats::calls, SqlStatistics.RepositoryMethodStats::statements,
+                        SqlStatistics.RepositoryMethodStats::rows)
+                .containsExactly(1L, 1L, 2L);
+        assertThat(methods.get("outside-repository"))
+                .extracting(SqlStatistics.RepositoryMethodStats::statements, SqlStatistics.RepositoryMethodStats::rows)
+                .containsExactly(1L, 3L);
+    }
+
+    @Test
+    void aRepositoryMethodCallingAnotherGetsItsStatementsBackAfterwards() {
+        assertThat(noteRepository.draftsOutOf()).isEqualTo("2/3");
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM note", Long.class);
+
+        Map<String, SqlStatistics.RepositoryMethodStats> methods = methods();
+        assertThat(methods.get("ArchiveRepository.findByTitle").statements()).isEqualTo(1);
+        assertThat(methods.get("NoteRepository.draftsOutOf"))
+                .extracting(SqlStatistics.RepositoryMethodStats::calls, SqlStatistics.RepositoryMethodStats::statements)
+                .containsExactly(1L, 1L);
+        assertThat(methods.get("outside-repository").statements()).isEqualTo(1);
+    }
+
+    private Map<String, SqlStatistics.RepositoryMethodStats> methods() {
+        return sqlStatistics.report().repositoryMethods().stream()
+                .collect(Collectors.toMap(SqlStatistics.RepositoryMethodStats::method, Function.identity()));
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackageClasses = Note.class)
+    @EnableJpaRepositories(basePackageClasses = NoteRepository.class, considerNestedRepositories = true)
+    static class Notes {
+    }
+
+    @Entity(name = "note")
+    static class Note {
+
+        @Id
+        private UUID id;
+
+        private String title;
+
+        protected Note() {
+        }
+
+        Note(UUID id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+
+    interface NoteRepository extends JpaRepository<Note, UUID>, NoteSummaries {
+
+        List<Note> findByTitle(String title);
+    }
+
+    interface ArchiveRepository extends JpaRepository<Note, UUID> {
+
+        List<Note> findByTitle(String title);
+    }
+
+    interface NoteSummaries {
+
+        String draftsOutOf();
+    }
+
+    // a fragment calling another repository, then querying on its own
+    static class NoteSummariesImpl implements NoteSummaries {
+
+        @Autowired
+        private ArchiveRepository archiveRepository;
+
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        @Override
+        public String draftsOutOf() {
+            int drafts = archiveRepository.findByTitle("draft").size();
+            return drafts + "/" + entityManager.createQuery("SELECT COUNT(n) FROM note n", Long.class).getSingleResult();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package online.threadly.commons.diagnostics;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlStatisticsFilterTest {
+
+    private final SqlStatistics statistics = new SqlStatistics(Duration.ofHours(1), 20);
+    private final SqlStatisticsFilter filter = new SqlStatisticsFilter(statistics);
+
+    @Test
+    void statementsAreFiledUnderTheMatchedRoutePattern() throws Exception {
+        for (String id : List.of("7", "8")) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/products/" + id), new MockHttpServletResponse(),
+                    new MockFilterChain(servlet("/api/v1/products/{id}", 2)));
+        }
+
+        assertThat(statistics.report().endpoints()).singleElement().satisfies(endpoint -> {
+            assertThat(endpoint.endpoint()).isEqualTo("GET /api/v1/products/{id}");
+            assertThat(endpoint.requests()).isEqualTo(2);
+            assertThat(endpoint.statements()).isEqualTo(4);
+        });
+    }
+
+    @Test
+    void aRequestNoHandlerMatchedIsFiledAsUnmapped() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("POST", "/login"), new MockHttpServletResponse(),
+                new MockFilterChain(servlet(null, 1)));
+
+        assertThat(statistics.report().endpoints()).extracting(SqlStatistics.EndpointStats::endpoint)
+                .containsExactly("POST unmapped");
+    }
+
+    @Test
+    void theRequestIsClosedEvenWhenTheChainThrows() {
+        HttpServlet failing = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/cart");
+                issueStatements(1);
+                throw new IllegalStateException("handler failed");
+            }
+        };
+
+        assertThatThrownBy(() -> filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/cart"), new MockHttpServletResponse(),
+                new MockFilterChain(failing))).hasMessage("handler failed");
+        // a statement on this thread afterwards belongs to no request
+        issueStatements(1);
+
+        assertThat(statistics.report().endpoints()).singleElement()
+                .extracting(SqlStatistics.EndpointStats::statements).isEqualTo(1L);
+    }
+
+    // a handler that issues statements, the pattern being set by the handler mapping as it dispatches
+    private HttpServlet servlet(String pattern, int statements) {
+        return new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                if (pattern != null) {
+                    request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+                }
+                issueStatements(statements);
+            }
+        };
+    }
+
+    private void issueStatements(int count) {
+        for (int i = 0; i < count; i++) {
+            ExecutionInfo execution = new ExecutionInfo();
+            List<QueryInfo> queries = List.of(new QueryInfo("select 1"));
+            statistics.beforeQuery(execution, queries);
+            statistics.afterQuery(execution, queries);
+        }
+    }
+}
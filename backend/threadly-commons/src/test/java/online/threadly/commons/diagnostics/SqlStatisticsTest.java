@@ -0,0 +1,182 @@
+package online.threadly.commons.diagnostics;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Drives SqlStatistics the way datasource-proxy does: one beforeQuery and
+ * afterQuery per statement, one afterMethod per ResultSet.next().
+ */
+@ExtendWith(OutputCaptureExtension.class)
+class SqlStatisticsTest {
+
+    private final SqlStatistics statistics = new SqlStatistics(Duration.ofHours(1), 3);
+
+    @Test
+    void statementsAndRowsAreFiledUnderTheRepositoryMethodRunning() {
+        String previous = statistics.enterRepositoryMethod("CartRepository.findByUserId");
+        query(statistics, new QueryInfo("select * from cart where user_id=?"), null);
+        next(statistics, true);
+        next(statistics, true);
+        next(statistics, false);
+        statistics.exitRepositoryMethod(previous);
+
+        query(statistics, new QueryInfo("update cart set updated_at=?"), 4);
+
+        assertThat(method("CartRepository.findByUserId"))
+                .extracting(SqlStatistics.RepositoryMethodStats::calls, SqlStatistics.RepositoryMethodStats::statements,
+                        SqlStatistics.RepositoryMethodStats::rows)
+                .containsExactly(1L, 1L, 2L);
+        assertThat(method("outside-repository"))
+                .extracting(SqlStatistics.RepositoryMethodStats::statements, SqlStatistics.RepositoryMethodStats::rows)
+                .containsExactly(1L, 4L);
+    }
+
+    @Test
+    void aNestedRepositoryCallHandsBackToTheCallerWhenItReturns() {
+        String outermost = statistics.enterRepositoryMethod("CartRepository.findCart");
+        String caller = statistics.enterRepositoryMethod("CartItemRepository.findAllByCartId");
+        query(statistics, new QueryInfo("select * from cart_item where cart_id=?"), null);
+        statistics.exitRepositoryMethod(caller);
+        query(statistics, new QueryInfo("select * from cart where id=?"), null);
+        statistics.exitRepositoryMethod(outermost);
+        query(statistics, new QueryInfo("commit"), null);
+
+        assertThat(outermost).isNull();
+        assertThat(caller).isEqualTo("CartRepository.findCart");
+        assertThat(method("CartItemRepository.findAllByCartId").statements()).isEqualTo(1);
+        assertThat(method("CartRepository.findCart").statements()).isEqualTo(1);
+        assertThat(method("outside-repository").statements()).isEqualTo(1);
+    }
+
+    @Test
+    void aRequestOverTheStatementThresholdIsLoggedWithItsBreakdown(CapturedOutput output) {
+        statistics.beginRequest();
+        String previous = statistics.enterRepositoryMethod("CartItemRepository.findByCartIdAndProductId");
+        for (int i = 0; i < 4; i++) {
+            query(statistics, new QueryInfo("select * from cart_item where cart_id=? and product_id=?"), null);
+        }
+        statistics.exitRepositoryMethod(previous);
+        statistics.endRequest("GET /api/v1/cart");
+
+        statistics.beginRequest();
+        query(statistics, new QueryInfo("select 1"), null);
+        statistics.endRequest("GET /api/v1/cart");
+
+        assertThat(output).contains(
+                "GET /api/v1/cart issued 4 SQL statements (threshold 3), by repository method: {CartItemRepository.findByCartIdAndProductId=4}");
+        SqlStatistics.EndpointStats endpoint = statistics.report().endpoints().get(0);
+        assertThat(endpoint.requests()).isEqualTo(2);
+        assertThat(endpoint.statements()).isEqualTo(5);
+        assertThat(endpoint.statementsPerRequest()).isEqualTo(2.5);
+        assertThat(endpoint.maxStatements()).isEqualTo(4);
+        assertThat(endpoint.nPlusOneSuspects()).isEqualTo(1);
+    }
+
+    @Test
+    void aRequestIssuingNoStatementsIsNotCounted() {
+        statistics.beginRequest();
+        statistics.endRequest("GET /actuator/health");
+
+        assertThat(statistics.report().endpoints()).isEmpty();
+    }
+
+    @Test
+    void slowStatementsAreLoggedWithTheTypesOfTheirBindsNeverTheValues(CapturedOutput output) throws Exception {
+        SqlStatistics everythingSlow = new SqlStatistics(Duration.ZERO, 20);
+        QueryInfo lookup = new QueryInfo("select * from users where email=? and id=? and deleted_at=?");
+        lookup.setParametersList(List.of(List.of(
+                parameter("setLong", 2, 987654321L),
+                parameter("setString", 1, "someone@example.com"),
+                parameter("setNull", 3, Types.TIMESTAMP))));
+        QueryInfo batch = new QueryInfo("insert into cart_item (id, quantity) values (?, ?)");
+        batch.setParametersList(List.of(
+                List.of(parameter("setObject", 1, "cart-item-alpha"), parameter("setInt", 2, 1)),
+                List.of(parameter("setObject", 1, "cart-item-beta"), parameter("setInt", 2, 3))));
+
+        String previous = everythingSlow.enterRepositoryMethod("UserRepository.findByEmail");
+        query(everythingSlow, lookup, null);
+        everythingSlow.exitRepositoryMethod(previous);
+        query(everythingSlow, batch, new int[]{1, 1});
+
+        assertThat(output).contains("in UserRepository.findByEmail: select * from users where email=? and id=? and deleted_at=? "
+                + "binds (String, Long, null)");
+        assertThat(output).contains("insert into cart_item (id, quantity) values (?, ?) binds (String, Integer) x 2");
+        assertThat(output).doesNotContain("someone@example.com", "987654321", "cart-item-alpha", "cart-item-beta");
+        assertThat(everythingSlow.report().slowStatements()).isEqualTo(2);
+    }
+
+    @Test
+    void theReportListsTheCostliestMethodsFirstAndResets() {
+        SqlStatisticsEndpoint endpoint = new SqlStatisticsEndpoint(statistics);
+        for (String method : List.of("ProductRepository.findAllByIdForUpdate", "ProductRepository.findBySlug")) {
+            String previous = statistics.enterRepositoryMethod(method);
+            query(statistics, new QueryInfo("select 1"), null);
+            statistics.exitRepositoryMethod(previous);
+        }
+
+        SqlStatistics.Report report = endpoint.report();
+        assertThat(report.slowThresholdMs()).isEqualTo(3_600_000);
+        assertThat(report.nPlusOneThreshold()).isEqualTo(3);
+        assertThat(report.repositoryMethods()).extracting(SqlStatistics.RepositoryMethodStats::method)
+                .containsExactlyInAnyOrder("ProductRepository.findAllByIdForUpdate", "ProductRepository.findBySlug");
+        assertThat(report.repositoryMethods()).extracting(SqlStatistics.RepositoryMethodStats::totalMs)
+                .isSortedAccordingTo((first, second) -> Double.compare(second, first));
+
+        endpoint.reset();
+        assertThat(endpoint.report().repositoryMethods()).isEmpty();
+    }
+
+    private SqlStatistics.RepositoryMethodStats method(String name) {
+        return statistics.report().repositoryMethods().stream()
+                .filter(method -> method.method().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    // result is the update count(s); a query's rows are counted through next()
+    private static void query(SqlStatistics statistics, QueryInfo query, Object result) {
+        ExecutionInfo execution = new ExecutionInfo();
+        execution.setResult(result);
+        statistics.beforeQuery(execution, List.of(query));
+        statistics.afterQuery(execution, List.of(query));
+    }
+
+    private static void next(SqlStatistics statistics, boolean hasRow) {
+        MethodExecutionContext context = new MethodExecutionContext();
+        try {
+            context.setMethod(ResultSet.class.getMethod("next"));
+        } catch (NoSuchMethodException exception) {
+            throw new AssertionError(exception);
+        }
+        context.setTarget(mock(ResultSet.class));
+        context.setResult(hasRow);
+        statistics.beforeMethod(context);
+        statistics.afterMethod(context);
+    }
+
+    private static ParameterSetOperation parameter(String setter, int index, Object value) throws NoSuchMethodException {
+        Class<?> type = switch (setter) {
+            case "setLong" -> long.class;
+            case "setInt", "setNull" -> int.class;
+            case "setString" -> String.class;
+            default -> Object.class;
+        };
+        return new ParameterSetOperation(PreparedStatement.class.getMethod(setter, int.class, type), new Object[]{index, value});
+    }
+}
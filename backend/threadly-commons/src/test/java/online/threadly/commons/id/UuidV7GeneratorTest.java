@@ -0,0 +1,114 @@
+package online.threadly.commons.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7GeneratorTest {
+
+    private static final long MILLIS = 1_750_000_000_000L;
+    private static final int COUNTER_VALUES = 4096;
+
+    @Test
+    void setsTheVersionVariantAndTimestampBits() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7Generator.next();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(millis(id)).isBetween(before, System.currentTimeMillis() + 1);
+
+        UUID held = new UuidV7Generator.Sequence().next(MILLIS);
+        assertThat(millis(held)).isEqualTo(MILLIS);
+        assertThat(counter(held)).isZero();
+    }
+
+    @Test
+    void idsAreStrictlyIncreasingWithinAMillisecondAcrossThreads() throws Exception {
+        UuidV7Generator.Sequence sequence = new UuidV7Generator.Sequence();
+        int threads = 4;
+        int perThread = 1000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<UUID>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<UUID> ids = new ArrayList<>(perThread);
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(sequence.next(MILLIS));
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+
+            Set<Long> seen = new HashSet<>();
+            for (Future<List<UUID>> result : results) {
+                List<UUID> ids = result.get();
+                for (int i = 1; i < ids.size(); i++) {
+                    assertThat(Long.compareUnsigned(ids.get(i).getMostSignificantBits(), ids.get(i - 1).getMostSignificantBits()))
+                            .isPositive();
+                }
+                ids.forEach(id -> seen.add(id.getMostSignificantBits()));
+            }
+            // every id of the millisecond took its own counter value
+            assertThat(seen).hasSize(threads * perThread);
+            assertThat(seen).allSatisfy(mostSignificant -> assertThat(mostSignificant >>> 16).isEqualTo(MILLIS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void aFullMillisecondBorrowsFromTheNext() {
+        UuidV7Generator.Sequence sequence = new UuidV7Generator.Sequence();
+        UUID last = null;
+        for (int i = 0; i < COUNTER_VALUES; i++) {
+            last = sequence.next(MILLIS);
+        }
+        assertThat(millis(last)).isEqualTo(MILLIS);
+        assertThat(counter(last)).isEqualTo(COUNTER_VALUES - 1);
+
+        UUID overflow = sequence.next(MILLIS);
+        assertThat(millis(overflow)).isEqualTo(MILLIS + 1);
+        assertThat(counter(overflow)).isZero();
+
+        // the clock catching up continues after the borrowed value instead of repeating it
+        UUID caughtUp = sequence.next(MILLIS + 1);
+        assertThat(millis(caughtUp)).isEqualTo(MILLIS + 1);
+        assertThat(counter(caughtUp)).isEqualTo(1);
+    }
+
+    @Test
+    void aClockSteppingBackKeepsIdsIncreasing() {
+        UuidV7Generator.Sequence sequence = new UuidV7Generator.Sequence();
+        UUID beforeStep = sequence.next(MILLIS);
+
+        UUID afterStep = sequence.next(MILLIS - 5_000);
+
+        assertThat(Long.compareUnsigned(afterStep.getMostSignificantBits(), beforeStep.getMostSignificantBits())).isPositive();
+        assertThat(millis(afterStep)).isEqualTo(MILLIS);
+        assertThat(counter(afterStep)).isEqualTo(1);
+        assertThat(afterStep.version()).isEqualTo(7);
+    }
+
+    private static long millis(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    private static long counter(UUID id) {
+        return id.getMostSignificantBits() & 0xFFF;
+    }
+}
@@ -0,0 +1,31 @@
+package online.threadly.commons.warmup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyPlateauTest {
+
+    @Test
+    void isReachedOnceLatencyHoldsStillForEnoughRounds() {
+        LatencyPlateau plateau = new LatencyPlateau(0.1, 3);
+
+        assertThat(plateau.reached(9_000)).isFalse();
+        assertThat(plateau.reached(4_000)).isFalse();
+        assertThat(plateau.reached(2_000)).isFalse();
+        assertThat(plateau.reached(2_100)).isFalse();
+        assertThat(plateau.reached(1_950)).isFalse();
+        assertThat(plateau.reached(2_000)).isTrue();
+    }
+
+    @Test
+    void aRoundOutsideTheToleranceStartsCountingAgain() {
+        LatencyPlateau plateau = new LatencyPlateau(0.1, 2);
+
+        plateau.reached(1_000);
+        plateau.reached(1_050);
+        assertThat(plateau.reached(700)).isFalse();
+        assertThat(plateau.reached(710)).isFalse();
+        assertThat(plateau.reached(690)).isTrue();
+    }
+}
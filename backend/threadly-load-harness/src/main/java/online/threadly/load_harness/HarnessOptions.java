@@ -0,0 +1,64 @@
+package online.threadly.load_harness;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line of the harness, every option is --name=value:
+ * <pre>
+ * --rate=100                 requests per second, fixed arrival rate (open model)
+ * --duration=60s             measured period
+ * --warmup=15s               load applied before measuring, not recorded
+ * --mix=browse:40,product-detail:20,add-to-cart:15,view-cart:20,login:5
+ * --users=50                 users signed up before the run
+ * --products=200             products created before the run
+ * --virtual-threads=false    run the servlet services in virtual-thread mode
+ * --product-delay=0ms        added to every /products/bulk call, simulates a slow product service
+ * --trace-sample=0           share of requests traced end to end, 0 turns tracing off
+ * </pre>
+ */
+record HarnessOptions(int rate, Duration duration, Duration warmup, Map<String, Integer> mix, int users, int products,
+                      boolean virtualThreads, Duration productDelay, double traceSample) {
+
+    static final String DEFAULT_MIX = "browse:40,product-detail:20,add-to-cart:15,view-cart:20,login:5";
+
+    static HarnessOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return new HarnessOptions(
+                Integer.parseInt(values.getOrDefault("rate", "100")),
+                parseDuration(values.getOrDefault("duration", "60s")),
+                parseDuration(values.getOrDefault("warmup", "15s")),
+                parseMix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Integer.parseInt(values.getOrDefault("users", "50")),
+                Integer.parseInt(values.getOrDefault("products", "200")),
+                Boolean.parseBoolean(values.getOrDefault("virtual-threads", "false")),
+                parseDuration(values.getOrDefault("product-delay", "0ms")),
+                Double.parseDouble(values.getOrDefault("trace-sample", "0")));
+    }
+
+    private static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1) : value));
+    }
+
+    private static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            mix.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+}
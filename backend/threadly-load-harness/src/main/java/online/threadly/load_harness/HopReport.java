@@ -0,0 +1,37 @@
+package online.threadly.load_harness;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency per hop (service and span name) over the sampled traces, so a slow
+ * scenario can be pinned on the gateway, the cart, its queries or the product call.
+ */
+class HopReport {
+
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+
+    static void print(List<SpanData> spans) {
+        Map<String, Histogram> hops = new TreeMap<>();
+        long traces = spans.stream().map(SpanData::getTraceId).distinct().count();
+        for (SpanData span : spans) {
+            String hop = span.getResource().getAttribute(SERVICE_NAME) + "  " + span.getName();
+            hops.computeIfAbsent(hop, key -> new Histogram(TimeUnit.MINUTES.toNanos(2), 3))
+                    .recordValue(Math.min(span.getEndEpochNanos() - span.getStartEpochNanos(), TimeUnit.MINUTES.toNanos(2)));
+        }
+
+        System.out.printf("%n%d sampled traces%n%-90s %8s %9s %9s %9s%n", traces, "hop", "spans", "p50 ms", "p99 ms", "max ms");
+        hops.forEach((hop, histogram) -> System.out.printf("%-90s %8d %9.2f %9.2f %9.2f%n",
+                hop,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1_000_000.0,
+                histogram.getValueAtPercentile(99) / 1_000_000.0,
+                histogram.getMaxValue() / 1_000_000.0));
+    }
+}
@@ -0,0 +1,61 @@
+package online.threadly.load_harness;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-scenario latency histograms. Latencies are measured from the time a
+ * request was scheduled to be sent, not from when it actually left, so a
+ * stalled system cannot hide its queueing delay (coordinated omission).
+ */
+class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+
+    LatencyReport(Iterable<String> scenarios) {
+        for (String scenario : scenarios) {
+            histograms.put(scenario, new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(scenario, new LongAdder());
+        }
+    }
+
+    void record(String scenario, long latencyNanos, boolean success) {
+        histograms.get(scenario).recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+        if (!success) {
+            errors.get(scenario).increment();
+        }
+    }
+
+    void print(double seconds) {
+        System.out.printf("%n%-16s %9s %8s %8s %9s %9s %9s %9s %9s%n",
+                "scenario", "requests", "errors", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-16s %9d %8d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(),
+                    histogram.getTotalCount(),
+                    errors.get(entry.getKey()).sum(),
+                    histogram.getTotalCount() / seconds,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
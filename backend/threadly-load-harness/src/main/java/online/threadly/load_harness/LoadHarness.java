@@ -0,0 +1,56 @@
+package online.threadly.load_harness;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots gateway, auth, cart and product in-process, seeds them and drives an
+ * open-model workload through the gateway, then prints per-scenario latency
+ * percentiles. Needs no network, Postgres or Eureka.
+ *
+ * <pre>
+ * mvn exec:java -Dexec.args="--rate=200 --duration=60s --mix=browse:50,view-cart:30,add-to-cart:20"
+ * </pre>
+ */
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        HarnessOptions options = HarnessOptions.parse(args);
+        for (String scenario : options.mix().keySet()) {
+            if (!Workload.SCENARIOS.contains(scenario)) {
+                throw new IllegalArgumentException("unknown scenario " + scenario + ", expected one of " + Workload.SCENARIOS);
+            }
+        }
+
+        try (ServiceStack stack = new ServiceStack(options.virtualThreads(), options.productDelay(), options.traceSample());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            stack.start();
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            Workload workload = new Workload(httpClient, stack.gatewayPort(), stack.productPort());
+            workload.seed(options.products(), options.users());
+
+            System.out.printf("%nrunning %d req/s for %ds (+%ds warm-up), mix %s, %s threads, product delay %dms%n",
+                    options.rate(), options.duration().toSeconds(), options.warmup().toSeconds(), options.mix(),
+                    options.virtualThreads() ? "virtual" : "platform", options.productDelay().toMillis());
+            LatencyReport report = new LatencyReport(options.mix().keySet());
+            Instant measureFrom = Instant.now().plus(options.warmup());
+            new OpenModelLoadGenerator(httpClient, workload, options.mix())
+                    .run(options.rate(), options.warmup(), options.duration(), report);
+            report.print(options.duration().toMillis() / 1000.0);
+            if (options.traceSample() > 0) {
+                stack.flushSpans();
+                HopReport.print(stack.spanCollector().spansStartedAfter(
+                        TimeUnit.SECONDS.toNanos(measureFrom.getEpochSecond()) + measureFrom.getNano()));
+            }
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,70 @@
+package online.threadly.load_harness;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a constant arrival rate regardless of how fast responses
+ * come back (open model). Requests are sent asynchronously, a slow response
+ * never delays the next send, and each latency is taken from the request's
+ * scheduled send time.
+ */
+class OpenModelLoadGenerator {
+
+    private final HttpClient httpClient;
+    private final Workload workload;
+    private final List<String> weightedScenarios = new ArrayList<>();
+
+    OpenModelLoadGenerator(HttpClient httpClient, Workload workload, Map<String, Integer> mix) {
+        this.httpClient = httpClient;
+        this.workload = workload;
+        mix.forEach((scenario, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weightedScenarios.add(scenario);
+            }
+        });
+    }
+
+    void run(int rate, Duration warmup, Duration duration, LatencyReport report) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        for (long i = 0; ; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            if (scheduledAt >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = scheduledAt - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String scenario = weightedScenarios.get(ThreadLocalRandom.current().nextInt(weightedScenarios.size()));
+            boolean measured = scheduledAt >= measureFrom;
+            CompletableFuture<?> response = httpClient.sendAsync(workload.request(scenario), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((httpResponse, throwable) -> {
+                        if (measured) {
+                            boolean success = throwable == null && httpResponse.statusCode() / 100 == 2;
+                            report.record(scenario, System.nanoTime() - scheduledAt, success);
+                        }
+                    });
+            inFlight.add(response);
+            if (inFlight.size() > 10_000) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).exceptionally(throwable -> null).join();
+    }
+}
@@ -0,0 +1,200 @@
+package online.threadly.load_harness;
+
+import online.threadly.api_gateway.ThreadlyApiGatewayApplication;
+import online.threadly.order_and_cart_management.OrderAndCartManagementApplication;
+import online.threadly.product.Application;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots product, auth, cart and gateway in this JVM, each on a random port
+ * with its own in-memory H2 database. Eureka is switched off and every
+ * service finds the others through a static simple-discovery registry.
+ * Each service reads the application.yml/properties packaged in its own jar,
+ * the harness only overrides what has to differ for an in-process run.
+ * With virtual threads on, the servlet services also load their
+ * application-virtual-threads file, exactly as the virtual-threads profile would.
+ * With tracing on, every service exports its spans to one shared collector.
+ */
+class ServiceStack implements AutoCloseable {
+
+    private static final String JWT_SECRET = "bZ1C/BhnIVRROhmEch4+xyoc1wc/aI9z1J1+gxRp5qACifGl3iVz3DczLoCZz382pFsjzlXwnLvMzKaf8sPjyA==";
+
+    private static final String SERVLET_EXCLUDES = String.join(",",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration",
+            "org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration");
+
+    private static final String GATEWAY_EXCLUDES = String.join(",",
+            "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+            "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurityAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration",
+            "org.springframework.boot.actuate.autoconfigure.security.reactive.ReactiveManagementWebSecurityAutoConfiguration");
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private final boolean virtualThreads;
+    private final Duration productDelay;
+    private final double traceSample;
+    private final SpanCollector spanCollector = new SpanCollector();
+    private int productPort;
+    private int gatewayPort;
+
+    ServiceStack(boolean virtualThreads, Duration productDelay, double traceSample) {
+        this.virtualThreads = virtualThreads;
+        this.productDelay = productDelay;
+        this.traceSample = traceSample;
+    }
+
+    void start() {
+        ConfigurableApplicationContext product = startServlet(Application.class, "application.properties", "threadly-product",
+                SERVLET_EXCLUDES, context -> context.getBeanFactory().registerSingleton("harnessBulkDelayFilter", bulkDelayFilter()));
+        productPort = port(product);
+
+        ConfigurableApplicationContext auth = startServlet(online.threadly.user_authentication.Application.class, "application.yml",
+                "threadly-user-authentication", "",
+                "--application.security.jwt.secret-key=" + JWT_SECRET,
+                "--application.security.jwt.expiration=86400000");
+        int authPort = port(auth);
+
+        ConfigurableApplicationContext cart = startServlet(OrderAndCartManagementApplication.class, "application.yml",
+                "threadly-order-and-cart-management", SERVLET_EXCLUDES,
+                "--cart.sweeper.enabled=false",
+                instance("threadly-product", productPort));
+        int cartPort = port(cart);
+
+        ConfigurableApplicationContext gateway = start(ThreadlyApiGatewayApplication.class, WebApplicationType.REACTIVE,
+                configLocation(ThreadlyApiGatewayApplication.class, "application.yml"),
+                "--spring.autoconfigure.exclude=" + GATEWAY_EXCLUDES,
+                "--application.security.jwt.secret-key=" + JWT_SECRET,
+                "--application.security.jwt.expiration=86400000",
+                instance("threadly-product", productPort),
+                instance("threadly-user-authentication", authPort),
+                instance("threadly-order-and-cart-management", cartPort));
+        gatewayPort = port(gateway);
+    }
+
+    int gatewayPort() {
+        return gatewayPort;
+    }
+
+    SpanCollector spanCollector() {
+        return spanCollector;
+    }
+
+    // spans are exported in batches, push out whatever is still buffered
+    void flushSpans() {
+        for (ConfigurableApplicationContext context : contexts) {
+            context.getBeanProvider(SdkTracerProvider.class)
+                    .ifAvailable(tracerProvider -> tracerProvider.forceFlush().join(10, TimeUnit.SECONDS));
+        }
+    }
+
+    // admin product writes go straight to the product service, the gateway would require an ADMIN token
+    int productPort() {
+        return productPort;
+    }
+
+    private ConfigurableApplicationContext startServlet(Class<?> application, String configFile, String database,
+                                                       String excludes, String... extraArgs) {
+        return startServlet(application, configFile, database, excludes, context -> {
+        }, extraArgs);
+    }
+
+    private ConfigurableApplicationContext startServlet(Class<?> application, String configFile, String database, String excludes,
+                                                       ApplicationContextInitializer<ConfigurableApplicationContext> initializer,
+                                                       String... extraArgs) {
+        String virtualThreadsFile = configFile.replace("application.", "application-virtual-threads.");
+        List<String> args = new ArrayList<>(List.of(
+                virtualThreads ? configLocation(application, configFile, virtualThreadsFile) : configLocation(application, configFile),
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.autoconfigure.exclude=" + excludes,
+                "--spring.cloud.gateway.server.webflux.enabled=false"));
+        args.addAll(List.of(extraArgs));
+        return start(application, WebApplicationType.SERVLET, initializer, args.toArray(String[]::new));
+    }
+
+    private ConfigurableApplicationContext start(Class<?> application, WebApplicationType webApplicationType, String... args) {
+        return start(application, webApplicationType, context -> {
+        }, args);
+    }
+
+    private ConfigurableApplicationContext start(Class<?> application, WebApplicationType webApplicationType,
+                                                 ApplicationContextInitializer<ConfigurableApplicationContext> initializer,
+                                                 String... args) {
+        List<String> allArgs = new ArrayList<>(List.of(args));
+        allArgs.addAll(List.of(
+                "--server.port=0",
+                "--spring.profiles.active=harness",
+                "--spring.main.banner-mode=off",
+                "--eureka.client.enabled=false",
+                "--spring.devtools.restart.enabled=false",
+                "--logging.level.root=WARN",
+                "--management.tracing.enabled=" + (traceSample > 0),
+                "--management.tracing.sampling.probability=" + traceSample));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(application)
+                .web(webApplicationType)
+                .initializers(initializer,
+                        tracingContext -> tracingContext.getBeanFactory().registerSingleton("harnessSpanCollector", spanCollector))
+                .run(allArgs.toArray(String[]::new));
+        contexts.add(context);
+        return context;
+    }
+
+    // simulates a slow threadly-product for the cart's bulk lookup only, so cart reads hold their request thread
+    private Filter bulkDelayFilter() {
+        return (request, response, chain) -> {
+            if (!productDelay.isZero() && ((HttpServletRequest) request).getRequestURI().endsWith("/products/bulk")) {
+                try {
+                    Thread.sleep(productDelay);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            chain.doFilter(request, response);
+        };
+    }
+
+    // points Spring at config files inside the service's own jar, every jar on this classpath has an application.yml
+    private static String configLocation(Class<?> application, String... configFiles) {
+        String location = application.getProtectionDomain().getCodeSource().getLocation().toString();
+        List<String> files = new ArrayList<>();
+        for (String configFile : configFiles) {
+            files.add(location.endsWith(".jar") ? "jar:" + location + "!/" + configFile : location + configFile);
+        }
+        return "--spring.config.location=" + String.join(",", files);
+    }
+
+    private static String instance(String serviceId, int port) {
+        return "--spring.cloud.discovery.client.simple.instances." + serviceId + "[0].uri=http://localhost:" + port;
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    @Override
+    public void close() {
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            contexts.get(i).close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package online.threadly.load_harness;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One span exporter shared by all services in the stack, so a request's spans
+ * from gateway, cart and product end up in one place.
+ */
+class SpanCollector implements SpanExporter {
+
+    private final List<SpanData> spans = new ArrayList<>();
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> finished) {
+        spans.addAll(finished);
+        return CompletableResultCode.ofSuccess();
+    }
+
+    synchronized List<SpanData> spansStartedAfter(long epochNanos) {
+        return spans.stream().filter(span -> span.getStartEpochNanos() >= epochNanos).toList();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,113 @@
+package online.threadly.load_harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeds products and users, then builds the request of each scenario. Every
+ * scenario goes through the gateway exactly like the frontend does.
+ */
+class Workload {
+
+    static final List<String> SCENARIOS = List.of("browse", "product-detail", "add-to-cart", "view-cart", "login");
+
+    private static final String PASSWORD = "load-harness-password";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String gateway;
+    private final String productService;
+    private final List<String> productIds = new ArrayList<>();
+    private final List<String> productSlugs = new ArrayList<>();
+    private final List<String> emails = new ArrayList<>();
+    private final List<String> tokens = new ArrayList<>();
+
+    Workload(HttpClient httpClient, int gatewayPort, int productPort) {
+        this.httpClient = httpClient;
+        this.gateway = "http://localhost:" + gatewayPort;
+        this.productService = "http://localhost:" + productPort;
+    }
+
+    void seed(int products, int users) throws IOException, InterruptedException {
+        for (int i = 0; i < products; i++) {
+            JsonNode created = send(post(productService + "/api/v1/admin/products", Map.of(
+                    "name", "Load Harness Shirt " + i,
+                    "slug", "load-harness-shirt-" + i,
+                    "brand", i % 2 == 0 ? "POLO" : "LEVIS",
+                    "description", "Seeded by threadly-load-harness",
+                    "images", List.of("https://cdn.threadly.online/harness/" + i + ".jpg"),
+                    "stock", 1_000_000,
+                    "price", 499.0 + i)));
+            productIds.add(created.path("data").path("id").asText());
+            productSlugs.add(created.path("data").path("slug").asText());
+        }
+        for (int i = 0; i < users; i++) {
+            String email = "harness-user-" + i + "@threadly.online";
+            JsonNode auth = send(post(gateway + "/api/v1/auth/signup", Map.of("name", "Harness User " + i, "email", email, "password", PASSWORD)));
+            emails.add(email);
+            tokens.add(auth.path("token").asText());
+        }
+        // every user starts with a cart, so view-cart never hits "cart not found"
+        for (String token : tokens) {
+            send(authorized(post(gateway + "/api/v1/cart", Map.of("productId", randomOf(productIds), "quantity", 1)), token));
+        }
+    }
+
+    HttpRequest request(String scenario) {
+        return switch (scenario) {
+            case "browse" -> get(gateway + "/api/v1/products").build();
+            case "product-detail" -> get(gateway + "/api/v1/products/slug/" + randomOf(productSlugs)).build();
+            case "add-to-cart" -> authorized(post(gateway + "/api/v1/cart", Map.of("productId", randomOf(productIds), "quantity", 1)), randomOf(tokens));
+            case "view-cart" -> authorized(get(gateway + "/api/v1/cart"), randomOf(tokens));
+            case "login" -> post(gateway + "/api/v1/auth/login", Map.of("email", randomOf(emails), "password", PASSWORD)).build();
+            default -> throw new IllegalArgumentException("unknown scenario " + scenario + ", expected one of " + SCENARIOS);
+        };
+    }
+
+    private JsonNode send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return send(request.build());
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("seeding failed: " + request.method() + " " + request.uri() + " -> " + response.statusCode() + " " + response.body());
+        }
+        return response.body().isEmpty() ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+    }
+
+    private HttpRequest.Builder get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET();
+    }
+
+    private HttpRequest.Builder post(String url, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static HttpRequest authorized(HttpRequest.Builder request, String token) {
+        return request.header("Authorization", "Bearer " + token).build();
+    }
+
+    private static <T> T randomOf(List<T> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+}
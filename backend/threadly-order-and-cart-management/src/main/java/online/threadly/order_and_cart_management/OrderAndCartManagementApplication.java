@@ -1,13 +1,18 @@
 package online.threadly.order_and_cart_management;
 
+import online.threadly.commons.warmup.WarmUpConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@Import(WarmUpConfiguration.class)
 @EnableFeignClients
+@EnableScheduling
 public class OrderAndCartManagementApplication {
 
 	public static void main(String[] args) {
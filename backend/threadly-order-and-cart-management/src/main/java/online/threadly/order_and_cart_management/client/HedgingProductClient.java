@@ -0,0 +1,236 @@
+package online.threadly.order_and_cart_management.client;
+
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.service.ProductLookupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedged reads against threadly-product. If the bulk lookup has not answered
+ * within the observed p95 latency, the same request is sent again and whichever
+ * answer arrives first wins. Both calls are pinned to instances picked here in
+ * turn, the hedge to the one after the primary's, so one slow replica no longer
+ * sets the tail; with a single instance registered nothing is hedged.
+ * A hedge takes a permit of its own from the product-service bulkhead the
+ * primary runs under, and hedges are capped at a share of lookups (the budget),
+ * so a slow threadly-product sees at most that much extra load rather than
+ * double. Only used for the idempotent bulk read, never for stock reservation.
+ * The read is sent as CBOR while binary encoding is on; an instance that cannot
+ * handle it (415/406) switches this client to JSON for good.
+ */
+@Component
+public class HedgingProductClient {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgingProductClient.class);
+
+    // the budget in thousandths of a hedge, of which at most MAX_SAVED_HEDGES can be saved up for a burst
+    private static final long HEDGE_COST = 1_000;
+    private static final long MAX_SAVED_HEDGES = 10;
+
+    private final ProductClient productClient;
+    private final ObjectProvider<ServiceInstanceListSupplier> productInstances;
+    private final Bulkhead bulkhead;
+    private final AtomicBoolean binaryEncoding;
+    private final boolean enabled;
+    private final long minDelayNanos;
+    private final long initialDelayNanos;
+    private final LatencyTracker latencyTracker;
+    private final long budgetPerLookup;
+    private final AtomicLong hedgeBudget = new AtomicLong();
+    private final AtomicInteger nextInstance = new AtomicInteger();
+    // carries the caller's observation onto the worker thread so both calls join the request's trace
+    private final ExecutorService executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor());
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesSkipped;
+
+    public HedgingProductClient(ProductClient productClient,
+                                LoadBalancerClientFactory loadBalancerClientFactory,
+                                BulkheadRegistry bulkheadRegistry,
+                                MeterRegistry meterRegistry,
+                                @Value("${cart.product-hedging.enabled:true}") boolean enabled,
+                                @Value("${cart.product-hedging.percentile:0.95}") double percentile,
+                                @Value("${cart.product-hedging.window-size:512}") int windowSize,
+                                @Value("${cart.product-hedging.min-delay:20ms}") Duration minDelay,
+                                @Value("${cart.product-hedging.initial-delay:250ms}") Duration initialDelay,
+                                @Value("${cart.product-hedging.budget:0.1}") double budget,
+                                @Value("${cart.product-client.binary-encoding:true}") boolean binaryEncoding) {
+        this.productClient = productClient;
+        this.productInstances = loadBalancerClientFactory.getLazyProvider(ProductClient.SERVICE_ID, ServiceInstanceListSupplier.class);
+        this.bulkhead = bulkheadRegistry.bulkhead(ProductLookupService.PRODUCT_SERVICE);
+        this.binaryEncoding = new AtomicBoolean(binaryEncoding);
+        this.enabled = enabled;
+        this.minDelayNanos = minDelay.toNanos();
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.latencyTracker = new LatencyTracker(windowSize, percentile);
+        this.budgetPerLookup = Math.round(budget * HEDGE_COST);
+        this.hedgesSent = Counter.builder("cart.product.hedges").tag("outcome", "sent").register(meterRegistry);
+        this.hedgesWon = Counter.builder("cart.product.hedges").tag("outcome", "won").register(meterRegistry);
+        // due but not sent: no second instance, the bulkhead full or the budget spent
+        this.hedgesSkipped = Counter.builder("cart.product.hedges").tag("outcome", "skipped").register(meterRegistry);
+    }
+
+    public List<Product> getProductsByIds(List<UUID> productIds) {
+        if (!enabled) {
+            return lookup(null, productIds);
+        }
+
+        earnHedgeBudget();
+        List<ServiceInstance> instances = instances();
+        int turn = nextInstance.getAndIncrement();
+        CompletableFuture<List<Product>> primary = call(pick(instances, turn), productIds);
+        try {
+            return primary.get(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException exception) {
+            if (instances.size() < 2 || !bulkhead.tryAcquirePermission()) {
+                hedgesSkipped.increment();
+                return await(primary);
+            }
+            if (!spendHedgeBudget()) {
+                bulkhead.releasePermission();
+                hedgesSkipped.increment();
+                return await(primary);
+            }
+            hedgesSent.increment();
+            CompletableFuture<List<Product>> hedge = call(pick(instances, turn + 1), productIds);
+            hedge.whenComplete((products, throwable) -> bulkhead.onComplete());
+            hedge.thenRun(() -> {
+                if (!primary.isDone()) {
+                    hedgesWon.increment();
+                }
+            });
+            return await(firstSuccessful(primary, hedge));
+        } catch (ExecutionException exception) {
+            throw unwrap(exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for threadly-product", exception);
+        }
+    }
+
+    private CompletableFuture<List<Product>> call(String instanceId, List<UUID> productIds) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            List<Product> products = lookup(instanceId, productIds);
+            latencyTracker.record(System.nanoTime() - start);
+            return products;
+        }, executor);
+    }
+
+    private List<Product> lookup(String instanceId, List<UUID> productIds) {
+        if (!binaryEncoding.get()) {
+            return productClient.getProductsByIds(instanceId, productIds);
+        }
+        try {
+            return productClient.getProductsByIdsCbor(instanceId, productIds);
+        } catch (FeignException.UnsupportedMediaType | FeignException.NotAcceptable exception) {
+            if (binaryEncoding.compareAndSet(true, false)) {
+                log.warn("threadly-product rejected CBOR ({}), using JSON for the bulk lookup from now on", exception.status());
+            }
+            return productClient.getProductsByIds(instanceId, productIds);
+        }
+    }
+
+    // the load balancer's cached instance list, in registration order
+    private List<ServiceInstance> instances() {
+        ServiceInstanceListSupplier supplier = productInstances.getIfAvailable();
+        List<ServiceInstance> instances = supplier == null ? null : supplier.get().blockFirst();
+        return instances == null ? List.of() : instances;
+    }
+
+    // null leaves the choice to the load balancer
+    private static String pick(List<ServiceInstance> instances, int turn) {
+        if (instances.isEmpty()) {
+            return null;
+        }
+        return InstancePinningServiceInstanceListSupplier.instanceId(instances.get(Math.floorMod(turn, instances.size())));
+    }
+
+    private void earnHedgeBudget() {
+        hedgeBudget.accumulateAndGet(budgetPerLookup, (budget, earned) -> Math.min(MAX_SAVED_HEDGES * HEDGE_COST, budget + earned));
+    }
+
+    private boolean spendHedgeBudget() {
+        while (true) {
+            long budget = hedgeBudget.get();
+            if (budget < HEDGE_COST) {
+                return false;
+            }
+            if (hedgeBudget.compareAndSet(budget, budget - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    private long hedgeDelayNanos() {
+        long p95 = latencyTracker.percentileNanos();
+        return p95 < 0 ? initialDelayNanos : Math.max(minDelayNanos, p95);
+    }
+
+    // completes with the first successful answer, or with the last failure if both calls fail
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : List.of(first, second)) {
+            future.whenComplete((value, throwable) -> {
+                if (throwable == null) {
+                    result.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(throwable);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            throw unwrap(exception.getCause());
+        }
+    }
+
+    // rethrow the Feign exception itself so the circuit breaker and fallbacks see the original type
+    private static RuntimeException unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        if (throwable instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException(throwable);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,23 @@
+package online.threadly.order_and_cart_management.client;
+
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Load-balancer client configuration for threadly-product, instantiated in the
+ * service's own child context. Deliberately not a {@code @Configuration}:
+ * component scanning would register it in the main context as well.
+ */
+public class InstancePinningLoadBalancerConfiguration {
+
+    // the default blocking supplier chain, with pinning on top of the cached instance list
+    @Bean
+    public ServiceInstanceListSupplier instancePinningServiceInstanceListSupplier(ConfigurableApplicationContext context) {
+        return ServiceInstanceListSupplier.builder()
+                .withBlockingDiscoveryClient()
+                .withCaching()
+                .with((applicationContext, delegate) -> new InstancePinningServiceInstanceListSupplier(delegate))
+                .build(context);
+    }
+}
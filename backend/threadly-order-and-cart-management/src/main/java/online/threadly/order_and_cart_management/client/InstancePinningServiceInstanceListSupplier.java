@@ -0,0 +1,56 @@
+package online.threadly.order_and_cart_management.client;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.loadbalancer.core.DelegatingServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Sends a request carrying {@value #INSTANCE_HEADER} to the instance with that
+ * id, as long as it is still registered; any other request is balanced over
+ * every instance as before. This is how HedgingProductClient makes sure its
+ * hedge goes to a different instance than the call it hedges.
+ */
+public class InstancePinningServiceInstanceListSupplier extends DelegatingServiceInstanceListSupplier {
+
+    public static final String INSTANCE_HEADER = "X-Threadly-Instance";
+
+    public InstancePinningServiceInstanceListSupplier(ServiceInstanceListSupplier delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        return delegate.get();
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get(Request request) {
+        String pinned = pinnedInstance(request);
+        if (pinned == null) {
+            return delegate.get(request);
+        }
+        return delegate.get(request).map(instances -> {
+            List<ServiceInstance> matching = instances.stream()
+                    .filter(instance -> pinned.equals(instanceId(instance)))
+                    .toList();
+            // deregistered since it was picked: any instance will do
+            return matching.isEmpty() ? instances : matching;
+        });
+    }
+
+    public static String instanceId(ServiceInstance instance) {
+        return instance.getInstanceId() != null ? instance.getInstanceId() : instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static String pinnedInstance(Request<?> request) {
+        if (request != null && request.getContext() instanceof RequestDataContext context && context.getClientRequest() != null) {
+            return context.getClientRequest().getHeaders().getFirst(INSTANCE_HEADER);
+        }
+        return null;
+    }
+}
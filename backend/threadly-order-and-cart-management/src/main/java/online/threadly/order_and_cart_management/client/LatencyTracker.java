@@ -0,0 +1,42 @@
+package online.threadly.order_and_cart_management.client;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest N latency samples of a remote call and answers percentile
+ * queries over them. The percentile is recomputed every few samples instead of
+ * on every read, so asking for it on each request stays cheap.
+ */
+public class LatencyTracker {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private int next;
+    private int count;
+    private volatile long cachedPercentileNanos = -1;
+
+    public LatencyTracker(int windowSize, double percentile) {
+        this.samples = new long[windowSize];
+        this.percentile = percentile;
+    }
+
+    public synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (count >= RECOMPUTE_EVERY && next % RECOMPUTE_EVERY == 0) {
+            long[] window = Arrays.copyOf(samples, count);
+            Arrays.sort(window);
+            cachedPercentileNanos = window[(int) Math.min(count - 1, Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    // -1 until enough samples have been recorded
+    public long percentileNanos() {
+        return cachedPercentileNanos;
+    }
+}
@@ -0,0 +1,13 @@
+package online.threadly.order_and_cart_management.client;
+
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * threadly-product calls can be pinned to one instance, see
+ * {@link InstancePinningServiceInstanceListSupplier}.
+ */
+@Configuration
+@LoadBalancerClient(name = ProductClient.SERVICE_ID, configuration = InstancePinningLoadBalancerConfiguration.class)
+public class LoadBalancerConfiguration {
+}
@@ -1,17 +1,37 @@
 package online.threadly.order_and_cart_management.client;
 
 import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.dto.StockReservationRequest;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import java.util.List;
 import java.util.UUID;
 
-@FeignClient(name = "threadly-product-service", url = "http://localhost:8082/api/v1")
+// resolved through Eureka, each call goes to the instance picked by Spring Cloud LoadBalancer
+@FeignClient(name = ProductClient.SERVICE_ID, path = "/api/v1")
 public interface ProductClient {
 
+    String SERVICE_ID = "threadly-product";
+
+    // instanceId pins the call to that instance, null lets the load balancer pick
     @RequestMapping(method = RequestMethod.POST, value = "/products/bulk")
-    List<Product> getProductsByIds(@RequestBody List<UUID> productIds);
+    List<Product> getProductsByIds(@RequestHeader(value = InstancePinningServiceInstanceListSupplier.INSTANCE_HEADER, required = false) String instanceId,
+                                   @RequestBody List<UUID> productIds);
+
+    // same endpoint in CBOR both ways: UUIDs travel as 16-byte binary instead of 36-char strings
+    @RequestMapping(method = RequestMethod.POST, value = "/products/bulk",
+            consumes = "application/cbor", produces = "application/cbor")
+    List<Product> getProductsByIdsCbor(@RequestHeader(value = InstancePinningServiceInstanceListSupplier.INSTANCE_HEADER, required = false) String instanceId,
+                                       @RequestBody List<UUID> productIds);
+
+    // all-or-nothing: either every line is reserved or threadly-product answers 4xx and nothing is
+    @RequestMapping(method = RequestMethod.POST, value = "/internal/products/reservations")
+    List<Product> reserveStock(@RequestBody List<StockReservationRequest> reservations);
+
+    @RequestMapping(method = RequestMethod.POST, value = "/internal/products/reservations/release")
+    void releaseStock(@RequestBody List<StockReservationRequest> reservations);
 }
@@ -1,29 +1,73 @@
 package online.threadly.order_and_cart_management.controller;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import online.threadly.commons.logging.SamplingTurboFilter;
 import online.threadly.order_and_cart_management.dto.AddToCartRequest;
 import online.threadly.order_and_cart_management.dto.AddToCartResponse;
 import online.threadly.order_and_cart_management.dto.CartResponse;
+import online.threadly.order_and_cart_management.idempotency.IdempotentRequests;
 import online.threadly.order_and_cart_management.service.CartService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.UUID;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/v1/cart")
 @RequiredArgsConstructor
 public class CartController {
     private final CartService cartService;
+    private final IdempotentRequests idempotentRequests;
 
+    // with an Idempotency-Key, a retry is answered with the first response instead of adding the items again
     @PostMapping
-    public ResponseEntity<AddToCartResponse> addItemToCart(@RequestHeader("X-USER-ID") UUID userId, @RequestBody AddToCartRequest addToCartRequest) {
-        System.out.println("UserId: " + userId + "\n" + "CartItemRequest: " + addToCartRequest.toString());
-        return ResponseEntity.ok(cartService.addToCart(userId, addToCartRequest));
+    public ResponseEntity<AddToCartResponse> addItemToCart(@RequestHeader("X-USER-ID") UUID userId,
+                                                           @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                                           @RequestBody AddToCartRequest addToCartRequest) {
+        log.info(SamplingTurboFilter.SAMPLED, "Add to cart userId={} productId={} quantity={}",
+                userId, addToCartRequest.getProductId(), addToCartRequest.getQuantity());
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(cartService.addToCart(userId, addToCartRequest));
+        }
+        return idempotentRequests.execute(userId, "POST /api/v1/cart", idempotencyKey, addToCartRequest,
+                () -> ResponseEntity.ok(cartService.addToCart(userId, addToCartRequest)));
     }
 
+    // a matching If-None-Match is answered 304 from the cart's version and the coupon alone, without the items or threadly-product
     @GetMapping
-    public ResponseEntity<CartResponse> getCart(@RequestHeader("X-USER-ID") UUID userId) {
-        return ResponseEntity.ok(cartService.getCartForUser(userId));
+    public ResponseEntity<CartResponse> getCart(@RequestHeader("X-USER-ID") UUID userId,
+                                                @RequestParam(name = "coupon", required = false) String coupon,
+                                                WebRequest webRequest) {
+        String ifNoneMatch = webRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            String etag = cartService.getCartETag(userId, coupon);
+            if (etag != null && matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
+        CartResponse cart = cartService.getCartForUser(userId, coupon);
+        return cart.getEtag() == null ? ResponseEntity.ok(cart) : ResponseEntity.ok().eTag(cart.getEtag()).body(cart);
+    }
+
+    // compared here rather than with WebRequest.checkNotModified, which sets the ETag header even on a
+    // mismatch and would tag a stale body that must go out untagged; weak comparison, as all cart tags are weak
+    static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
     }
 }
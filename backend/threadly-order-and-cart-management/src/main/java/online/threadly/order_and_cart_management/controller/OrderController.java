@@ -0,0 +1,23 @@
+package online.threadly.order_and_cart_management.controller;
+
+import lombok.RequiredArgsConstructor;
+import online.threadly.order_and_cart_management.dto.OrderResponse;
+import online.threadly.order_and_cart_management.service.CheckoutService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/orders")
+@RequiredArgsConstructor
+public class OrderController {
+    private final CheckoutService checkoutService;
+
+    // resubmitting with the same Idempotency-Key returns the order created by the first call
+    @PostMapping("/checkout")
+    public ResponseEntity<OrderResponse> checkout(@RequestHeader("X-USER-ID") UUID userId, @RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                  @RequestParam(name = "coupon", required = false) String coupon) {
+        return ResponseEntity.ok(checkoutService.checkout(userId, idempotencyKey, coupon));
+    }
+}
@@ -0,0 +1,17 @@
+package online.threadly.order_and_cart_management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class AppliedDiscount {
+    private String promotionId;
+    private String description;
+    // null for a discount on the whole cart
+    private UUID productId;
+    private BigDecimal amount;
+}
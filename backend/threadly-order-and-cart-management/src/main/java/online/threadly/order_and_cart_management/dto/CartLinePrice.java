@@ -0,0 +1,20 @@
+package online.threadly.order_and_cart_management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class CartLinePrice {
+    private UUID productId;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal subtotal;
+    private BigDecimal discount;
+    private BigDecimal total;
+    // the item promotion behind the discount, if any
+    private String promotionId;
+}
@@ -1,11 +1,23 @@
 package online.threadly.order_and_cart_management.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Data
 public class CartResponse {
     List<Product> products;
-    Double totalAmount;
+    // per line and per promotion breakdown of how totalAmount came about
+    List<CartLinePrice> lines;
+    List<AppliedDiscount> discounts;
+    BigDecimal subtotal;
+    BigDecimal discountAmount;
+    BigDecimal totalAmount;
+    // product details came from the last-known snapshot because threadly-product was unavailable
+    boolean stale;
+    // sent as the ETag header; null for stale responses so clients do not keep them
+    @JsonIgnore
+    String etag;
 }
@@ -0,0 +1,16 @@
+package online.threadly.order_and_cart_management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class OrderLineResponse {
+    private UUID productId;
+    private String productName;
+    private BigDecimal unitPrice;
+    private Integer quantity;
+}
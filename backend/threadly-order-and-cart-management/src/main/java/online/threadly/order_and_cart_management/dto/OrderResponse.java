@@ -0,0 +1,21 @@
+package online.threadly.order_and_cart_management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import online.threadly.order_and_cart_management.model.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class OrderResponse {
+    private UUID orderId;
+    private OrderStatus status;
+    private BigDecimal discountAmount;
+    private BigDecimal totalAmount;
+    private List<OrderLineResponse> lines;
+    private LocalDateTime createdAt;
+}
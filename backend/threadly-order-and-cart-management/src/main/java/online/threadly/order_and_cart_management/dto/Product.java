@@ -12,6 +12,8 @@ public class Product {
 
     private String slug;
 
+    private String brand;
+
     private String[] images;
 
     private Double price;
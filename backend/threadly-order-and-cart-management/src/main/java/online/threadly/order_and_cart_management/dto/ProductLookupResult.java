@@ -0,0 +1,14 @@
+package online.threadly.order_and_cart_management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductLookupResult {
+    private List<Product> products;
+    // true when the products were served from the last-known snapshot instead of threadly-product
+    private boolean stale;
+}
@@ -0,0 +1,7 @@
+package online.threadly.order_and_cart_management.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package online.threadly.order_and_cart_management.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,183 @@
+package online.threadly.order_and_cart_management.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import online.threadly.order_and_cart_management.exception.BadRequestException;
+import online.threadly.order_and_cart_management.exception.ConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Responses of recent cart mutations sent with an Idempotency-Key header, so a
+ * client retrying after a timeout gets the first response back instead of
+ * applying the mutation again.
+ * <p>
+ * Keys are scoped to the user and the operation. A duplicate that arrives
+ * while the first request is still running waits for it (up to wait-timeout,
+ * then 409) rather than running alongside it. Successful responses and 400s
+ * are replayed for ttl; any other failure is not recorded, so the retry runs
+ * the mutation. The record lives in this instance's memory only: a retry that
+ * lands on another instance runs again.
+ */
+@Component
+public class IdempotentRequests {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final Map<Key, Outcome> outcomes;
+    private final Map<Key, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final Duration waitTimeout;
+    private final Counter executed;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    public IdempotentRequests(MeterRegistry meterRegistry,
+                              @Value("${cart.idempotency.max-entries:100000}") int maxEntries,
+                              @Value("${cart.idempotency.ttl:10m}") Duration ttl,
+                              @Value("${cart.idempotency.wait-timeout:5s}") Duration waitTimeout) {
+        this.ttlNanos = ttl.toNanos();
+        this.waitTimeout = waitTimeout;
+        // insertion-ordered with a single ttl, so the eldest entry is always the first to expire
+        this.outcomes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Outcome> eldest) {
+                return size() > maxEntries || expired(eldest.getValue());
+            }
+        });
+        this.executed = Counter.builder("cart.idempotency.requests").tag("result", "executed").register(meterRegistry);
+        this.replayed = Counter.builder("cart.idempotency.requests").tag("result", "replayed").register(meterRegistry);
+        this.conflicts = Counter.builder("cart.idempotency.requests").tag("result", "conflict").register(meterRegistry);
+        Gauge.builder("cart.idempotency.entries", outcomes, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Runs the mutation once per user, operation and key. The request is kept
+     * to reject a key reused for a different request; it needs a value-based
+     * equals.
+     */
+    public <T> ResponseEntity<T> execute(UUID userId, String operation, String idempotencyKey, Object request,
+                                         Supplier<ResponseEntity<T>> mutation) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key header must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        Key key = new Key(userId, operation, idempotencyKey);
+        while (true) {
+            Outcome recorded = recorded(key);
+            if (recorded != null) {
+                return replay(recorded, request);
+            }
+
+            CompletableFuture<Outcome> mine = new CompletableFuture<>();
+            CompletableFuture<Outcome> first = inFlight.putIfAbsent(key, mine);
+            if (first != null) {
+                Outcome outcome = awaitFirst(first);
+                if (outcome != null) {
+                    return replay(outcome, request);
+                }
+                // the first attempt failed without a recorded outcome, so one of the duplicates runs it
+                continue;
+            }
+            try {
+                // recorded between the lookup above and claiming the key
+                recorded = recorded(key);
+                if (recorded != null) {
+                    mine.complete(recorded);
+                    return replay(recorded, request);
+                }
+                return executeFirst(key, request, mutation, mine);
+            } finally {
+                mine.complete(null);
+                inFlight.remove(key, mine);
+            }
+        }
+    }
+
+    private <T> ResponseEntity<T> executeFirst(Key key, Object request, Supplier<ResponseEntity<T>> mutation,
+                                               CompletableFuture<Outcome> mine) {
+        executed.increment();
+        Outcome outcome;
+        ResponseEntity<T> response;
+        try {
+            response = mutation.get();
+            outcome = new Outcome(request, response, null, System.nanoTime());
+        } catch (BadRequestException e) {
+            outcome = new Outcome(request, null, e.getMessage(), System.nanoTime());
+            record(key, outcome, mine);
+            throw e;
+        }
+        record(key, outcome, mine);
+        return response;
+    }
+
+    // recorded before the in-flight claim is released, so a newcomer always finds one or the other
+    private void record(Key key, Outcome outcome, CompletableFuture<Outcome> mine) {
+        outcomes.put(key, outcome);
+        mine.complete(outcome);
+    }
+
+    private Outcome awaitFirst(CompletableFuture<Outcome> first) {
+        try {
+            return first.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            conflicts.increment();
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> replay(Outcome outcome, Object request) {
+        if (!Objects.equals(outcome.request(), request)) {
+            throw new BadRequestException("Idempotency-Key was already used for a different request");
+        }
+        replayed.increment();
+        if (outcome.rejection() != null) {
+            throw new BadRequestException(outcome.rejection());
+        }
+        ResponseEntity<T> response = (ResponseEntity<T>) outcome.response();
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private Outcome recorded(Key key) {
+        Outcome outcome = outcomes.get(key);
+        if (outcome != null && expired(outcome)) {
+            outcomes.remove(key, outcome);
+            return null;
+        }
+        return outcome;
+    }
+
+    private boolean expired(Outcome outcome) {
+        return System.nanoTime() - outcome.recordedAtNanos() > ttlNanos;
+    }
+
+    private record Key(UUID userId, String operation, String idempotencyKey) {
+    }
+
+    private record Outcome(Object request, ResponseEntity<?> response, String rejection, long recordedAtNanos) {
+    }
+}
@@ -0,0 +1,220 @@
+package online.threadly.order_and_cart_management.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import online.threadly.order_and_cart_management.projection.AbandonedCartRow;
+import online.threadly.order_and_cart_management.projection.CartItemRow;
+import online.threadly.order_and_cart_management.repository.CartItemRepository;
+import online.threadly.order_and_cart_management.repository.CartRepository;
+import online.threadly.order_and_cart_management.sharding.ShardContext;
+import online.threadly.order_and_cart_management.sharding.ShardRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deletes carts that have not been touched for longer than cart.sweeper.idle-horizon.
+ * Carts are walked in (updated_at, id) order, one short transaction per batch, with a
+ * pause between batches and a cap on batches per run so the job stays in the background.
+ * With cart.sweeper.archive.enabled each batch is first written to its own gzipped JSON-lines file.
+ * With sharding enabled every shard is swept in turn.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.sweeper.enabled", havingValue = "true")
+public class AbandonedCartSweeper {
+
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID KEYSET_START_ID = new UUID(0L, 0L);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<ShardRouter> shardRouter;
+
+    private final Duration idleHorizon;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration pauseBetweenBatches;
+    private final boolean archiveEnabled;
+    private final Path archiveDirectory;
+
+    private final Counter cartsDeleted;
+    private final Counter cartItemsDeleted;
+    private final DistributionSummary rowsReclaimedPerRun;
+    private final Timer runTimer;
+
+    public AbandonedCartSweeper(CartRepository cartRepository,
+                                CartItemRepository cartItemRepository,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                ObjectProvider<ShardRouter> shardRouter,
+                                MeterRegistry meterRegistry,
+                                @Value("${cart.sweeper.idle-horizon:30d}") Duration idleHorizon,
+                                @Value("${cart.sweeper.batch-size:500}") int batchSize,
+                                @Value("${cart.sweeper.max-batches-per-run:200}") int maxBatchesPerRun,
+                                @Value("${cart.sweeper.pause-between-batches:200ms}") Duration pauseBetweenBatches,
+                                @Value("${cart.sweeper.archive.enabled:false}") boolean archiveEnabled,
+                                @Value("${cart.sweeper.archive.directory:./cart-archive}") Path archiveDirectory) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        this.idleHorizon = idleHorizon;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseBetweenBatches = pauseBetweenBatches;
+        this.archiveEnabled = archiveEnabled;
+        this.archiveDirectory = archiveDirectory;
+        this.cartsDeleted = Counter.builder("cart.sweeper.carts.deleted").register(meterRegistry);
+        this.cartItemsDeleted = Counter.builder("cart.sweeper.cart_items.deleted").register(meterRegistry);
+        this.rowsReclaimedPerRun = DistributionSummary.builder("cart.sweeper.rows.reclaimed")
+                .description("cart and cart_item rows deleted by one sweeper run")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("cart.sweeper.run").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${cart.sweeper.cron:0 0 3 * * *}")
+    public void sweep() {
+        ShardRouter router = shardRouter.getIfAvailable();
+        if (router == null) {
+            runTimer.record(this::sweepOnce);
+            return;
+        }
+        for (String shard : router.shards()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            ShardContext.runOn(shard, () -> runTimer.record(this::sweepOnce));
+        }
+    }
+
+    long sweepOnce() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(idleHorizon);
+        LocalDateTime afterUpdatedAt = KEYSET_START;
+        UUID afterId = KEYSET_START_ID;
+        long rowsReclaimed = 0;
+
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                LocalDateTime fromUpdatedAt = afterUpdatedAt;
+                UUID fromId = afterId;
+                BatchResult result = transactionTemplate.execute(status -> deleteBatch(cutoff, fromUpdatedAt, fromId));
+                if (result == null || result.lastCart == null) {
+                    break;
+                }
+                rowsReclaimed += result.rowsDeleted;
+                afterUpdatedAt = result.lastCart.getUpdatedAt();
+                afterId = result.lastCart.getId();
+                if (result.cartsSeen < batchSize || !pause()) {
+                    break;
+                }
+            }
+        } finally {
+            rowsReclaimedPerRun.record(rowsReclaimed);
+        }
+        return rowsReclaimed;
+    }
+
+    private BatchResult deleteBatch(LocalDateTime cutoff, LocalDateTime afterUpdatedAt, UUID afterId) {
+        List<AbandonedCartRow> carts = cartRepository.findAbandonedCartsForUpdate(cutoff, afterUpdatedAt, afterId, batchSize);
+        if (carts.isEmpty()) {
+            return new BatchResult(null, 0, 0);
+        }
+        List<UUID> cartIds = carts.stream().map(AbandonedCartRow::getId).toList();
+
+        if (archiveEnabled) {
+            writeArchive(carts, cartItemRepository.findRowsByCartIdIn(cartIds));
+        }
+
+        int itemsDeleted = cartItemRepository.deleteAllByCartIdIn(cartIds);
+        int cartsRemoved = cartRepository.deleteAllByIdIn(cartIds);
+        cartItemsDeleted.increment(itemsDeleted);
+        cartsDeleted.increment(cartsRemoved);
+        return new BatchResult(carts.get(carts.size() - 1), carts.size(), itemsDeleted + cartsRemoved);
+    }
+
+    /**
+     * Writes one batch to its own gzipped JSON-lines file, one document per cart:
+     * {"id":…,"userId":…,"createdAt":…,"updatedAt":…,"items":[{"productId":…,"quantity":…}]}.
+     * The file is finished and forced to disk before returning, because the batch's rows are
+     * deleted right after; a crash can leave an archive of rows that were not deleted, which the
+     * next run archives again, but never deleted rows without an archive.
+     */
+    private void writeArchive(List<AbandonedCartRow> carts, List<CartItemRow> items) {
+        Map<UUID, List<Map<String, Object>>> itemsByCart = new LinkedHashMap<>();
+        for (CartItemRow item : items) {
+            Map<String, Object> archivedItem = new LinkedHashMap<>();
+            archivedItem.put("productId", item.getProductId());
+            archivedItem.put("quantity", item.getQuantity());
+            itemsByCart.computeIfAbsent(item.getCartId(), id -> new ArrayList<>()).add(archivedItem);
+        }
+        // named after the batch's last cart, so batches of one run and of different shards never collide
+        String fileName = "carts-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                + "-" + carts.get(carts.size() - 1).getId() + ".jsonl.gz";
+        try {
+            Files.createDirectories(archiveDirectory);
+            try (FileChannel channel = FileChannel.open(archiveDirectory.resolve(fileName),
+                         StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+                 BufferedWriter archive = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8))) {
+                for (AbandonedCartRow cart : carts) {
+                    Map<String, Object> archivedCart = new LinkedHashMap<>();
+                    archivedCart.put("id", cart.getId());
+                    archivedCart.put("userId", cart.getUserId());
+                    archivedCart.put("createdAt", String.valueOf(cart.getCreatedAt()));
+                    archivedCart.put("updatedAt", String.valueOf(cart.getUpdatedAt()));
+                    archivedCart.put("items", itemsByCart.getOrDefault(cart.getId(), List.of()));
+                    archive.write(objectMapper.writeValueAsString(archivedCart));
+                    archive.newLine();
+                }
+                archive.flush();
+                gzip.finish();
+                channel.force(true);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Could not write cart archive", exception);
+        }
+    }
+
+    // false when interrupted, e.g. on shutdown: the run stops rather than carrying on without the pause
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseBetweenBatches);
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record BatchResult(AbandonedCartRow lastCart, int cartsSeen, int rowsDeleted) {
+    }
+}
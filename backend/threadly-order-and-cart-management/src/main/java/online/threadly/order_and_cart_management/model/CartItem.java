@@ -1,24 +1,28 @@
 package online.threadly.order_and_cart_management.model;
 
 import jakarta.persistence.*;
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import online.threadly.commons.id.UuidV7Generator;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.util.UUID;
 
-@Data
+@Getter
+@Setter
 @Entity
-@Table(name = "cart_item")
+@Table(name = "cart_item", indexes = @Index(name = "idx_cart_item_cart_id_product_id", columnList = "cart_id, product_id"))
 public class CartItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "cart_id")
     private Cart cart;
 
-    @Column(nullable = false)
+    @Column(name = "product_id", nullable = false)
     private UUID productId;
 
     @Column(nullable = false)
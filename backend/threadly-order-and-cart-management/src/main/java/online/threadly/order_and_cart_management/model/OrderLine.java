@@ -0,0 +1,37 @@
+package online.threadly.order_and_cart_management.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import online.threadly.commons.id.UuidV7Generator;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "order_line")
+public class OrderLine {
+
+    @Id
+    @UuidGenerator(algorithm = UuidV7Generator.class)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id", nullable = false)
+    private Order order;
+
+    @Column(nullable = false)
+    private UUID productId;
+
+    // name and price are copied from the product at checkout time
+    private String productName;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal unitPrice;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,6 @@
+package online.threadly.order_and_cart_management.model;
+
+public enum OrderStatus {
+    CONFIRMED,
+    CANCELLED
+}
@@ -0,0 +1,11 @@
+package online.threadly.order_and_cart_management.pricing;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record CartLine(UUID productId, String brand, BigDecimal unitPrice, int quantity) {
+
+    public BigDecimal subtotal() {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+}
@@ -0,0 +1,12 @@
+package online.threadly.order_and_cart_management.pricing;
+
+import online.threadly.order_and_cart_management.dto.AppliedDiscount;
+import online.threadly.order_and_cart_management.dto.CartLinePrice;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// discount = subtotal - total, item and cart discounts together
+public record Pricing(BigDecimal subtotal, BigDecimal discount, BigDecimal total,
+                      List<CartLinePrice> lines, List<AppliedDiscount> discounts) {
+}
@@ -0,0 +1,102 @@
+package online.threadly.order_and_cart_management.pricing;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Prices carts against the promotions in cart.pricing.rules-location, a JSON
+ * array of {@link Promotion}s. The file is re-read every reload-interval; when
+ * it changed, a new PromotionIndex is built on the scheduler thread and
+ * swapped in with a single volatile write, so cart reads never wait for a
+ * reload. A file that fails to parse or validate keeps the previous rules in
+ * place (and fails startup if it is the first one).
+ */
+@Slf4j
+@Component
+public class PricingEngine {
+
+    private static final TypeReference<List<Promotion>> PROMOTIONS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final Resource rules;
+    private final Counter failedReloads;
+    private volatile PromotionIndex index = PromotionIndex.EMPTY;
+    private volatile String rulesVersion = "0";
+    private byte[] loaded;
+
+    public PricingEngine(ObjectMapper objectMapper, ResourceLoader resourceLoader, MeterRegistry meterRegistry,
+                         @Value("${cart.pricing.rules-location:}") String rulesLocation) {
+        this.objectMapper = objectMapper;
+        this.rules = rulesLocation.isBlank() ? null : resourceLoader.getResource(rulesLocation);
+        this.failedReloads = meterRegistry.counter("cart.pricing.reloads.failed");
+        Gauge.builder("cart.pricing.promotions", this, engine -> engine.index.size()).register(meterRegistry);
+        if (rules != null) {
+            load();
+        }
+    }
+
+    public Pricing price(List<CartLine> lines, String couponCode) {
+        return index.price(lines, couponCode, Instant.now());
+    }
+
+    // a checksum of the loaded rule file, the same on every instance that loaded the same file
+    public String rulesVersion() {
+        return rulesVersion;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.pricing.reload-interval:30s}", initialDelayString = "${cart.pricing.reload-interval:30s}")
+    public void reload() {
+        if (rules == null) {
+            return;
+        }
+        try {
+            load();
+        } catch (RuntimeException exception) {
+            failedReloads.increment();
+            log.error("Keeping the previous {} promotions, {} could not be loaded: {}", index.size(), rules,
+                    exception.getMessage());
+        }
+    }
+
+    private void load() {
+        byte[] content;
+        try (InputStream in = rules.getInputStream()) {
+            content = in.readAllBytes();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("could not read " + rules, exception);
+        }
+        if (Arrays.equals(content, loaded)) {
+            return;
+        }
+        PromotionIndex next;
+        try {
+            next = new PromotionIndex(objectMapper.readValue(content, PROMOTIONS));
+        } catch (IOException exception) {
+            throw new IllegalArgumentException(exception.getMessage(), exception);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(content);
+        index = next;
+        rulesVersion = Long.toHexString(checksum.getValue());
+        loaded = content;
+        log.info("Loaded {} promotions from {}", next.size(), rules);
+    }
+}
@@ -0,0 +1,81 @@
+package online.threadly.order_and_cart_management.pricing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * One rule of the promotion file. Which fields are used depends on the type;
+ * startsAt, endsAt and couponCode are optional for every type.
+ */
+public record Promotion(String id, PromotionType type, String description,
+                        String brand, UUID productId, Integer buy, Integer get,
+                        BigDecimal minimumSubtotal, BigDecimal percentOff, BigDecimal amountOff,
+                        String couponCode, Instant startsAt, Instant endsAt) {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    public boolean isActiveAt(Instant now) {
+        return (startsAt == null || !now.isBefore(startsAt)) && (endsAt == null || now.isBefore(endsAt));
+    }
+
+    // what this rule takes off one line, never more than the line costs
+    public BigDecimal itemDiscount(CartLine line) {
+        BigDecimal discount = switch (type) {
+            case BRAND_PERCENT_OFF -> percentOf(line.subtotal(), percentOff);
+            case BUY_X_GET_Y -> line.unitPrice().multiply(BigDecimal.valueOf((long) line.quantity() / (buy + get) * get));
+            case CART_THRESHOLD -> BigDecimal.ZERO;
+        };
+        return discount.min(line.subtotal());
+    }
+
+    // what this rule takes off a cart with the given subtotal, never more than the subtotal
+    public BigDecimal cartDiscount(BigDecimal subtotal) {
+        if (type != PromotionType.CART_THRESHOLD || subtotal.compareTo(minimumSubtotal) < 0) {
+            return BigDecimal.ZERO;
+        }
+        return (amountOff != null ? amountOff : percentOf(subtotal, percentOff)).min(subtotal);
+    }
+
+    public boolean appliesTo(CartLine line) {
+        return switch (type) {
+            case BRAND_PERCENT_OFF -> line.brand() != null && normalize(line.brand()).equals(normalize(brand));
+            case BUY_X_GET_Y -> productId.equals(line.productId());
+            case CART_THRESHOLD -> false;
+        };
+    }
+
+    void validate() {
+        if (id == null || id.isBlank() || type == null) {
+            throw new IllegalArgumentException("every promotion needs an id and a type");
+        }
+        boolean valid = switch (type) {
+            case BRAND_PERCENT_OFF -> brand != null && !brand.isBlank() && isPercentage(percentOff);
+            case BUY_X_GET_Y -> productId != null && buy != null && buy > 0 && get != null && get > 0;
+            case CART_THRESHOLD -> minimumSubtotal != null && minimumSubtotal.signum() >= 0
+                    && (amountOff == null) != (percentOff == null)
+                    && (amountOff == null || amountOff.signum() > 0)
+                    && (percentOff == null || isPercentage(percentOff));
+        };
+        if (!valid) {
+            throw new IllegalArgumentException("promotion " + id + " is missing or has invalid fields for " + type);
+        }
+        if (startsAt != null && endsAt != null && !startsAt.isBefore(endsAt)) {
+            throw new IllegalArgumentException("promotion " + id + " ends before it starts");
+        }
+    }
+
+    public static String normalize(String key) {
+        return key.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isPercentage(BigDecimal percent) {
+        return percent != null && percent.signum() > 0 && percent.compareTo(HUNDRED) <= 0;
+    }
+
+    private static BigDecimal percentOf(BigDecimal amount, BigDecimal percent) {
+        return amount.multiply(percent).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+    }
+}
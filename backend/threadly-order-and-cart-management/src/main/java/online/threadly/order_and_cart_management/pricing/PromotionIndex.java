@@ -0,0 +1,163 @@
+package online.threadly.order_and_cart_management.pricing;
+
+import online.threadly.order_and_cart_management.dto.AppliedDiscount;
+import online.threadly.order_and_cart_management.dto.CartLinePrice;
+import online.threadly.order_and_cart_management.exception.BadRequestException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * An immutable set of promotions, indexed so that pricing a cart only looks at
+ * rules that can apply to it: item rules by product id and by brand, cart
+ * rules by threshold (only those at or below the subtotal are visited). Rules
+ * behind a coupon code sit in a separate index per code, consulted only when
+ * that code is given.
+ * <p>
+ * Each line gets at most one item rule and the cart at most one cart rule:
+ * whichever takes off the most. Cart thresholds are checked against the
+ * subtotal after item discounts. Amounts are BigDecimal with two decimals,
+ * percentages rounded half-up per line.
+ */
+public final class PromotionIndex {
+
+    public static final PromotionIndex EMPTY = new PromotionIndex(List.of());
+
+    private static final BigDecimal ZERO = BigDecimal.ZERO.setScale(2);
+
+    private final int size;
+    private final Map<UUID, List<Promotion>> byProduct = new HashMap<>();
+    private final Map<String, List<Promotion>> byBrand = new HashMap<>();
+    private final NavigableMap<BigDecimal, List<Promotion>> byThreshold = new TreeMap<>();
+    private final Map<String, PromotionIndex> byCoupon = new HashMap<>();
+
+    public PromotionIndex(List<Promotion> promotions) {
+        this(promotions, false);
+    }
+
+    private PromotionIndex(List<Promotion> promotions, boolean couponIndex) {
+        this.size = promotions.size();
+        Set<String> ids = new HashSet<>();
+        Map<String, List<Promotion>> couponPromotions = new LinkedHashMap<>();
+        for (Promotion promotion : promotions) {
+            if (!couponIndex) {
+                promotion.validate();
+                if (!ids.add(promotion.id())) {
+                    throw new IllegalArgumentException("promotion id " + promotion.id() + " is used twice");
+                }
+                if (promotion.couponCode() != null && !promotion.couponCode().isBlank()) {
+                    couponPromotions.computeIfAbsent(Promotion.normalize(promotion.couponCode()), code -> new ArrayList<>())
+                            .add(promotion);
+                    continue;
+                }
+            }
+            switch (promotion.type()) {
+                case BRAND_PERCENT_OFF -> add(byBrand, Promotion.normalize(promotion.brand()), promotion);
+                case BUY_X_GET_Y -> add(byProduct, promotion.productId(), promotion);
+                case CART_THRESHOLD -> add(byThreshold, promotion.minimumSubtotal(), promotion);
+            }
+        }
+        couponPromotions.forEach((code, rules) -> byCoupon.put(code, new PromotionIndex(rules, true)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Pricing price(List<CartLine> lines, String couponCode, Instant now) {
+        PromotionIndex coupon = null;
+        if (couponCode != null && !couponCode.isBlank()) {
+            coupon = byCoupon.get(Promotion.normalize(couponCode));
+            if (coupon == null) {
+                throw new BadRequestException("Unknown coupon code.");
+            }
+        }
+
+        BigDecimal subtotal = ZERO;
+        BigDecimal afterItemDiscounts = ZERO;
+        List<CartLinePrice> prices = new ArrayList<>(lines.size());
+        List<AppliedDiscount> discounts = new ArrayList<>();
+        for (CartLine line : lines) {
+            Choice best = bestItemRule(line, now, Choice.NONE);
+            if (coupon != null) {
+                best = coupon.bestItemRule(line, now, best);
+            }
+            BigDecimal lineSubtotal = line.subtotal();
+            BigDecimal lineTotal = lineSubtotal.subtract(best.amount());
+            subtotal = subtotal.add(lineSubtotal);
+            afterItemDiscounts = afterItemDiscounts.add(lineTotal);
+            String promotionId = best.promotion() == null ? null : best.promotion().id();
+            prices.add(new CartLinePrice(line.productId(), line.quantity(), line.unitPrice(), lineSubtotal,
+                    best.amount(), lineTotal, promotionId));
+            if (best.promotion() != null) {
+                discounts.add(new AppliedDiscount(promotionId, best.promotion().description(), line.productId(), best.amount()));
+            }
+        }
+
+        Choice cartRule = bestCartRule(afterItemDiscounts, now, Choice.NONE);
+        if (coupon != null) {
+            cartRule = coupon.bestCartRule(afterItemDiscounts, now, cartRule);
+        }
+        if (cartRule.promotion() != null) {
+            discounts.add(new AppliedDiscount(cartRule.promotion().id(), cartRule.promotion().description(), null,
+                    cartRule.amount()));
+        }
+        BigDecimal total = afterItemDiscounts.subtract(cartRule.amount());
+        return new Pricing(subtotal, subtotal.subtract(total), total, prices, discounts);
+    }
+
+    private Choice bestItemRule(CartLine line, Instant now, Choice best) {
+        best = better(line, now, best, byProduct.get(line.productId()));
+        if (line.brand() != null) {
+            best = better(line, now, best, byBrand.get(Promotion.normalize(line.brand())));
+        }
+        return best;
+    }
+
+    private static Choice better(CartLine line, Instant now, Choice best, List<Promotion> rules) {
+        if (rules == null) {
+            return best;
+        }
+        for (Promotion rule : rules) {
+            if (rule.isActiveAt(now) && rule.appliesTo(line)) {
+                BigDecimal amount = rule.itemDiscount(line);
+                if (amount.compareTo(best.amount()) > 0) {
+                    best = new Choice(rule, amount);
+                }
+            }
+        }
+        return best;
+    }
+
+    private Choice bestCartRule(BigDecimal subtotal, Instant now, Choice best) {
+        for (List<Promotion> rules : byThreshold.headMap(subtotal, true).values()) {
+            for (Promotion rule : rules) {
+                if (rule.isActiveAt(now)) {
+                    BigDecimal amount = rule.cartDiscount(subtotal);
+                    if (amount.compareTo(best.amount()) > 0) {
+                        best = new Choice(rule, amount);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static <K> void add(Map<K, List<Promotion>> index, K key, Promotion promotion) {
+        index.computeIfAbsent(key, ignored -> new ArrayList<>()).add(promotion);
+    }
+
+    private record Choice(Promotion promotion, BigDecimal amount) {
+        static final Choice NONE = new Choice(null, ZERO);
+    }
+}
@@ -0,0 +1,10 @@
+package online.threadly.order_and_cart_management.pricing;
+
+public enum PromotionType {
+    // percentOff of every line of the brand
+    BRAND_PERCENT_OFF,
+    // for every buy units of the product, get more units free
+    BUY_X_GET_Y,
+    // amountOff or percentOff of the cart once its subtotal reaches minimumSubtotal
+    CART_THRESHOLD
+}
@@ -0,0 +1,11 @@
+package online.threadly.order_and_cart_management.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface AbandonedCartRow {
+    UUID getId();
+    UUID getUserId();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+}
@@ -0,0 +1,9 @@
+package online.threadly.order_and_cart_management.projection;
+
+import java.util.UUID;
+
+public interface CartItemRow {
+    UUID getCartId();
+    UUID getProductId();
+    Integer getQuantity();
+}
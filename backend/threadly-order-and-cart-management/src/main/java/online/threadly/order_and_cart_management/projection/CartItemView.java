@@ -0,0 +1,11 @@
+package online.threadly.order_and_cart_management.projection;
+
+import java.util.UUID;
+
+// one row per cart item; an empty cart yields a single row with null productId and quantity
+public interface CartItemView {
+    UUID getCartId();
+    Long getVersion();
+    UUID getProductId();
+    Integer getQuantity();
+}
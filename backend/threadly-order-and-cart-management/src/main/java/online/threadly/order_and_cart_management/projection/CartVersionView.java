@@ -0,0 +1,8 @@
+package online.threadly.order_and_cart_management.projection;
+
+import java.util.UUID;
+
+public interface CartVersionView {
+    UUID getCartId();
+    Long getVersion();
+}
@@ -1,9 +1,14 @@
 package online.threadly.order_and_cart_management.repository;
 
 import online.threadly.order_and_cart_management.model.CartItem;
+import online.threadly.order_and_cart_management.projection.CartItemRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,4 +17,16 @@ import java.util.UUID;
 public interface CartItemRepository extends JpaRepository<CartItem, UUID> {
     Optional<CartItem> findByCartIdAndProductId(UUID cartId, UUID productId);
     List<CartItem> findAllByCartId(UUID cartId);
+
+    // DELETE FROM cart_item WHERE cart_id = cartId; (one statement instead of one per item)
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id = :cartId")
+    int deleteAllByCartIdInBulk(@Param("cartId") UUID cartId);
+
+    @Query("SELECT ci.cart.id AS cartId, ci.productId AS productId, ci.quantity AS quantity FROM CartItem ci WHERE ci.cart.id IN :cartIds")
+    List<CartItemRow> findRowsByCartIdIn(@Param("cartIds") Collection<UUID> cartIds);
+
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN :cartIds")
+    int deleteAllByCartIdIn(@Param("cartIds") Collection<UUID> cartIds);
 }
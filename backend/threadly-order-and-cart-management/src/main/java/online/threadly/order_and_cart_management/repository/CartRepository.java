@@ -1,13 +1,62 @@
 package online.threadly.order_and_cart_management.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import online.threadly.order_and_cart_management.model.Cart;
+import online.threadly.order_and_cart_management.projection.AbandonedCartRow;
+import online.threadly.order_and_cart_management.projection.CartItemView;
+import online.threadly.order_and_cart_management.projection.CartVersionView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, UUID> {
     Optional<Cart> findByUserId(UUID userId); // SELECT * FROM cart WHERE userId = userId;
+
+    // SELECT c.id, c.version, ci.product_id, ci.quantity FROM cart c LEFT JOIN cart_item ci ON ci.cart_id = c.id WHERE c.user_id = userId;
+    @Query("SELECT c.id AS cartId, c.version AS version, ci.productId AS productId, ci.quantity AS quantity " +
+            "FROM Cart c LEFT JOIN c.items ci WHERE c.userId = :userId")
+    List<CartItemView> findItemViewsByUserId(@Param("userId") UUID userId);
+
+    // SELECT c.id, c.version FROM cart c WHERE c.user_id = userId; answers If-None-Match without touching the items
+    @Query("SELECT c.id AS cartId, c.version AS version FROM Cart c WHERE c.userId = :userId")
+    Optional<CartVersionView> findVersionByUserId(@Param("userId") UUID userId);
+
+    // SELECT * FROM cart WHERE user_id = userId FOR UPDATE;
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.userId = :userId")
+    Optional<Cart> findByUserIdForUpdate(@Param("userId") UUID userId);
+
+    // SELECT c.id, c.user_id, c.created_at, c.updated_at FROM cart c WHERE c.updated_at < cutoff
+    //   AND (c.updated_at, c.id) > (afterUpdatedAt, afterId) ORDER BY c.updated_at, c.id LIMIT batchSize FOR UPDATE SKIP LOCKED;
+    // keyset page over (updated_at, id); carts locked by a concurrent add-to-cart or checkout are skipped (lock timeout -2)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            SELECT c.id AS id, c.userId AS userId, c.createdAt AS createdAt, c.updatedAt AS updatedAt
+            FROM Cart c
+            WHERE c.updatedAt < :cutoff
+              AND (c.updatedAt, c.id) > (:afterUpdatedAt, :afterId)
+            ORDER BY c.updatedAt, c.id
+            LIMIT :batchSize
+            """)
+    List<AbandonedCartRow> findAbandonedCartsForUpdate(@Param("cutoff") LocalDateTime cutoff,
+                                                       @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+                                                       @Param("afterId") UUID afterId,
+                                                       @Param("batchSize") int batchSize);
+
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<UUID> ids);
 }
@@ -0,0 +1,13 @@
+package online.threadly.order_and_cart_management.repository;
+
+import online.threadly.order_and_cart_management.model.Order;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface OrderRepository extends JpaRepository<Order, UUID> {
+    Optional<Order> findByUserIdAndIdempotencyKey(UUID userId, String idempotencyKey);
+}
@@ -0,0 +1,50 @@
+package online.threadly.order_and_cart_management.service;
+
+import online.threadly.order_and_cart_management.pricing.PricingEngine;
+import online.threadly.order_and_cart_management.pricing.Promotion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Weak ETags for GET /api/v1/cart. A tag names the cart, its version (bumped
+ * by Hibernate on every update of the cart row), the promotion rules, the
+ * coupon the totals were priced with and a time window of
+ * cart.etag.product-freshness. Product data is not part of the
+ * version, so the window bounds how long a 304 can hide a price change; each
+ * cart's window starts at an offset taken from its id, so carts do not all
+ * expire at once.
+ */
+@Component
+public class CartETags {
+
+    private final PricingEngine pricingEngine;
+    private final long freshnessMillis;
+
+    public CartETags(PricingEngine pricingEngine,
+                     @Value("${cart.etag.product-freshness:60s}") Duration productFreshness) {
+        this.pricingEngine = pricingEngine;
+        this.freshnessMillis = productFreshness.toMillis();
+    }
+
+    public String of(UUID cartId, Long version, String couponCode) {
+        long offset = Math.floorMod(cartId.getLeastSignificantBits(), freshnessMillis);
+        long window = (System.currentTimeMillis() + offset) / freshnessMillis;
+        return "W/\"" + cartId + "-" + version + "-" + pricingEngine.rulesVersion() + "-" + coupon(couponCode)
+                + "-" + Long.toString(window, 36) + "\"";
+    }
+
+    // spelled as the pricing engine looks it up, so "save10" and "SAVE10 " share a tag
+    private static String coupon(String couponCode) {
+        if (couponCode == null || couponCode.isBlank()) {
+            return "0";
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(Promotion.normalize(couponCode).getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(checksum.getValue());
+    }
+}
@@ -1,19 +1,31 @@
 package online.threadly.order_and_cart_management.service;
 
 import lombok.AllArgsConstructor;
-import online.threadly.order_and_cart_management.client.ProductClient;
 import online.threadly.order_and_cart_management.dto.AddToCartRequest;
 import online.threadly.order_and_cart_management.dto.AddToCartResponse;
 import online.threadly.order_and_cart_management.dto.CartResponse;
 import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.dto.ProductLookupResult;
 import online.threadly.order_and_cart_management.exception.BadRequestException;
 import online.threadly.order_and_cart_management.model.Cart;
 import online.threadly.order_and_cart_management.model.CartItem;
+import online.threadly.order_and_cart_management.pricing.CartLine;
+import online.threadly.order_and_cart_management.pricing.Pricing;
+import online.threadly.order_and_cart_management.pricing.PricingEngine;
+import online.threadly.order_and_cart_management.projection.CartItemView;
 import online.threadly.order_and_cart_management.repository.CartItemRepository;
 import online.threadly.order_and_cart_management.repository.CartRepository;
+import online.threadly.order_and_cart_management.sharding.ShardKey;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -22,14 +34,18 @@ public class CartService {
 
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
-    private final ProductClient productClient;
+    private final ProductLookupService productLookupService;
+    private final PricingEngine pricingEngine;
+    private final CartETags cartETags;
 
-    public AddToCartResponse addToCart(UUID userId, AddToCartRequest request) {
+    // locks the cart row like checkout does, so an item cannot slip in while a cart is being checked out
+    @Transactional
+    public AddToCartResponse addToCart(@ShardKey UUID userId, AddToCartRequest request) {
         if(request.getQuantity() == null || request.getQuantity() <= 0) {
             throw new BadRequestException("Quantity must be greater than 0");
         }
 
-        Cart cart = cartRepository.findByUserId(userId).orElseGet(() -> {
+        Cart cart = cartRepository.findByUserIdForUpdate(userId).orElseGet(() -> {
             Cart newCart = new Cart();
             newCart.setUserId(userId);
             return cartRepository.save(newCart);
@@ -45,31 +61,70 @@ public class CartService {
 
         cartItem.setQuantity(cartItem.getQuantity() + request.getQuantity());
         cartItemRepository.save(cartItem);
+        // keeps the cart out of the abandoned-cart sweep
+        cart.setUpdatedAt(LocalDateTime.now());
 
         return new AddToCartResponse("Product added to cart successfully", cart.getId());
     }
 
-    public CartResponse getCartForUser(UUID userId) {
-        Cart cart = cartRepository.findByUserId(userId).orElseThrow(() -> new BadRequestException("Cart not found for user."));
+    // not @Transactional: the projection query needs no persistence context and the
+    // product call below must not hold a pooled connection while it waits
+    public CartResponse getCartForUser(@ShardKey UUID userId, String couponCode) {
+        List<CartItemView> rows = cartRepository.findItemViewsByUserId(userId);
+        if (rows.isEmpty()) {
+            throw new BadRequestException("Cart not found for user.");
+        }
 
-        List<CartItem> cartItems = cartItemRepository.findAllByCartId(cart.getId());
-        List<UUID> productIds = cartItems.stream().map(CartItem::getProductId).toList();
-        List<Product> products = productClient.getProductsByIds(productIds);
+        Map<UUID, Integer> quantities = new HashMap<>();
+        for (CartItemView row : rows) {
+            if (row.getProductId() != null) {
+                quantities.put(row.getProductId(), row.getQuantity());
+            }
+        }
 
+        // taken before products and promotions are read, so the tag is never newer than the body
+        String etag = cartETags.of(rows.get(0).getCartId(), rows.get(0).getVersion(), couponCode);
         CartResponse cartResponse = new CartResponse();
-        double totalAmount = 0.0;
-        for(CartItem cartItem : cartItems) {
-            for(Product product : products) {
-                if(cartItem.getProductId().equals(product.getId())) {
-                    product.setQuantity(cartItem.getQuantity());
-                    totalAmount += (product.getPrice() * cartItem.getQuantity());
-                }
+        if (quantities.isEmpty()) {
+            cartResponse.setProducts(List.of());
+            applyPricing(cartResponse, pricingEngine.price(List.of(), couponCode));
+            cartResponse.setEtag(etag);
+            return cartResponse;
+        }
+
+        ProductLookupResult productLookup = productLookupService.getProductsByIds(List.copyOf(quantities.keySet()));
+        List<Product> products = productLookup.getProducts();
+
+        List<CartLine> lines = new ArrayList<>(products.size());
+        for (Product product : products) {
+            Integer quantity = quantities.get(product.getId());
+            if (quantity != null) {
+                product.setQuantity(quantity);
+                lines.add(new CartLine(product.getId(), product.getBrand(),
+                        BigDecimal.valueOf(product.getPrice()).setScale(2, RoundingMode.HALF_UP), quantity));
             }
         }
         cartResponse.setProducts(products);
-        cartResponse.setTotalAmount(totalAmount);
+        applyPricing(cartResponse, pricingEngine.price(lines, couponCode));
+        cartResponse.setStale(productLookup.isStale());
+        cartResponse.setEtag(productLookup.isStale() ? null : etag);
 
         return cartResponse;
     }
 
+    // what getCartForUser would tag the cart with, from one indexed lookup; null when the user has no cart
+    public String getCartETag(@ShardKey UUID userId, String couponCode) {
+        return cartRepository.findVersionByUserId(userId)
+                .map(cart -> cartETags.of(cart.getCartId(), cart.getVersion(), couponCode))
+                .orElse(null);
+    }
+
+    private static void applyPricing(CartResponse cartResponse, Pricing pricing) {
+        cartResponse.setLines(pricing.lines());
+        cartResponse.setDiscounts(pricing.discounts());
+        cartResponse.setSubtotal(pricing.subtotal());
+        cartResponse.setDiscountAmount(pricing.discount());
+        cartResponse.setTotalAmount(pricing.total());
+    }
+
 }
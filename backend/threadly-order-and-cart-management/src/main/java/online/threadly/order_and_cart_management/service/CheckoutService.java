@@ -0,0 +1,147 @@
+package online.threadly.order_and_cart_management.service;
+
+import feign.FeignException;
+import lombok.AllArgsConstructor;
+import online.threadly.order_and_cart_management.client.ProductClient;
+import online.threadly.order_and_cart_management.dto.OrderLineResponse;
+import online.threadly.order_and_cart_management.dto.OrderResponse;
+import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.dto.StockReservationRequest;
+import online.threadly.order_and_cart_management.exception.BadRequestException;
+import online.threadly.order_and_cart_management.model.Cart;
+import online.threadly.order_and_cart_management.model.CartItem;
+import online.threadly.order_and_cart_management.model.Order;
+import online.threadly.order_and_cart_management.model.OrderLine;
+import online.threadly.order_and_cart_management.model.OrderStatus;
+import online.threadly.order_and_cart_management.pricing.CartLine;
+import online.threadly.order_and_cart_management.pricing.Pricing;
+import online.threadly.order_and_cart_management.pricing.PricingEngine;
+import online.threadly.order_and_cart_management.repository.CartItemRepository;
+import online.threadly.order_and_cart_management.repository.CartRepository;
+import online.threadly.order_and_cart_management.repository.OrderRepository;
+import online.threadly.order_and_cart_management.sharding.ShardKey;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@AllArgsConstructor
+public class CheckoutService {
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final OrderRepository orderRepository;
+    private final ProductClient productClient;
+    private final PricingEngine pricingEngine;
+
+    /**
+     * Turns the user's cart into an order. The cart row is locked for the whole
+     * transaction, so concurrent add-to-cart calls and duplicate submits with the
+     * same idempotency key are serialized behind it; a duplicate then finds the
+     * committed order and gets it back instead of creating a second one.
+     */
+    @Transactional
+    public OrderResponse checkout(@ShardKey UUID userId, String idempotencyKey, String couponCode) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key header must be between 1 and " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        Cart cart = cartRepository.findByUserIdForUpdate(userId).orElse(null);
+
+        Optional<Order> existingOrder = orderRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+        if (existingOrder.isPresent()) {
+            return toResponse(existingOrder.get());
+        }
+        if (cart == null) {
+            throw new BadRequestException("Cart not found for user.");
+        }
+
+        List<CartItem> cartItems = cartItemRepository.findAllByCartId(cart.getId());
+        if (cartItems.isEmpty()) {
+            throw new BadRequestException("Cart is empty.");
+        }
+
+        List<StockReservationRequest> reservations = cartItems.stream()
+                .map(cartItem -> new StockReservationRequest(cartItem.getProductId(), cartItem.getQuantity()))
+                .toList();
+        Map<UUID, Product> reservedProducts = reserveStock(reservations);
+
+        Order order = new Order();
+        order.setUserId(userId);
+        order.setIdempotencyKey(idempotencyKey);
+        order.setStatus(OrderStatus.CONFIRMED);
+        List<CartLine> pricedLines = new ArrayList<>(cartItems.size());
+        for (CartItem cartItem : cartItems) {
+            Product product = reservedProducts.get(cartItem.getProductId());
+            if (product == null) {
+                // throwing rolls the transaction back, which hands the lines that were reserved back as well
+                throw new BadRequestException("Product " + cartItem.getProductId() + " in your cart is no longer available.");
+            }
+            OrderLine line = new OrderLine();
+            line.setProductId(cartItem.getProductId());
+            line.setProductName(product.getName());
+            line.setUnitPrice(BigDecimal.valueOf(product.getPrice()).setScale(2, RoundingMode.HALF_UP));
+            line.setQuantity(cartItem.getQuantity());
+            order.addLine(line);
+            pricedLines.add(new CartLine(line.getProductId(), product.getBrand(), line.getUnitPrice(), line.getQuantity()));
+        }
+        // the same promotions the cart showed, at the prices stock was reserved at
+        Pricing pricing = pricingEngine.price(pricedLines, couponCode);
+        order.setDiscountAmount(pricing.discount());
+        order.setTotalAmount(pricing.total());
+
+        // lines are inserted in JDBC batches (hibernate.jdbc.batch_size)
+        orderRepository.save(order);
+        cartItemRepository.deleteAllByCartIdInBulk(cart.getId());
+        // the bulk delete does not touch the cart row; updating it bumps the version behind the cart's ETag
+        cart.setUpdatedAt(LocalDateTime.now());
+
+        return toResponse(order);
+    }
+
+    private Map<UUID, Product> reserveStock(List<StockReservationRequest> reservations) {
+        List<Product> products;
+        try {
+            products = productClient.reserveStock(reservations);
+        } catch (FeignException.FeignClientException exception) {
+            throw new BadRequestException("Some products in your cart are no longer available in the requested quantity.");
+        }
+
+        // hand the stock back if anything after the reservation makes our local transaction roll back
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    productClient.releaseStock(reservations);
+                }
+            }
+        });
+
+        Map<UUID, Product> productsById = new HashMap<>();
+        for (Product product : products) {
+            productsById.put(product.getId(), product);
+        }
+        return productsById;
+    }
+
+    private OrderResponse toResponse(Order order) {
+        List<OrderLineResponse> lines = order.getLines().stream()
+                .map(line -> new OrderLineResponse(line.getProductId(), line.getProductName(), line.getUnitPrice(), line.getQuantity()))
+                .toList();
+        return new OrderResponse(order.getId(), order.getStatus(), order.getDiscountAmount(), order.getTotalAmount(), lines,
+                order.getCreatedAt());
+    }
+}
@@ -0,0 +1,95 @@
+package online.threadly.order_and_cart_management.service;
+
+import feign.FeignException;
+import feign.RetryableException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import online.threadly.order_and_cart_management.client.HedgingProductClient;
+import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.dto.ProductLookupResult;
+import online.threadly.order_and_cart_management.exception.ServiceUnavailableException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Wraps every call to threadly-product in a bulkhead and a circuit breaker
+ * (configured under resilience4j.*.instances.product-service). When the call
+ * is rejected, times out or fails with a 5xx, the cart is served from the
+ * last-known product data.
+ */
+@Service
+public class ProductLookupService {
+
+    public static final String PRODUCT_SERVICE = "product-service";
+
+    private final HedgingProductClient productClient;
+    private final ProductSnapshotCache productSnapshotCache;
+    private final Counter liveLookups;
+    private final Counter staleLookups;
+    private final Counter failedLookups;
+
+    public ProductLookupService(HedgingProductClient productClient, ProductSnapshotCache productSnapshotCache, MeterRegistry meterRegistry) {
+        this.productClient = productClient;
+        this.productSnapshotCache = productSnapshotCache;
+        this.liveLookups = lookupCounter(meterRegistry, "live");
+        this.staleLookups = lookupCounter(meterRegistry, "stale");
+        this.failedLookups = lookupCounter(meterRegistry, "unavailable");
+    }
+
+    @CircuitBreaker(name = PRODUCT_SERVICE, fallbackMethod = "getLastKnownProducts")
+    @Bulkhead(name = PRODUCT_SERVICE)
+    public ProductLookupResult getProductsByIds(List<UUID> productIds) {
+        List<Product> products = productClient.getProductsByIds(productIds);
+        productSnapshotCache.putAll(products);
+        liveLookups.increment();
+        return new ProductLookupResult(products, false);
+    }
+
+    // breaker open
+    private ProductLookupResult getLastKnownProducts(List<UUID> productIds, CallNotPermittedException exception) {
+        return lastKnownProducts(productIds);
+    }
+
+    // too many calls already in flight
+    private ProductLookupResult getLastKnownProducts(List<UUID> productIds, BulkheadFullException exception) {
+        return lastKnownProducts(productIds);
+    }
+
+    // connect/read timeout or connection refused
+    private ProductLookupResult getLastKnownProducts(List<UUID> productIds, RetryableException exception) {
+        return lastKnownProducts(productIds);
+    }
+
+    // 5xx from threadly-product; 4xx responses are the caller's fault and are rethrown as-is
+    private ProductLookupResult getLastKnownProducts(List<UUID> productIds, FeignException.FeignServerException exception) {
+        return lastKnownProducts(productIds);
+    }
+
+    private ProductLookupResult lastKnownProducts(List<UUID> productIds) {
+        List<Product> products = new ArrayList<>(productIds.size());
+        for (UUID productId : productIds) {
+            Product product = productSnapshotCache.get(productId);
+            if (product == null) {
+                failedLookups.increment();
+                throw new ServiceUnavailableException("Product service is unavailable, please try again later.");
+            }
+            products.add(product);
+        }
+        staleLookups.increment();
+        return new ProductLookupResult(products, true);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String path) {
+        return Counter.builder("cart.product.lookups")
+                .description("Product lookups made while building a cart, by the path that served them")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,54 @@
+package online.threadly.order_and_cart_management.service;
+
+import online.threadly.order_and_cart_management.dto.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Last-known copy of every product we successfully fetched from threadly-product.
+ * Used to keep serving carts while the product service is unavailable.
+ */
+@Component
+public class ProductSnapshotCache {
+
+    private final Map<UUID, Product> products;
+
+    public ProductSnapshotCache(@Value("${cart.product-snapshot.max-entries:10000}") int maxEntries) {
+        // access-ordered LinkedHashMap gives us a simple LRU bound
+        this.products = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Product> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public void putAll(Iterable<Product> fetchedProducts) {
+        for (Product product : fetchedProducts) {
+            products.put(product.getId(), copyOf(product));
+        }
+    }
+
+    // returns a copy so callers can set the cart quantity without touching the snapshot
+    public Product get(UUID productId) {
+        Product product = products.get(productId);
+        return product == null ? null : copyOf(product);
+    }
+
+    private Product copyOf(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setSlug(product.getSlug());
+        copy.setBrand(product.getBrand());
+        copy.setImages(product.getImages());
+        copy.setPrice(product.getPrice());
+        copy.setQuantity(product.getQuantity());
+        return copy;
+    }
+}
@@ -0,0 +1,181 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Moves carts and orders onto the shard the current ring assigns them, after
+ * shards were added. Runs in the background while the service keeps serving:
+ * the old shards are walked in user id order, a batch at a time with a pause
+ * in between, and each misplaced user is moved on its own.
+ * <p>
+ * A move locks the user's cart row on the old shard, copies the cart, its items
+ * and the user's orders to the new shard, commits there, then deletes them from
+ * the old shard. From the moment the copy commits ShardRouter sends the user to
+ * the new shard. A request that was already waiting on the old shard's cart lock
+ * can still write there; the next pass merges that leftover into the new
+ * shard's cart, adding up quantities. Copies skip rows whose id already exists,
+ * so a move interrupted between the two commits is finished by the next pass.
+ * <p>
+ * Once a pass finds nothing left to move, remove threadly.sharding.previous-shards.
+ */
+@Slf4j
+public class CartResharder {
+
+    private static final UUID KEYSET_START = new UUID(0L, 0L);
+
+    private final ShardRouter shardRouter;
+    private final Map<String, TransactionTemplate> transactions = new HashMap<>();
+    private final int batchSize;
+    private final Duration pauseBetweenBatches;
+    private final Counter usersMoved;
+
+    public CartResharder(ShardRouter shardRouter, MeterRegistry meterRegistry, int batchSize, Duration pauseBetweenBatches) {
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+        this.pauseBetweenBatches = pauseBetweenBatches;
+        shardRouter.pools().forEach((shard, pool) ->
+                transactions.put(shard, new TransactionTemplate(new DataSourceTransactionManager(pool))));
+        this.usersMoved = Counter.builder("cart.resharding.users.moved").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${threadly.sharding.resharding.interval:5m}",
+            initialDelayString = "${threadly.sharding.resharding.initial-delay:30s}")
+    public void reshard() {
+        long moved = reshardOnce();
+        if (moved == 0) {
+            log.info("Resharding: every cart is on its shard, threadly.sharding.previous-shards can be removed");
+        } else {
+            log.info("Resharding: moved {} users", moved);
+        }
+    }
+
+    long reshardOnce() {
+        if (!shardRouter.isResharding()) {
+            return 0;
+        }
+        long moved = 0;
+        for (String source : shardRouter.previousRing().shards()) {
+            moved += reshardFrom(source);
+        }
+        return moved;
+    }
+
+    private long reshardFrom(String source) {
+        JdbcTemplate jdbcTemplate = shardRouter.jdbcTemplate(source);
+        UUID after = KEYSET_START;
+        long moved = 0;
+        while (true) {
+            List<UUID> userIds = jdbcTemplate.queryForList("""
+                    SELECT user_id FROM cart WHERE user_id > ?
+                    UNION
+                    SELECT user_id FROM orders WHERE user_id > ?
+                    ORDER BY user_id
+                    LIMIT ?
+                    """, UUID.class, after, after, batchSize);
+            for (UUID userId : userIds) {
+                String target = shardRouter.ring().shardFor(userId);
+                if (!target.equals(source)) {
+                    moveUser(userId, source, target);
+                    usersMoved.increment();
+                    moved++;
+                }
+            }
+            if (userIds.size() < batchSize) {
+                return moved;
+            }
+            after = userIds.get(userIds.size() - 1);
+            pause();
+        }
+    }
+
+    void moveUser(UUID userId, String source, String target) {
+        JdbcTemplate from = shardRouter.jdbcTemplate(source);
+        JdbcTemplate to = shardRouter.jdbcTemplate(target);
+        transactions.get(source).executeWithoutResult(sourceStatus -> {
+            List<Map<String, Object>> carts = from.queryForList("SELECT * FROM cart WHERE user_id = ? FOR UPDATE", userId);
+            List<Map<String, Object>> items = carts.isEmpty() ? List.of() : from.queryForList(
+                    "SELECT ci.* FROM cart_item ci JOIN cart c ON c.id = ci.cart_id WHERE c.user_id = ?", userId);
+            List<Map<String, Object>> orders = from.queryForList("SELECT * FROM orders WHERE user_id = ?", userId);
+            List<Map<String, Object>> lines = orders.isEmpty() ? List.of() : from.queryForList(
+                    "SELECT ol.* FROM order_line ol JOIN orders o ON o.id = ol.order_id WHERE o.user_id = ?", userId);
+
+            transactions.get(target).executeWithoutResult(targetStatus -> {
+                copyCart(to, userId, carts, items);
+                for (Map<String, Object> order : orders) {
+                    insertIfAbsent(to, "orders", order);
+                }
+                for (Map<String, Object> line : lines) {
+                    insertIfAbsent(to, "order_line", line);
+                }
+            });
+
+            from.update("DELETE FROM order_line WHERE order_id IN (SELECT id FROM orders WHERE user_id = ?)", userId);
+            from.update("DELETE FROM orders WHERE user_id = ?", userId);
+            from.update("DELETE FROM cart_item WHERE cart_id IN (SELECT id FROM cart WHERE user_id = ?)", userId);
+            from.update("DELETE FROM cart WHERE user_id = ?", userId);
+        });
+    }
+
+    private void copyCart(JdbcTemplate to, UUID userId, List<Map<String, Object>> carts, List<Map<String, Object>> items) {
+        if (carts.isEmpty()) {
+            return;
+        }
+        List<UUID> existing = to.queryForList("SELECT id FROM cart WHERE user_id = ? FOR UPDATE", UUID.class, userId);
+        UUID cartId;
+        if (existing.isEmpty()) {
+            insert(to, "cart", carts.get(0));
+            cartId = (UUID) carts.get(0).get("id");
+        } else {
+            cartId = existing.get(0);
+            // merging changes the cart, so its version (and with it the cart's ETag) has to move on
+            to.update("UPDATE cart SET version = version + 1 WHERE id = ?", cartId);
+        }
+
+        for (Map<String, Object> item : items) {
+            List<Map<String, Object>> current = to.queryForList(
+                    "SELECT id FROM cart_item WHERE cart_id = ? AND product_id = ?", cartId, item.get("product_id"));
+            if (current.isEmpty()) {
+                Map<String, Object> moved = new HashMap<>(item);
+                moved.put("cart_id", cartId);
+                insert(to, "cart_item", moved);
+            } else if (!current.get(0).get("id").equals(item.get("id"))) {
+                to.update("UPDATE cart_item SET quantity = quantity + ? WHERE id = ?", item.get("quantity"), current.get(0).get("id"));
+            }
+        }
+    }
+
+    private static void insertIfAbsent(JdbcTemplate to, String table, Map<String, Object> row) {
+        Integer present = to.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE id = ?", Integer.class, row.get("id"));
+        if (present == null || present == 0) {
+            insert(to, table, row);
+        }
+    }
+
+    // columns are taken from the row as read, so columns added later are carried over too
+    private static void insert(JdbcTemplate to, String table, Map<String, Object> row) {
+        String columns = String.join(", ", row.keySet());
+        String placeholders = row.keySet().stream().map(column -> "?").collect(Collectors.joining(", "));
+        to.update("INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")", row.values().toArray());
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(pauseBetweenBatches);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
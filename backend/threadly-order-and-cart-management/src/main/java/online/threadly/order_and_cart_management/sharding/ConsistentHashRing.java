@@ -0,0 +1,75 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Maps a user id to one of a fixed set of shard names. Every shard owns
+ * virtualNodes points on a 64-bit ring and a user belongs to the first point
+ * at or after the hash of its id. Adding a shard only moves the users that
+ * fall on the arcs its points take over, about 1/N of them, and all of them
+ * move to the new shard.
+ * <p>
+ * Points depend only on the shard name, so renaming a shard moves its data.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> shards;
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        int size = shards.size() * virtualNodes;
+        long[] unsortedPoints = new long[size];
+        String[] unsortedOwners = new String[size];
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                UUID point = UUID.nameUUIDFromBytes((shards.get(shard) + "#" + node).getBytes(StandardCharsets.UTF_8));
+                unsortedPoints[shard * virtualNodes + node] = hash(point);
+                unsortedOwners[shard * virtualNodes + node] = shards.get(shard);
+            }
+        }
+        Integer[] order = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingLong(index -> unsortedPoints[index]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = unsortedPoints[order[i]];
+            owners[i] = unsortedOwners[order[i]];
+        }
+    }
+
+    public String shardFor(UUID userId) {
+        int index = Arrays.binarySearch(points, hash(userId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public List<String> shards() {
+        return shards;
+    }
+
+    // v7 ids share their leading timestamp bits, so both halves are mixed (murmur3 fmix64)
+    static long hash(UUID id) {
+        return mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,40 @@
+package online.threadly.order_and_cart_management.sharding;
+
+/**
+ * The shard the current thread's connections come from.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    // returns the previous shard, to be handed back to restore
+    public static String enter(String shard) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    public static void restore(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static void runOn(String shard, Runnable task) {
+        String previous = enter(shard);
+        try {
+            task.run();
+        } finally {
+            restore(previous);
+        }
+    }
+}
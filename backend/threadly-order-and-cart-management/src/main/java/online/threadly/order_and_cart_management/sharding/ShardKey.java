@@ -0,0 +1,15 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the user id parameter of a service method. With sharding enabled the
+ * whole call, including the transaction it opens, runs against that user's shard.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+}
@@ -0,0 +1,91 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Owns one connection pool per shard and decides which shard a user's carts
+ * and orders live on.
+ * <p>
+ * While a reshard is in progress (a previous ring is configured) a user whose
+ * owner differs between the two rings may still be on the old shard. Such a
+ * user is routed to the new owner once anything of theirs is there, to the old
+ * owner while their rows are only there, and to the new owner if they have no
+ * rows at all. CartResharder then moves the old rows over, one user at a time.
+ */
+public class ShardRouter implements Closeable {
+
+    private static final String USER_HAS_ROWS =
+            "SELECT CASE WHEN EXISTS (SELECT 1 FROM cart WHERE user_id = ?) " +
+            "OR EXISTS (SELECT 1 FROM orders WHERE user_id = ?) THEN 1 ELSE 0 END";
+
+    private final Map<String, HikariDataSource> pools;
+    private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+    private final ConsistentHashRing ring;
+    private final ConsistentHashRing previousRing;
+
+    public ShardRouter(Map<String, HikariDataSource> pools, int virtualNodes, List<String> previousShards) {
+        this.pools = Collections.unmodifiableMap(new LinkedHashMap<>(pools));
+        this.ring = new ConsistentHashRing(List.copyOf(pools.keySet()), virtualNodes);
+        for (String shard : previousShards) {
+            if (!pools.containsKey(shard)) {
+                throw new IllegalArgumentException("Previous shard " + shard + " is not configured under threadly.sharding.shards");
+            }
+        }
+        this.previousRing = previousShards.isEmpty() ? null : new ConsistentHashRing(previousShards, virtualNodes);
+        pools.forEach((shard, pool) -> jdbcTemplates.put(shard, new JdbcTemplate(pool)));
+    }
+
+    public String shardFor(UUID userId) {
+        String owner = ring.shardFor(userId);
+        if (previousRing == null) {
+            return owner;
+        }
+        String previousOwner = previousRing.shardFor(userId);
+        if (owner.equals(previousOwner) || hasRows(owner, userId)) {
+            return owner;
+        }
+        return hasRows(previousOwner, userId) ? previousOwner : owner;
+    }
+
+    public boolean isResharding() {
+        return previousRing != null;
+    }
+
+    public ConsistentHashRing ring() {
+        return ring;
+    }
+
+    public ConsistentHashRing previousRing() {
+        return previousRing;
+    }
+
+    public List<String> shards() {
+        return ring.shards();
+    }
+
+    public Map<String, HikariDataSource> pools() {
+        return pools;
+    }
+
+    public JdbcTemplate jdbcTemplate(String shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    private boolean hasRows(String shard, UUID userId) {
+        Integer found = jdbcTemplates.get(shard).queryForObject(USER_HAS_ROWS, Integer.class, userId, userId);
+        return found != null && found == 1;
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(HikariDataSource::close);
+    }
+}
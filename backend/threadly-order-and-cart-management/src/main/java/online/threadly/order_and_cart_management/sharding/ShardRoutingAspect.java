@@ -0,0 +1,55 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs service methods with a @ShardKey parameter against that user's shard.
+ * Ordered ahead of the transaction interceptor, so the transaction's
+ * connection already comes from the right pool.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ShardRoutingAspect {
+
+    private final ShardRouter shardRouter;
+    private final Map<Method, Integer> shardKeyIndexes = new ConcurrentHashMap<>();
+
+    public ShardRoutingAspect(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Around("execution(* online.threadly.order_and_cart_management.service..*(.., @online.threadly.order_and_cart_management.sharding.ShardKey (*), ..))")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        UUID userId = (UUID) joinPoint.getArgs()[shardKeyIndexes.computeIfAbsent(method, ShardRoutingAspect::shardKeyIndex)];
+        String previous = ShardContext.enter(shardRouter.shardFor(userId));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    private static int shardKeyIndex(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int index = 0; index < annotations.length; index++) {
+            for (Annotation annotation : annotations[index]) {
+                if (annotation instanceof ShardKey) {
+                    return index;
+                }
+            }
+        }
+        throw new IllegalStateException("No @ShardKey parameter on " + method);
+    }
+}
@@ -0,0 +1,23 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Hands out connections from the pool of the shard in ShardContext. Without
+ * one, e.g. while Hibernate boots, connections come from the first shard by name.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(ShardRouter shardRouter) {
+        setTargetDataSources(new LinkedHashMap<>(shardRouter.pools()));
+        setDefaultTargetDataSource(shardRouter.pools().get(shardRouter.shards().get(0)));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
@@ -0,0 +1,67 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.cfg.SchemaToolingSettings;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hibernate's ddl-auto only reaches the first shard, the one connections come
+ * from while it boots. Once the application context is up this applies the
+ * same schema update to every other shard, if ddl-auto changes the schema at all.
+ */
+@Slf4j
+public class ShardSchemaInitializer implements Integrator, HibernatePropertiesCustomizer, SmartInitializingSingleton {
+
+    private final ShardRouter shardRouter;
+    private final boolean updateSchema;
+    private Metadata metadata;
+    private SessionFactoryImplementor sessionFactory;
+
+    public ShardSchemaInitializer(ShardRouter shardRouter, String ddlAuto) {
+        this.shardRouter = shardRouter;
+        this.updateSchema = List.of("update", "create", "create-drop", "create-only").contains(ddlAuto);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(this));
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!updateSchema || metadata == null) {
+            return;
+        }
+        Map<String, Object> settings = new HashMap<>(sessionFactory.getProperties());
+        settings.keySet().removeIf(key -> key.startsWith("jakarta.persistence.schema-generation") || key.startsWith("javax.persistence.schema-generation"));
+        settings.put(SchemaToolingSettings.HBM2DDL_AUTO, "update");
+        settings.put(SchemaToolingSettings.HBM2DDL_HALT_ON_ERROR, true);
+        for (String shard : shardRouter.shards().subList(1, shardRouter.shards().size())) {
+            log.info("Updating schema on shard {}", shard);
+            ShardContext.runOn(shard, () -> SchemaManagementToolCoordinator.process(
+                    metadata, sessionFactory.getServiceRegistry(), settings, action -> { }));
+        }
+    }
+}
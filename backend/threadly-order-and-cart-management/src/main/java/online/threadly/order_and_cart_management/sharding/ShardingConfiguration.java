@@ -0,0 +1,76 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces Spring Boot's single DataSource with one pool per entry of
+ * threadly.sharding.shards (shard name to JDBC url). Credentials and Hikari
+ * settings come from spring.datasource. Carts, cart items and orders are
+ * placed by a consistent hash of the user id; see ShardRouter.
+ * <p>
+ * To add shards, append them to threadly.sharding.shards and list the shards
+ * before the change in threadly.sharding.previous-shards. With
+ * threadly.sharding.resharding.enabled on one instance, CartResharder then
+ * moves the affected users in the background.
+ */
+@Configuration
+@ConditionalOnProperty(name = "threadly.sharding.enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+    @Bean
+    public ShardRouter shardRouter(DataSourceProperties properties, Environment environment,
+                                   @Value("${threadly.sharding.virtual-nodes:256}") int virtualNodes,
+                                   @Value("${threadly.sharding.previous-shards:}") List<String> previousShards) {
+        Binder binder = Binder.get(environment);
+        Map<String, String> urls = binder.bind("threadly.sharding.shards", Bindable.mapOf(String.class, String.class))
+                .orElseThrow(() -> new IllegalStateException("threadly.sharding.shards must name at least one shard"));
+
+        // sorted, so the first shard (the one un-keyed connections come from) does not depend on property order
+        Map<String, HikariDataSource> pools = new TreeMap<>();
+        urls.forEach((shard, url) -> {
+            HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName("shard-" + shard);
+            pools.put(shard, pool);
+        });
+        return new ShardRouter(pools, virtualNodes, previousShards);
+    }
+
+    @Bean
+    public ShardRoutingDataSource dataSource(ShardRouter shardRouter) {
+        return new ShardRoutingDataSource(shardRouter);
+    }
+
+    @Bean
+    public ShardRoutingAspect shardRoutingAspect(ShardRouter shardRouter) {
+        return new ShardRoutingAspect(shardRouter);
+    }
+
+    @Bean
+    public ShardSchemaInitializer shardSchemaInitializer(ShardRouter shardRouter,
+                                                         @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        return new ShardSchemaInitializer(shardRouter, ddlAuto);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "threadly.sharding.resharding.enabled", havingValue = "true")
+    public CartResharder cartResharder(ShardRouter shardRouter, MeterRegistry meterRegistry,
+                                       @Value("${threadly.sharding.resharding.batch-size:500}") int batchSize,
+                                       @Value("${threadly.sharding.resharding.pause-between-batches:100ms}") Duration pauseBetweenBatches) {
+        return new CartResharder(shardRouter, meterRegistry, batchSize, pauseBetweenBatches);
+    }
+}
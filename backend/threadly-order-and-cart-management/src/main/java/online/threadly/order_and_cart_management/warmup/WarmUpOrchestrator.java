@@ -0,0 +1,123 @@
+package online.threadly.order_and_cart_management.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+import online.threadly.commons.warmup.SyntheticTraffic;
+import online.threadly.commons.warmup.WarmUpHealthIndicator;
+import online.threadly.commons.warmup.WarmUpRunner;
+import online.threadly.commons.warmup.WarmUpSettings;
+import online.threadly.order_and_cart_management.service.ProductLookupService;
+import online.threadly.order_and_cart_management.sharding.ShardContext;
+import online.threadly.order_and_cart_management.sharding.ShardRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The cart service's warm-up: connections on every shard when sharding is
+ * enabled, then the products in the most recently updated carts fetched
+ * through ProductLookupService, which fills the product snapshot cache and the
+ * pooled connections to threadly-product, then cart reads for those carts'
+ * users, plus one for a user without a cart, replayed until latency settles.
+ * The replay only reads: adding to a cart and checkout are not exercised.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "threadly.warm-up.enabled", havingValue = "true")
+public class WarmUpOrchestrator extends WarmUpRunner {
+
+    private static final String RECENT_USERS =
+            "SELECT user_id FROM cart WHERE updated_at IS NOT NULL ORDER BY updated_at DESC LIMIT ?";
+    private static final String RECENT_PRODUCTS =
+            "SELECT DISTINCT ci.product_id FROM cart_item ci JOIN ("
+                    + "SELECT id FROM cart WHERE updated_at IS NOT NULL ORDER BY updated_at DESC LIMIT ?"
+                    + ") recent ON recent.id = ci.cart_id";
+    private static final int LOOKUP_SIZE = 100;
+
+    private final DataSource dataSource;
+    private final ObjectProvider<ShardRouter> shardRouter;
+    private final ProductLookupService productLookupService;
+    private final int recentCarts;
+
+    public WarmUpOrchestrator(ApplicationContext applicationContext, DataSource dataSource,
+                              PlatformTransactionManager transactionManager, ObjectProvider<ShardRouter> shardRouter,
+                              ProductLookupService productLookupService, WarmUpHealthIndicator health,
+                              WarmUpSettings settings,
+                              @Value("${threadly.warm-up.recent-carts:200}") int recentCarts) {
+        super(applicationContext, dataSource, transactionManager, health, settings);
+        this.dataSource = dataSource;
+        this.shardRouter = shardRouter;
+        this.productLookupService = productLookupService;
+        this.recentCarts = recentCarts;
+    }
+
+    @Override
+    protected List<ConnectionTarget> connectionTargets() {
+        List<ConnectionTarget> targets = new ArrayList<>();
+        for (String shard : shards()) {
+            targets.add(shard == null
+                    ? ConnectionTarget.primary()
+                    : new ConnectionTarget(shard, false, task -> ShardContext.runOn(shard, task)));
+        }
+        return targets;
+    }
+
+    @Override
+    protected List<SyntheticTraffic.Request> preload() {
+        Set<UUID> users = new LinkedHashSet<>();
+        Set<UUID> products = new LinkedHashSet<>();
+        for (String shard : shards()) {
+            loadRecentCarts(shard, users, products);
+        }
+        preloadProducts(new ArrayList<>(products));
+
+        List<SyntheticTraffic.Request> mix = new ArrayList<>();
+        for (UUID user : users) {
+            mix.add(SyntheticTraffic.Request.get("/api/v1/cart", "application/json").withHeader("X-USER-ID", user.toString()));
+        }
+        mix.add(SyntheticTraffic.Request.get("/api/v1/cart", "application/json").withHeader("X-USER-ID", UUID.randomUUID().toString()));
+        return mix;
+    }
+
+    // a single null entry when carts are not sharded
+    private List<String> shards() {
+        ShardRouter router = shardRouter.getIfAvailable();
+        return router == null ? Collections.singletonList(null) : router.shards();
+    }
+
+    private void loadRecentCarts(String shard, Set<UUID> users, Set<UUID> products) {
+        JdbcTemplate jdbcTemplate = shard == null ? new JdbcTemplate(dataSource) : shardRouter.getObject().jdbcTemplate(shard);
+        try {
+            users.addAll(jdbcTemplate.queryForList(RECENT_USERS, UUID.class, recentCarts));
+            products.addAll(jdbcTemplate.queryForList(RECENT_PRODUCTS, UUID.class, recentCarts));
+        } catch (RuntimeException exception) {
+            log.warn("Warm-up could not read recent carts{}: {}", shard == null ? "" : " on shard " + shard,
+                    exception.getMessage());
+        }
+    }
+
+    private void preloadProducts(List<UUID> productIds) {
+        int loaded = 0;
+        for (int from = 0; from < productIds.size(); from += LOOKUP_SIZE) {
+            try {
+                loaded += productLookupService.getProductsByIds(
+                        productIds.subList(from, Math.min(from + LOOKUP_SIZE, productIds.size()))).getProducts().size();
+            } catch (RuntimeException exception) {
+                log.warn("Warm-up could not fetch products: {}", exception.getMessage());
+                return;
+            }
+        }
+        log.info("Warm-up fetched {} of {} products in recent carts", loaded, productIds.size());
+    }
+}
@@ -0,0 +1,166 @@
+package online.threadly.order_and_cart_management.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.order_and_cart_management.dto.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Every lookup is due a hedge after 1ms; the primary call is held up until the
+ * test lets it go, so whether a hedge was sent only depends on the instances,
+ * the bulkhead and the budget.
+ */
+class HedgingProductClientTest {
+
+    private static final List<UUID> IDS = List.of(UUID.randomUUID());
+    private static final List<Product> PRODUCTS = List.of(new Product());
+
+    private final ProductClient productClient = mock(ProductClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch releasePrimary = new CountDownLatch(1);
+    private Bulkhead bulkhead;
+    private HedgingProductClient hedgingClient;
+
+    @AfterEach
+    void shutdown() {
+        releasePrimary.countDown();
+        hedgingClient.shutdown();
+    }
+
+    @Test
+    void theHedgeGoesToTheInstanceAfterThePrimarys() {
+        hedgingClient = client(1.0, 25, "product-1", "product-2");
+        when(productClient.getProductsByIdsCbor(eq("product-1"), anyList())).thenAnswer(invocation -> slowPrimary());
+        when(productClient.getProductsByIdsCbor(eq("product-2"), anyList())).thenReturn(PRODUCTS);
+
+        assertThat(hedgingClient.getProductsByIds(IDS)).isSameAs(PRODUCTS);
+        verify(productClient, timeout(1000)).getProductsByIdsCbor("product-1", IDS);
+        verify(productClient).getProductsByIdsCbor("product-2", IDS);
+        assertThat(hedges("sent")).isEqualTo(1);
+    }
+
+    @Test
+    void aSingleInstanceIsNeverHedged() {
+        hedgingClient = client(1.0, 25, "product-1");
+        when(productClient.getProductsByIdsCbor(eq("product-1"), anyList())).thenAnswer(invocation -> releasedPrimary());
+
+        assertThat(hedgingClient.getProductsByIds(IDS)).isSameAs(PRODUCTS);
+        assertThat(hedges("sent")).isZero();
+        assertThat(hedges("skipped")).isEqualTo(1);
+    }
+
+    @Test
+    void aHedgeHoldsABulkheadPermitUntilItAnswers() {
+        hedgingClient = client(1.0, 2, "product-1", "product-2");
+        // the permit ProductLookupService takes for the primary
+        assertThat(bulkhead.tryAcquirePermission()).isTrue();
+        AtomicInteger permitsWhileHedging = new AtomicInteger(-1);
+        when(productClient.getProductsByIdsCbor(eq("product-1"), anyList())).thenAnswer(invocation -> slowPrimary());
+        when(productClient.getProductsByIdsCbor(eq("product-2"), anyList())).thenAnswer(invocation -> {
+            permitsWhileHedging.set(bulkhead.getMetrics().getAvailableConcurrentCalls());
+            return PRODUCTS;
+        });
+
+        hedgingClient.getProductsByIds(IDS);
+
+        assertThat(permitsWhileHedging).hasValue(0);
+        assertThat(bulkhead.getMetrics().getAvailableConcurrentCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void aFullBulkheadLeavesTheLookupUnhedged() {
+        hedgingClient = client(1.0, 1, "product-1", "product-2");
+        assertThat(bulkhead.tryAcquirePermission()).isTrue();
+        when(productClient.getProductsByIdsCbor(eq("product-1"), anyList())).thenAnswer(invocation -> releasedPrimary());
+
+        assertThat(hedgingClient.getProductsByIds(IDS)).isSameAs(PRODUCTS);
+        verify(productClient, never()).getProductsByIdsCbor(eq("product-2"), anyList());
+        assertThat(hedges("skipped")).isEqualTo(1);
+    }
+
+    @Test
+    void hedgesStayWithinTheBudget() {
+        hedgingClient = client(0.25, 25, "product-1", "product-2");
+        releasePrimary.countDown();
+        // the first call of each lookup is the primary, and slower than the 1ms hedge delay
+        AtomicInteger calls = new AtomicInteger();
+        when(productClient.getProductsByIdsCbor(eq("product-1"), anyList())).thenAnswer(invocation -> answer(calls));
+        when(productClient.getProductsByIdsCbor(eq("product-2"), anyList())).thenAnswer(invocation -> answer(calls));
+
+        for (int lookup = 0; lookup < 12; lookup++) {
+            calls.set(0);
+            hedgingClient.getProductsByIds(IDS);
+        }
+
+        // a quarter of a hedge earned per lookup
+        assertThat(hedges("sent")).isEqualTo(3);
+        assertThat(hedges("skipped")).isEqualTo(9);
+    }
+
+    private HedgingProductClient client(double budget, int maxConcurrentCalls, String... instanceIds) {
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        bulkhead = bulkheadRegistry.bulkhead("product-service");
+        ServiceInstance[] instances = new ServiceInstance[instanceIds.length];
+        for (int i = 0; i < instanceIds.length; i++) {
+            instances[i] = new DefaultServiceInstance(instanceIds[i], ProductClient.SERVICE_ID, "10.0.0." + (i + 1), 8081, false);
+        }
+        @SuppressWarnings("unchecked")
+        ObjectProvider<ServiceInstanceListSupplier> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(ServiceInstanceListSuppliers.from(ProductClient.SERVICE_ID, instances));
+        LoadBalancerClientFactory loadBalancerClientFactory = mock(LoadBalancerClientFactory.class);
+        when(loadBalancerClientFactory.getLazyProvider(ProductClient.SERVICE_ID, ServiceInstanceListSupplier.class)).thenReturn(provider);
+        return new HedgingProductClient(productClient, loadBalancerClientFactory, bulkheadRegistry, meterRegistry,
+                true, 0.95, 512, Duration.ofMillis(1), Duration.ofMillis(1), budget, true);
+    }
+
+    // waits until the test ends, so only a hedge can answer the lookup
+    private List<Product> slowPrimary() throws InterruptedException {
+        releasePrimary.await(5, TimeUnit.SECONDS);
+        return List.of();
+    }
+
+    // past the hedge delay, and answering the lookup itself
+    private List<Product> releasedPrimary() throws InterruptedException {
+        Thread.sleep(20);
+        return PRODUCTS;
+    }
+
+    private List<Product> answer(AtomicInteger calls) throws InterruptedException {
+        if (calls.incrementAndGet() == 1) {
+            Thread.sleep(20);
+        }
+        return PRODUCTS;
+    }
+
+    private double hedges(String outcome) {
+        return meterRegistry.get("cart.product.hedges").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,76 @@
+package online.threadly.order_and_cart_management.client;
+
+import feign.Feign;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstancePinningServiceInstanceListSupplierTest {
+
+    private final ServiceInstance first = new DefaultServiceInstance("product-1", ProductClient.SERVICE_ID, "10.0.0.1", 8081, false);
+    private final ServiceInstance second = new DefaultServiceInstance("product-2", ProductClient.SERVICE_ID, "10.0.0.2", 8081, false);
+    private final InstancePinningServiceInstanceListSupplier supplier = new InstancePinningServiceInstanceListSupplier(
+            ServiceInstanceListSuppliers.from(ProductClient.SERVICE_ID, first, second));
+
+    @Test
+    void aPinnedRequestOnlySeesItsInstance() {
+        assertThat(supplier.get(request("product-2")).blockFirst()).containsExactly(second);
+    }
+
+    @Test
+    void anUnpinnedRequestOrOnePinnedToAGoneInstanceSeesThemAll() {
+        assertThat(supplier.get(request(null)).blockFirst()).containsExactly(first, second);
+        assertThat(supplier.get(request("product-3")).blockFirst()).containsExactly(first, second);
+        assertThat(supplier.get().blockFirst()).containsExactly(first, second);
+    }
+
+    @Test
+    void theProductClientSendsThePinOnlyWhenThereIsOne() {
+        List<Map<String, Collection<String>>> sent = new ArrayList<>();
+        ProductClient productClient = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder((body, type, template) -> template.body("[]"))
+                .decoder((response, type) -> List.of())
+                .client((request, options) -> {
+                    sent.add(request.headers());
+                    return Response.builder().request(request).status(200).headers(Map.of()).build();
+                })
+                .target(ProductClient.class, "http://" + ProductClient.SERVICE_ID);
+
+        productClient.getProductsByIdsCbor("product-2", List.of(UUID.randomUUID()));
+        productClient.getProductsByIds(null, List.of(UUID.randomUUID()));
+
+        assertThat(sent.get(0)).containsEntry(InstancePinningServiceInstanceListSupplier.INSTANCE_HEADER, List.of("product-2"));
+        assertThat(sent.get(1)).doesNotContainKey(InstancePinningServiceInstanceListSupplier.INSTANCE_HEADER);
+    }
+
+    // what the Feign load-balancer client hands the load balancer for a call
+    private static org.springframework.cloud.client.loadbalancer.Request<RequestDataContext> request(String pinned) {
+        HttpHeaders headers = new HttpHeaders();
+        if (pinned != null) {
+            headers.add(InstancePinningServiceInstanceListSupplier.INSTANCE_HEADER, pinned);
+        }
+        RequestData data = new RequestData(HttpMethod.POST, URI.create("http://threadly-product/api/v1/products/bulk"),
+                headers, new LinkedMultiValueMap<>(), Map.of());
+        return new DefaultRequest<>(new RequestDataContext(data));
+    }
+}
@@ -0,0 +1,114 @@
+package online.threadly.order_and_cart_management.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.order_and_cart_management.dto.CartResponse;
+import online.threadly.order_and_cart_management.idempotency.IdempotentRequests;
+import online.threadly.order_and_cart_management.service.CartService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CartControllerETagTest {
+
+    private static final UUID USER = UUID.randomUUID();
+    private static final String V1 = "W/\"cart-1\"";
+    private static final String V2 = "W/\"cart-2\"";
+    private static final String V1_WITH_COUPON = "W/\"cart-1-save10\"";
+
+    private final CartService cartService = mock(CartService.class);
+    private final IdempotentRequests idempotentRequests =
+            new IdempotentRequests(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new CartController(cartService, idempotentRequests)).build();
+
+    @Test
+    void anUnchangedCartIsAnswered304WithoutLoadingIt() throws Exception {
+        when(cartService.getCartETag(USER, null)).thenReturn(V1);
+
+        mockMvc.perform(get("/api/v1/cart").header("X-USER-ID", USER).header("If-None-Match", V1))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", V1));
+
+        verify(cartService, never()).getCartForUser(any(), any());
+    }
+
+    @Test
+    void aChangedCartIsSentWithItsNewETag() throws Exception {
+        when(cartService.getCartETag(USER, null)).thenReturn(V2);
+        when(cartService.getCartForUser(USER, null)).thenReturn(cart(V2));
+
+        mockMvc.perform(get("/api/v1/cart").header("X-USER-ID", USER).header("If-None-Match", V1))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", V2))
+                .andExpect(content().string(not(containsString("etag"))));
+    }
+
+    @Test
+    void staleCartsCarryNoETag() throws Exception {
+        CartResponse stale = cart(null);
+        stale.setStale(true);
+        when(cartService.getCartForUser(USER, null)).thenReturn(stale);
+
+        mockMvc.perform(get("/api/v1/cart").header("X-USER-ID", USER))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+
+        verify(cartService, never()).getCartETag(any(), any());
+    }
+
+    @Test
+    void theSameCartWithACouponIsNotAnswered304WithTheTagOfItsUndiscountedTotals() throws Exception {
+        when(cartService.getCartETag(USER, "SAVE10")).thenReturn(V1_WITH_COUPON);
+        when(cartService.getCartForUser(USER, "SAVE10")).thenReturn(cart(V1_WITH_COUPON));
+
+        mockMvc.perform(get("/api/v1/cart").param("coupon", "SAVE10").header("X-USER-ID", USER).header("If-None-Match", V1))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", V1_WITH_COUPON));
+    }
+
+    @Test
+    void aStaleCartIsNotTaggedWhenTheClientsTagNoLongerMatches() throws Exception {
+        // the cart changed, and threadly-product is down while it is reloaded
+        CartResponse stale = cart(null);
+        stale.setStale(true);
+        when(cartService.getCartETag(USER, null)).thenReturn(V2);
+        when(cartService.getCartForUser(USER, null)).thenReturn(stale);
+
+        mockMvc.perform(get("/api/v1/cart").header("X-USER-ID", USER).header("If-None-Match", V1))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    void anyTagInTheListMatchesAndWeaknessIsIgnored() {
+        assertThat(CartController.matches("W/\"a\", W/\"cart-1\"", V1)).isTrue();
+        assertThat(CartController.matches("\"cart-1\"", V1)).isTrue();
+        assertThat(CartController.matches("*", V1)).isTrue();
+        assertThat(CartController.matches("W/\"cart-10\"", V1)).isFalse();
+    }
+
+    private static CartResponse cart(String etag) {
+        CartResponse cart = new CartResponse();
+        cart.setProducts(List.of());
+        cart.setTotalAmount(new BigDecimal("0.00"));
+        cart.setEtag(etag);
+        return cart;
+    }
+}
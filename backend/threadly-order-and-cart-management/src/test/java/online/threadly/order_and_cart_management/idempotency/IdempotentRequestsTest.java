@@ -0,0 +1,175 @@
+package online.threadly.order_and_cart_management.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.order_and_cart_management.exception.BadRequestException;
+import online.threadly.order_and_cart_management.exception.ConflictException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotentRequestsTest {
+
+    private static final UUID USER = UUID.randomUUID();
+    private static final String OPERATION = "POST /api/v1/cart";
+
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @Test
+    void aRetryIsAnsweredWithTheFirstResponseWithoutRunningAgain() {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        ResponseEntity<String> first = requests.execute(USER, OPERATION, "k1", "add tee", this::mutation);
+        ResponseEntity<String> retry = requests.execute(USER, OPERATION, "k1", "add tee", this::mutation);
+
+        assertThat(runs).hasValue(1);
+        assertThat(retry.getBody()).isEqualTo(first.getBody());
+        assertThat(first.getHeaders().containsKey(IdempotentRequests.REPLAYED_HEADER)).isFalse();
+        assertThat(retry.getHeaders().getFirst(IdempotentRequests.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void keysAreScopedToTheUserAndOperation() {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        requests.execute(USER, OPERATION, "k1", "add tee", this::mutation);
+        requests.execute(UUID.randomUUID(), OPERATION, "k1", "add tee", this::mutation);
+        requests.execute(USER, "DELETE /api/v1/cart", "k1", "add tee", this::mutation);
+
+        assertThat(runs).hasValue(3);
+    }
+
+    @Test
+    void aKeyReusedForADifferentRequestIsRejected() {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+        requests.execute(USER, OPERATION, "k1", "add tee", this::mutation);
+
+        assertThatThrownBy(() -> requests.execute(USER, OPERATION, "k1", "add hoodie", this::mutation))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void rejectionsAreReplayedButOtherFailuresRunAgain() {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> requests.execute(USER, OPERATION, "bad", "add tee", () -> {
+                runs.incrementAndGet();
+                throw new BadRequestException("Quantity must be positive");
+            })).isInstanceOf(BadRequestException.class).hasMessage("Quantity must be positive");
+        }
+        assertThat(runs).hasValue(1);
+
+        assertThatThrownBy(() -> requests.execute(USER, OPERATION, "down", "add tee", () -> {
+            throw new IllegalStateException("database unavailable");
+        })).isInstanceOf(IllegalStateException.class);
+        requests.execute(USER, OPERATION, "down", "add tee", this::mutation);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheFirst() throws Exception {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<ResponseEntity<String>> first = executor.submit(() -> requests.execute(USER, OPERATION, "k1", "add tee", () -> {
+                started.countDown();
+                await(release);
+                return mutation();
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            List<Future<ResponseEntity<String>>> duplicates = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                duplicates.add(executor.submit(() -> requests.execute(USER, OPERATION, "k1", "add tee", this::mutation)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("response 1");
+            for (Future<ResponseEntity<String>> duplicate : duplicates) {
+                assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("response 1");
+            }
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void aDuplicateGivesUpWaitingWithAConflict() throws Exception {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> requests.execute(USER, OPERATION, "k1", "add tee", () -> {
+                started.countDown();
+                await(release);
+                return mutation();
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> requests.execute(USER, OPERATION, "k1", "add tee", this::mutation))
+                    .isInstanceOf(ConflictException.class);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void responsesAreForgottenAfterTheTtlOrWhenFull() throws Exception {
+        IdempotentRequests expiring = requests(100, Duration.ofMillis(20), Duration.ofSeconds(5));
+        expiring.execute(USER, OPERATION, "k1", "add tee", this::mutation);
+        Thread.sleep(50);
+        expiring.execute(USER, OPERATION, "k1", "add tee", this::mutation);
+        assertThat(runs).hasValue(2);
+
+        IdempotentRequests bounded = requests(2, Duration.ofMinutes(10), Duration.ofSeconds(5));
+        for (String key : List.of("k1", "k2", "k3", "k1")) {
+            bounded.execute(USER, OPERATION, key, "add tee", this::mutation);
+        }
+        assertThat(runs).hasValue(6);
+    }
+
+    @Test
+    void keysMustBeShort() {
+        IdempotentRequests requests = requests(100, Duration.ofMinutes(10), Duration.ofSeconds(5));
+
+        assertThatThrownBy(() -> requests.execute(USER, OPERATION, " ", "add tee", this::mutation))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> requests.execute(USER, OPERATION, "k".repeat(101), "add tee", this::mutation))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private ResponseEntity<String> mutation() {
+        return ResponseEntity.ok("response " + runs.incrementAndGet());
+    }
+
+    private static IdempotentRequests requests(int maxEntries, Duration ttl, Duration waitTimeout) {
+        return new IdempotentRequests(new SimpleMeterRegistry(), maxEntries, ttl, waitTimeout);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
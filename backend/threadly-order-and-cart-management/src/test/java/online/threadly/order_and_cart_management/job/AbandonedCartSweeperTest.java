@@ -0,0 +1,177 @@
+package online.threadly.order_and_cart_management.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.commons.id.UuidV7Generator;
+import online.threadly.order_and_cart_management.repository.CartItemRepository;
+import online.threadly.order_and_cart_management.repository.CartRepository;
+import online.threadly.order_and_cart_management.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:sweeper;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "cart.sweeper.enabled=false",
+        "threadly.warm-up.enabled=false",
+        "eureka.client.enabled=false"
+})
+class AbandonedCartSweeperTest {
+
+    private static final LocalDateTime LONG_AGO = LocalDateTime.now().minusDays(60);
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObjectProvider<ShardRouter> shardRouter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path archiveDirectory;
+
+    @BeforeEach
+    void emptyTables() {
+        jdbcTemplate.update("DELETE FROM cart_item");
+        jdbcTemplate.update("DELETE FROM cart");
+    }
+
+    @Test
+    void onlyCartsIdleForLongerThanTheHorizonAreDeletedWithTheirItems() {
+        List<UUID> abandoned = insertCarts(7, LONG_AGO);
+        List<UUID> recent = insertCarts(3, LocalDateTime.now().minusDays(1));
+
+        long rowsReclaimed = sweeper(3, Duration.ZERO, false).sweepOnce();
+
+        assertThat(rowsReclaimed).isEqualTo(14);
+        assertThat(remaining()).containsExactlyInAnyOrderElementsOf(recent);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_item", Integer.class)).isEqualTo(3);
+        assertThat(abandoned).doesNotContainAnyElementsOf(remaining());
+    }
+
+    @Test
+    void everyBatchIsArchivedToItsOwnCompleteFileBeforeItIsDeleted() throws IOException {
+        List<UUID> abandoned = insertCarts(5, LONG_AGO);
+
+        sweeper(2, Duration.ZERO, true).sweepOnce();
+
+        List<Path> files = archives();
+        assertThat(files).hasSize(3);
+        List<UUID> archived = new ArrayList<>();
+        for (Path file : files) {
+            for (JsonNode cart : read(file)) {
+                archived.add(UUID.fromString(cart.get("id").asText()));
+                assertThat(cart.get("items")).hasSize(1);
+                assertThat(cart.get("items").get(0).get("quantity").asInt()).isEqualTo(2);
+            }
+        }
+        assertThat(archived).containsExactlyInAnyOrderElementsOf(abandoned);
+        assertThat(remaining()).isEmpty();
+    }
+
+    @Test
+    void aRunWithNothingToSweepLeavesNoArchive() throws IOException {
+        insertCarts(2, LocalDateTime.now().minusDays(1));
+
+        assertThat(sweeper(2, Duration.ZERO, true).sweepOnce()).isZero();
+
+        assertThat(archives()).isEmpty();
+    }
+
+    @Test
+    void anInterruptedRunStopsAfterTheCurrentBatch() {
+        insertCarts(6, LONG_AGO);
+
+        Thread.currentThread().interrupt();
+        try {
+            sweeper(2, Duration.ofMinutes(1), false).sweepOnce();
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThat(remaining()).hasSize(4);
+    }
+
+    private AbandonedCartSweeper sweeper(int batchSize, Duration pause, boolean archive) {
+        return new AbandonedCartSweeper(cartRepository, cartItemRepository, transactionTemplate, objectMapper,
+                shardRouter, new SimpleMeterRegistry(), Duration.ofDays(30), batchSize, 100, pause, archive, archiveDirectory);
+    }
+
+    private List<UUID> insertCarts(int count, LocalDateTime updatedAt) {
+        List<UUID> cartIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID cartId = UuidV7Generator.next();
+            Timestamp at = Timestamp.valueOf(updatedAt.plusSeconds(i));
+            jdbcTemplate.update("INSERT INTO cart (id, user_id, version, created_at, updated_at) VALUES (?, ?, 0, ?, ?)",
+                    cartId, UuidV7Generator.next(), at, at);
+            jdbcTemplate.update("INSERT INTO cart_item (id, cart_id, product_id, quantity) VALUES (?, ?, ?, 2)",
+                    UuidV7Generator.next(), cartId, UUID.randomUUID());
+            cartIds.add(cartId);
+        }
+        return cartIds;
+    }
+
+    private List<UUID> remaining() {
+        return jdbcTemplate.queryForList("SELECT id FROM cart", UUID.class);
+    }
+
+    private List<Path> archives() throws IOException {
+        if (!Files.exists(archiveDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            return files.toList();
+        }
+    }
+
+    // reading to the end checks the gzip trailer, i.e. that the file was finished and not only flushed
+    private List<JsonNode> read(Path file) throws IOException {
+        List<JsonNode> carts = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                carts.add(objectMapper.readTree(line));
+            }
+        }
+        return carts;
+    }
+}
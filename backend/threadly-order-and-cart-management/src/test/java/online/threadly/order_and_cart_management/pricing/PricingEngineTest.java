@@ -0,0 +1,127 @@
+package online.threadly.order_and_cart_management.pricing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.order_and_cart_management.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PricingEngineTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-01T12:00:00Z");
+    private static final UUID TEE = UUID.randomUUID();
+    private static final UUID SHIRT = UUID.randomUUID();
+
+    @Test
+    void takesTheBestItemRulePerLineThenTheBestReachableCartRule() {
+        PromotionIndex index = new PromotionIndex(List.of(
+                brandPercentOff("polo-10", "POLO", "10"),
+                brandPercentOff("polo-15", "polo", "15"),
+                buyXGetY("tee-3-for-2", TEE, 2, 1),
+                threshold("over-100", "100.00", "5.00", null),
+                threshold("over-200", "200.00", null, "10")));
+
+        Pricing pricing = index.price(List.of(
+                new CartLine(TEE, "POLO", money("19.99"), 3),
+                new CartLine(SHIRT, "Polo ", money("33.33"), 1)), null, NOW);
+
+        // tee: 3-for-2 (19.99) beats 15% (9.00); shirt: 15% of 33.33 = 5.00 (rounded half-up)
+        assertThat(pricing.lines()).extracting(line -> line.getPromotionId()).containsExactly("tee-3-for-2", "polo-15");
+        assertThat(pricing.lines()).extracting(line -> line.getDiscount()).containsExactly(money("19.99"), money("5.00"));
+        assertThat(pricing.subtotal()).isEqualTo(money("93.30"));
+        // 68.31 after item discounts: over-100 is out of reach
+        assertThat(pricing.total()).isEqualTo(money("68.31"));
+        assertThat(pricing.discount()).isEqualTo(money("24.99"));
+        assertThat(pricing.discounts()).hasSize(2);
+    }
+
+    @Test
+    void cartThresholdsAreCheckedAgainstTheSubtotalAfterItemDiscounts() {
+        PromotionIndex index = new PromotionIndex(List.of(
+                threshold("over-100", "100.00", "5.00", null),
+                threshold("over-200", "200.00", null, "10")));
+
+        Pricing pricing = index.price(List.of(new CartLine(SHIRT, null, money("70.00"), 3)), null, NOW);
+
+        assertThat(pricing.total()).isEqualTo(money("189.00"));
+        assertThat(pricing.discounts()).singleElement().satisfies(discount -> {
+            assertThat(discount.getPromotionId()).isEqualTo("over-200");
+            assertThat(discount.getProductId()).isNull();
+        });
+    }
+
+    @Test
+    void couponRulesOnlyApplyWithTheirCode() {
+        Promotion welcome = new Promotion("welcome", PromotionType.CART_THRESHOLD, "Welcome", null, null, null, null,
+                BigDecimal.ZERO, new BigDecimal("20"), null, "WELCOME20", null, null);
+        PromotionIndex index = new PromotionIndex(List.of(welcome));
+        List<CartLine> cart = List.of(new CartLine(SHIRT, null, money("10.00"), 1));
+
+        assertThat(index.price(cart, null, NOW).total()).isEqualTo(money("10.00"));
+        assertThat(index.price(cart, "welcome20", NOW).total()).isEqualTo(money("8.00"));
+        assertThatThrownBy(() -> index.price(cart, "NOPE", NOW)).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void rulesOutsideTheirWindowDoNotApply() {
+        Promotion expired = new Promotion("spring", PromotionType.BRAND_PERCENT_OFF, null, "POLO", null, null, null,
+                null, new BigDecimal("50"), null, null, Instant.parse("2026-03-01T00:00:00Z"), Instant.parse("2026-05-01T00:00:00Z"));
+
+        Pricing pricing = new PromotionIndex(List.of(expired)).price(
+                List.of(new CartLine(SHIRT, "POLO", money("10.00"), 1)), null, NOW);
+
+        assertThat(pricing.discount()).isEqualTo(money("0.00"));
+    }
+
+    @Test
+    void reloadSwapsInChangedRulesAndKeepsThePreviousOnesWhenTheFileIsBroken(@TempDir Path directory) throws Exception {
+        Path rules = directory.resolve("promotions.json");
+        Files.writeString(rules, "[]");
+        PricingEngine engine = new PricingEngine(new ObjectMapper().registerModule(new JavaTimeModule()),
+                new DefaultResourceLoader(), new SimpleMeterRegistry(), rules.toUri().toString());
+        List<CartLine> cart = List.of(new CartLine(SHIRT, "POLO", money("10.00"), 1));
+        assertThat(engine.price(cart, null).total()).isEqualTo(money("10.00"));
+
+        Files.writeString(rules, """
+                [{"id": "polo", "type": "BRAND_PERCENT_OFF", "brand": "POLO", "percentOff": 30,
+                  "startsAt": "2020-01-01T00:00:00Z"}]""");
+        engine.reload();
+        assertThat(engine.price(cart, null).total()).isEqualTo(money("7.00"));
+
+        Files.writeString(rules, """
+                [{"id": "polo", "type": "BRAND_PERCENT_OFF", "brand": "POLO", "percentOff": 300}]""");
+        engine.reload();
+        assertThat(engine.price(cart, null).total()).isEqualTo(money("7.00"));
+    }
+
+    private static Promotion brandPercentOff(String id, String brand, String percent) {
+        return new Promotion(id, PromotionType.BRAND_PERCENT_OFF, id, brand, null, null, null, null,
+                new BigDecimal(percent), null, null, null, null);
+    }
+
+    private static Promotion buyXGetY(String id, UUID productId, int buy, int get) {
+        return new Promotion(id, PromotionType.BUY_X_GET_Y, id, null, productId, buy, get, null, null, null, null, null, null);
+    }
+
+    private static Promotion threshold(String id, String minimum, String amountOff, String percentOff) {
+        return new Promotion(id, PromotionType.CART_THRESHOLD, id, null, null, null, null, new BigDecimal(minimum),
+                percentOff == null ? null : new BigDecimal(percentOff), amountOff == null ? null : new BigDecimal(amountOff),
+                null, null, null);
+    }
+
+    private static BigDecimal money(String amount) {
+        return new BigDecimal(amount);
+    }
+}
@@ -0,0 +1,38 @@
+package online.threadly.order_and_cart_management.service;
+
+import online.threadly.order_and_cart_management.pricing.PricingEngine;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CartETagsTest {
+
+    private final PricingEngine pricingEngine = mock(PricingEngine.class);
+    private final CartETags etags = new CartETags(pricingEngine, Duration.ofHours(1));
+    private final UUID cartId = UUID.randomUUID();
+
+    @Test
+    void theTagChangesWithTheVersionAndThePromotionRules() {
+        when(pricingEngine.rulesVersion()).thenReturn("rules-1");
+        String v1 = etags.of(cartId, 1L, null);
+
+        assertThat(v1).startsWith("W/\"").endsWith("\"");
+        assertThat(etags.of(cartId, 2L, null)).isNotEqualTo(v1);
+        when(pricingEngine.rulesVersion()).thenReturn("rules-2");
+        assertThat(etags.of(cartId, 1L, null)).isNotEqualTo(v1);
+    }
+
+    @Test
+    void theCouponIsPartOfTheTagAsThePricingEngineSpellsIt() {
+        when(pricingEngine.rulesVersion()).thenReturn("rules-1");
+
+        assertThat(etags.of(cartId, 1L, "SAVE10")).isNotEqualTo(etags.of(cartId, 1L, null));
+        assertThat(etags.of(cartId, 1L, " save10")).isEqualTo(etags.of(cartId, 1L, "SAVE10"));
+        assertThat(etags.of(cartId, 1L, "")).isEqualTo(etags.of(cartId, 1L, null));
+    }
+}
@@ -0,0 +1,174 @@
+package online.threadly.order_and_cart_management.service;
+
+import online.threadly.commons.id.UuidV7Generator;
+import online.threadly.order_and_cart_management.client.ProductClient;
+import online.threadly.order_and_cart_management.dto.OrderResponse;
+import online.threadly.order_and_cart_management.dto.Product;
+import online.threadly.order_and_cart_management.dto.StockReservationRequest;
+import online.threadly.order_and_cart_management.exception.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checkout against an in-memory H2 database, with threadly-product replaced by
+ * a mock that reserves whatever it is asked for.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "cart.sweeper.enabled=false",
+        "threadly.warm-up.enabled=false",
+        "eureka.client.enabled=false"
+})
+class CheckoutServiceTest {
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private ProductClient productClient;
+
+    @BeforeEach
+    void reserveEverything() {
+        reset(productClient);
+        when(productClient.reserveStock(anyList())).thenAnswer(invocation -> reserved(invocation.getArgument(0)));
+    }
+
+    @Test
+    void anOrderIsCreatedAtTheReservedPricesAndTheCartIsCleared() {
+        UUID userId = UuidV7Generator.next();
+        UUID cartId = insertCart(userId);
+        UUID tee = insertItem(cartId, 2);
+        UUID hoodie = insertItem(cartId, 1);
+
+        OrderResponse order = checkoutService.checkout(userId, "key-1", null);
+
+        assertThat(order.getLines()).hasSize(2);
+        assertThat(order.getLines()).anySatisfy(line -> {
+            assertThat(line.getProductId()).isEqualTo(tee);
+            assertThat(line.getQuantity()).isEqualTo(2);
+            assertThat(line.getUnitPrice()).isEqualByComparingTo("12.50");
+        });
+        assertThat(order.getLines()).anySatisfy(line -> assertThat(line.getProductId()).isEqualTo(hoodie));
+        assertThat(order.getTotalAmount()).isEqualByComparingTo("37.50");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_item WHERE cart_id = ?", Integer.class, cartId))
+                .isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart WHERE id = ?", Integer.class, cartId))
+                .isEqualTo(1);
+        verify(productClient, never()).releaseStock(anyList());
+    }
+
+    @Test
+    void resubmittingTheSameKeyReturnsTheSameOrder() {
+        UUID userId = UuidV7Generator.next();
+        insertItem(insertCart(userId), 3);
+
+        OrderResponse first = checkoutService.checkout(userId, "key-1", null);
+        OrderResponse second = checkoutService.checkout(userId, "key-1", null);
+
+        assertThat(second.getOrderId()).isEqualTo(first.getOrderId());
+        assertThat(second.getLines()).hasSize(1);
+        assertThat(orderCount(userId)).isEqualTo(1);
+        verify(productClient, times(1)).reserveStock(anyList());
+    }
+
+    @Test
+    void aConcurrentResubmitWaitsForTheCartLockAndGetsTheCommittedOrder() throws Exception {
+        UUID userId = UuidV7Generator.next();
+        insertItem(insertCart(userId), 1);
+        CountDownLatch reserving = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(productClient.reserveStock(anyList())).thenAnswer(invocation -> {
+            reserving.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return reserved(invocation.getArgument(0));
+        });
+
+        CompletableFuture<OrderResponse> first = CompletableFuture.supplyAsync(() -> checkoutService.checkout(userId, "key-1", null));
+        assertThat(reserving.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<OrderResponse> second = CompletableFuture.supplyAsync(() -> checkoutService.checkout(userId, "key-1", null));
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+        proceed.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS).getOrderId()).isEqualTo(first.get(5, TimeUnit.SECONDS).getOrderId());
+        assertThat(orderCount(userId)).isEqualTo(1);
+        verify(productClient, times(1)).reserveStock(anyList());
+    }
+
+    @Test
+    void aLineMissingFromTheReservationIsABadRequestAndTheStockIsHandedBack() {
+        UUID userId = UuidV7Generator.next();
+        UUID cartId = insertCart(userId);
+        UUID kept = insertItem(cartId, 1);
+        insertItem(cartId, 4);
+        when(productClient.reserveStock(anyList())).thenAnswer(invocation -> reserved(
+                invocation.<List<StockReservationRequest>>getArgument(0).stream()
+                        .filter(reservation -> reservation.getProductId().equals(kept))
+                        .toList()));
+
+        assertThatThrownBy(() -> checkoutService.checkout(userId, "key-1", null))
+                .isInstanceOf(BadRequestException.class);
+
+        verify(productClient).releaseStock(anyList());
+        assertThat(orderCount(userId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_item WHERE cart_id = ?", Integer.class, cartId))
+                .isEqualTo(2);
+    }
+
+    private static List<Product> reserved(List<StockReservationRequest> reservations) {
+        return reservations.stream().map(reservation -> {
+            Product product = new Product();
+            product.setId(reservation.getProductId());
+            product.setName("tee");
+            product.setBrand("threadly");
+            product.setPrice(12.5);
+            return product;
+        }).toList();
+    }
+
+    private UUID insertCart(UUID userId) {
+        UUID cartId = UuidV7Generator.next();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update("INSERT INTO cart (id, user_id, version, created_at, updated_at) VALUES (?, ?, 0, ?, ?)",
+                cartId, userId, now, now);
+        return cartId;
+    }
+
+    private UUID insertItem(UUID cartId, int quantity) {
+        UUID productId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO cart_item (id, cart_id, product_id, quantity) VALUES (?, ?, ?, ?)",
+                UuidV7Generator.next(), cartId, productId, quantity);
+        return productId;
+    }
+
+    private int orderCount(UUID userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE user_id = ?", Integer.class, userId);
+    }
+}
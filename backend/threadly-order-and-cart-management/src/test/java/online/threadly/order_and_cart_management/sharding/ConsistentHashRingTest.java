@@ -0,0 +1,55 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final int USERS = 100_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void spreadsUsersEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 256);
+
+        Map<String, Integer> users = new HashMap<>();
+        for (int i = 0; i < USERS; i++) {
+            users.merge(ring.shardFor(userId()), 1, Integer::sum);
+        }
+
+        assertThat(users).hasSize(4);
+        assertThat(users.values()).allSatisfy(count -> assertThat(count).isBetween(USERS / 4 * 80 / 100, USERS / 4 * 120 / 100));
+    }
+
+    @Test
+    void addingAShardOnlyMovesUsersOntoIt() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2"), 256);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 256);
+
+        int moved = 0;
+        for (int i = 0; i < USERS; i++) {
+            UUID userId = userId();
+            String owner = after.shardFor(userId);
+            if (!owner.equals(before.shardFor(userId))) {
+                assertThat(owner).isEqualTo("shard-3");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(USERS / 4 * 80 / 100, USERS / 4 * 120 / 100);
+    }
+
+    // version 7 layout: the hash must not lean on the timestamp bits alone
+    private UUID userId() {
+        long millis = 1_750_000_000_000L + random.nextInt(1_000_000);
+        return new UUID(millis << 16 | 0x7000L | random.nextInt(4096), random.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L);
+    }
+}
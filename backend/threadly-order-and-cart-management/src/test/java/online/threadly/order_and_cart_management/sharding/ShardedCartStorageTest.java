@@ -0,0 +1,181 @@
+package online.threadly.order_and_cart_management.sharding;
+
+import online.threadly.commons.id.UuidV7Generator;
+import online.threadly.order_and_cart_management.dto.AddToCartRequest;
+import online.threadly.order_and_cart_management.service.CartService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Three in-memory H2 databases stand in for the shards. The service runs on
+ * shard-a, shard-b and shard-c while shard-a and shard-b are still listed as
+ * the previous ring, i.e. halfway through adding shard-c.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=" + ShardedCartStorageTest.SHARD_A,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "threadly.sharding.enabled=true",
+        "threadly.sharding.shards.shard-a=" + ShardedCartStorageTest.SHARD_A,
+        "threadly.sharding.shards.shard-b=" + ShardedCartStorageTest.SHARD_B,
+        "threadly.sharding.shards.shard-c=" + ShardedCartStorageTest.SHARD_C,
+        "threadly.sharding.previous-shards=shard-a,shard-b",
+        "threadly.sharding.resharding.enabled=true",
+        "threadly.sharding.resharding.initial-delay=1h",
+        "threadly.sharding.resharding.batch-size=7",
+        "threadly.sharding.resharding.pause-between-batches=0ms",
+        "cart.sweeper.enabled=false",
+        "eureka.client.enabled=false"
+})
+class ShardedCartStorageTest {
+
+    static final String SHARD_A = "jdbc:h2:mem:shard-a;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String SHARD_B = "jdbc:h2:mem:shard-b;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String SHARD_C = "jdbc:h2:mem:shard-c;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final Map<String, JdbcTemplate> SHARDS = Map.of(
+            "shard-a", new JdbcTemplate(new DriverManagerDataSource(SHARD_A, "sa", "")),
+            "shard-b", new JdbcTemplate(new DriverManagerDataSource(SHARD_B, "sa", "")),
+            "shard-c", new JdbcTemplate(new DriverManagerDataSource(SHARD_C, "sa", "")));
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private CartResharder cartResharder;
+
+    @Test
+    void newCartsAreWrittenToTheUsersShard() {
+        for (int i = 0; i < 30; i++) {
+            UUID userId = UuidV7Generator.next();
+            cartService.addToCart(userId, addOne(UUID.randomUUID()));
+
+            String owner = shardRouter.ring().shardFor(userId);
+            SHARDS.forEach((shard, database) ->
+                    assertThat(cartCount(database, userId)).as(shard).isEqualTo(shard.equals(owner) ? 1 : 0));
+        }
+    }
+
+    @Test
+    void usersOnTheOldRingAreServedThereUntilMovedAndThenFromTheNewShard() {
+        UUID userId = userMovingTo("shard-c");
+        String previousOwner = shardRouter.previousRing().shardFor(userId);
+        UUID productId = UUID.randomUUID();
+        UUID cartId = insertCart(SHARDS.get(previousOwner), userId, productId, 2);
+        UUID orderId = insertOrder(SHARDS.get(previousOwner), userId);
+
+        cartService.addToCart(userId, addOne(productId));
+        assertThat(quantity(SHARDS.get(previousOwner), cartId, productId)).isEqualTo(3);
+
+        assertThat(cartResharder.reshardOnce()).isGreaterThanOrEqualTo(1);
+
+        JdbcTemplate previous = SHARDS.get(previousOwner);
+        JdbcTemplate current = SHARDS.get("shard-c");
+        assertThat(cartCount(previous, userId)).isZero();
+        assertThat(previous.queryForObject("SELECT COUNT(*) FROM orders WHERE user_id = ?", Integer.class, userId)).isZero();
+        assertThat(current.queryForObject("SELECT COUNT(*) FROM order_line WHERE order_id = ?", Integer.class, orderId)).isEqualTo(1);
+        assertThat(quantity(current, cartId, productId)).isEqualTo(3);
+
+        cartService.addToCart(userId, addOne(productId));
+        assertThat(quantity(current, cartId, productId)).isEqualTo(4);
+        assertThat(cartResharder.reshardOnce()).isZero();
+    }
+
+    @Test
+    void aCartLeftBehindOnTheOldShardIsMergedByTheNextPass() {
+        UUID userId = userMovingTo("shard-c");
+        JdbcTemplate previous = SHARDS.get(shardRouter.previousRing().shardFor(userId));
+        UUID productId = UUID.randomUUID();
+        UUID cartId = insertCart(previous, userId, productId, 1);
+        cartResharder.reshardOnce();
+
+        // a write that was waiting on the old shard's cart lock while the user was moved
+        insertCart(previous, userId, productId, 5);
+        UUID otherProductId = UUID.randomUUID();
+        insertItem(previous, previous.queryForObject("SELECT id FROM cart WHERE user_id = ?", UUID.class, userId), otherProductId, 1);
+        cartResharder.reshardOnce();
+
+        JdbcTemplate current = SHARDS.get("shard-c");
+        assertThat(cartCount(previous, userId)).isZero();
+        assertThat(cartCount(current, userId)).isEqualTo(1);
+        assertThat(quantity(current, cartId, productId)).isEqualTo(6);
+        assertThat(quantity(current, cartId, otherProductId)).isEqualTo(1);
+    }
+
+    @Test
+    void everyAddMovesTheCartETagOn() {
+        UUID userId = UuidV7Generator.next();
+        assertThat(cartService.getCartETag(userId, null)).isNull();
+
+        cartService.addToCart(userId, addOne(UUID.randomUUID()));
+        String first = cartService.getCartETag(userId, null);
+        cartService.addToCart(userId, addOne(UUID.randomUUID()));
+
+        assertThat(first).isNotNull();
+        assertThat(cartService.getCartETag(userId, null)).isNotEqualTo(first);
+    }
+
+    private UUID userMovingTo(String shard) {
+        while (true) {
+            UUID userId = UuidV7Generator.next();
+            if (shardRouter.ring().shardFor(userId).equals(shard)) {
+                return userId;
+            }
+        }
+    }
+
+    private static AddToCartRequest addOne(UUID productId) {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setProductId(productId);
+        request.setQuantity(1);
+        return request;
+    }
+
+    private static UUID insertCart(JdbcTemplate database, UUID userId, UUID productId, int quantity) {
+        UUID cartId = UuidV7Generator.next();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        database.update("INSERT INTO cart (id, user_id, version, created_at, updated_at) VALUES (?, ?, 0, ?, ?)",
+                cartId, userId, now, now);
+        insertItem(database, cartId, productId, quantity);
+        return cartId;
+    }
+
+    private static void insertItem(JdbcTemplate database, UUID cartId, UUID productId, int quantity) {
+        database.update("INSERT INTO cart_item (id, cart_id, product_id, quantity) VALUES (?, ?, ?, ?)",
+                UuidV7Generator.next(), cartId, productId, quantity);
+    }
+
+    private static UUID insertOrder(JdbcTemplate database, UUID userId) {
+        UUID orderId = UuidV7Generator.next();
+        database.update("INSERT INTO orders (id, user_id, idempotency_key, status, total_amount, created_at) VALUES (?, ?, ?, 'CONFIRMED', 10.00, ?)",
+                orderId, userId, "key-" + orderId, Timestamp.valueOf(LocalDateTime.now()));
+        database.update("INSERT INTO order_line (id, order_id, product_id, product_name, unit_price, quantity) VALUES (?, ?, ?, 'tee', 10.00, 1)",
+                UuidV7Generator.next(), orderId, UUID.randomUUID());
+        return orderId;
+    }
+
+    private static int cartCount(JdbcTemplate database, UUID userId) {
+        return database.queryForObject("SELECT COUNT(*) FROM cart WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private static Integer quantity(JdbcTemplate database, UUID cartId, UUID productId) {
+        List<Integer> quantities = database.queryForList(
+                "SELECT quantity FROM cart_item WHERE cart_id = ? AND product_id = ?", Integer.class, cartId, productId);
+        return quantities.isEmpty() ? null : quantities.get(0);
+    }
+}
@@ -1,10 +1,14 @@
 package online.threadly.product;
 
+import online.threadly.commons.warmup.WarmUpConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-
+import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@EnableDiscoveryClient
+@Import(WarmUpConfiguration.class)
 public class Application {
 
 	public static void main(String[] args) {
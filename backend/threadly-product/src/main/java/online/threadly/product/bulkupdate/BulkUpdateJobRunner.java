@@ -0,0 +1,190 @@
+package online.threadly.product.bulkupdate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import online.threadly.product.model.BulkUpdateChunk;
+import online.threadly.product.model.BulkUpdateJobStatus;
+import online.threadly.product.repository.BulkUpdateChunkRepository;
+import online.threadly.product.repository.BulkUpdateJobRepository;
+import online.threadly.product.serialization.ProductResponseCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies the pending chunks of a bulk update job on a fixed pool of workers,
+ * one short transaction per chunk. A chunk's transaction locks the chunk row,
+ * updates the products, marks the chunk applied and counts it on the job; the
+ * job row is only touched while the job is RUNNING, so a chunk that finishes
+ * after a cancel rolls back. Committed chunks stay applied, which is what
+ * makes a cancelled, failed or interrupted job resumable.
+ * <p>
+ * Product responses cached by this instance are dropped a chunk at a time
+ * once the chunk commits; other instances pick the new prices up when their
+ * entries reach max-age.
+ */
+@Slf4j
+@Component
+public class BulkUpdateJobRunner {
+
+    // a chunk can deadlock with stock reservations, which lock the same rows in id order
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final BulkUpdateJobRepository jobRepository;
+    private final BulkUpdateChunkRepository chunkRepository;
+    private final ProductBulkUpdateStatement statement;
+    private final ProductResponseCache productResponseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader rowsReader;
+    private final ExecutorService workers;
+    private final Timer chunkTimer;
+    private final Counter rowsUpdated;
+    private volatile boolean stopping;
+
+    public BulkUpdateJobRunner(BulkUpdateJobRepository jobRepository, BulkUpdateChunkRepository chunkRepository,
+                               ProductBulkUpdateStatement statement, ProductResponseCache productResponseCache,
+                               TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${threadly.bulk-updates.parallelism:4}") int parallelism) {
+        this.jobRepository = jobRepository;
+        this.chunkRepository = chunkRepository;
+        this.statement = statement;
+        this.productResponseCache = productResponseCache;
+        this.transactionTemplate = transactionTemplate;
+        this.rowsReader = objectMapper.readerForListOf(BulkUpdateRow.class);
+        this.workers = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("bulk-update-", 0).daemon(true).factory());
+        this.chunkTimer = Timer.builder("product.bulk_update.chunk").register(meterRegistry);
+        this.rowsUpdated = Counter.builder("product.bulk_update.rows.updated").register(meterRegistry);
+    }
+
+    // the job must already be RUNNING; returns once its pending chunks are queued
+    public void start(UUID jobId) {
+        List<UUID> pending = transactionTemplate.execute(status -> chunkRepository.findPendingIds(jobId));
+        Run run = new Run(jobId, pending.size());
+        if (pending.isEmpty()) {
+            finish(run);
+            return;
+        }
+        for (UUID chunkId : pending) {
+            workers.execute(() -> applyChunk(run, chunkId));
+        }
+    }
+
+    private void applyChunk(Run run, UUID chunkId) {
+        try {
+            if (!run.stopped && !stopping) {
+                chunkTimer.record(() -> applyWithRetry(run, chunkId));
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Bulk update job {} failed on chunk {}", run.jobId, chunkId, exception);
+            run.stopped = true;
+            String error = String.valueOf(exception.getMessage());
+            transactionTemplate.executeWithoutResult(status -> jobRepository.finish(run.jobId, BulkUpdateJobStatus.RUNNING,
+                    BulkUpdateJobStatus.FAILED, error.length() > 1000 ? error.substring(0, 1000) : error, LocalDateTime.now()));
+        } finally {
+            if (run.remaining.decrementAndGet() == 0) {
+                finish(run);
+            }
+        }
+    }
+
+    private void applyWithRetry(Run run, UUID chunkId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> apply(run.jobId, chunkId, status)))) {
+                    run.stopped = true;
+                }
+                return;
+            } catch (PessimisticLockingFailureException exception) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw exception;
+                }
+                log.debug("Retrying chunk {} of bulk update job {} after {}", chunkId, run.jobId, exception.getMessage());
+            }
+        }
+    }
+
+    // false once the job is no longer running
+    private boolean apply(UUID jobId, UUID chunkId, TransactionStatus transaction) {
+        if (jobRepository.findStatusById(jobId).orElse(null) != BulkUpdateJobStatus.RUNNING) {
+            return false;
+        }
+        BulkUpdateChunk chunk = chunkRepository.findByIdForUpdate(chunkId)
+                .orElseThrow(() -> new IllegalStateException("bulk update chunk " + chunkId + " not found"));
+        if (chunk.isApplied()) {
+            return true;
+        }
+
+        List<UUID> updated = statement.apply(readRows(chunk));
+        chunk.setApplied(true);
+        chunk.setRowsUpdated(updated.size());
+        long skipped = Math.max(0, chunk.getRowCount() - updated.size());
+        if (jobRepository.recordChunk(jobId, BulkUpdateJobStatus.RUNNING, updated.size(), skipped, LocalDateTime.now()) == 0) {
+            transaction.setRollbackOnly();
+            return false;
+        }
+        productResponseCache.invalidateAfterCommit(updated);
+        rowsUpdated.increment(updated.size());
+        return true;
+    }
+
+    private List<BulkUpdateRow> readRows(BulkUpdateChunk chunk) {
+        try {
+            return rowsReader.readValue(chunk.getRows());
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("bulk update chunk " + chunk.getId() + " is unreadable", exception);
+        }
+    }
+
+    private void finish(Run run) {
+        if (run.stopped) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            int completed = jobRepository.complete(run.jobId, BulkUpdateJobStatus.RUNNING, BulkUpdateJobStatus.COMPLETED, now);
+            if (completed == 0 && stopping) {
+                jobRepository.finish(run.jobId, BulkUpdateJobStatus.RUNNING, BulkUpdateJobStatus.INTERRUPTED,
+                        "the instance running the job shut down", now);
+            }
+        });
+    }
+
+    // chunks already started are finished; the ones still queued are skipped and their jobs marked INTERRUPTED
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Bulk update workers did not stop within 30s");
+        }
+    }
+
+    private static final class Run {
+
+        private final UUID jobId;
+        private final AtomicInteger remaining;
+        private volatile boolean stopped;
+
+        private Run(UUID jobId, int chunks) {
+            this.jobId = jobId;
+            this.remaining = new AtomicInteger(chunks);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package online.threadly.product.bulkupdate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import online.threadly.product.exception.BadRequestException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads the rows of a bulk update as they arrive, either as one JSON array or
+ * as newline-delimited JSON objects, and hands them on a chunk at a time.
+ * A product may appear only once: chunks are applied in parallel and in no
+ * particular order. Slugs are resolved to product ids a chunk at a time, so a
+ * product listed once by id and once by slug is caught, and the rows handed on
+ * are keyed by id wherever the slug was known.
+ * <p>
+ * Only one chunk of rows is held in memory, but the duplicate check keeps the
+ * id of every product seen so far, some 80 bytes each: an upload touching the
+ * whole catalog of a million products holds about 80MB until it is read.
+ */
+public class BulkUpdateReader {
+
+    private final ObjectReader reader;
+    private final int chunkSize;
+    private final Function<Collection<String>, Map<String, UUID>> slugResolver;
+
+    // slugResolver maps the slugs it knows to their product ids and leaves unknown ones out
+    public BulkUpdateReader(ObjectMapper objectMapper, int chunkSize, Function<Collection<String>, Map<String, UUID>> slugResolver) {
+        this.reader = objectMapper.readerFor(BulkUpdateRow.class);
+        this.chunkSize = chunkSize;
+        this.slugResolver = slugResolver;
+    }
+
+    // returns the number of rows read
+    public long read(InputStream body, Consumer<List<BulkUpdateRow>> chunks) throws IOException {
+        Set<UUID> products = new HashSet<>();
+        Set<String> unknownSlugs = new HashSet<>();
+        List<BulkUpdateRow> chunk = new ArrayList<>(chunkSize);
+        long rows = 0;
+        try (MappingIterator<BulkUpdateRow> iterator = reader.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                BulkUpdateRow row = iterator.nextValue();
+                rows++;
+                if (row == null) {
+                    throw new BadRequestException("row " + rows + ": a row must be a JSON object");
+                }
+                row.validate(rows);
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    chunks.accept(keyById(chunk, rows - chunk.size() + 1, products, unknownSlugs));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } catch (JsonProcessingException exception) {
+            throw new BadRequestException("row " + (rows + 1) + ": " + exception.getOriginalMessage());
+        }
+        if (rows == 0) {
+            throw new BadRequestException("bulk update has no rows");
+        }
+        if (!chunk.isEmpty()) {
+            chunks.accept(keyById(chunk, rows - chunk.size() + 1, products, unknownSlugs));
+        }
+        return rows;
+    }
+
+    // firstRow is the row number of the chunk's first row
+    private List<BulkUpdateRow> keyById(List<BulkUpdateRow> chunk, long firstRow, Set<UUID> products, Set<String> unknownSlugs) {
+        Set<String> slugs = new HashSet<>();
+        for (BulkUpdateRow row : chunk) {
+            if (row.id() == null) {
+                slugs.add(row.slug());
+            }
+        }
+        Map<String, UUID> resolved = slugs.isEmpty() ? Map.of() : slugResolver.apply(slugs);
+
+        List<BulkUpdateRow> keyed = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            BulkUpdateRow row = chunk.get(i);
+            UUID productId = row.id() != null ? row.id() : resolved.get(row.slug());
+            // a slug nobody has is kept as it is, and skipped when applied unless the product appears by then
+            boolean firstSeen = productId != null ? products.add(productId) : unknownSlugs.add(row.slug());
+            if (!firstSeen) {
+                throw new BadRequestException("row " + (firstRow + i) + ": product " + row.product() + " is listed more than once");
+            }
+            keyed.add(row.id() == null && productId != null ? row.withId(productId) : row);
+        }
+        return keyed;
+    }
+}
@@ -0,0 +1,43 @@
+package online.threadly.product.bulkupdate;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import online.threadly.product.exception.BadRequestException;
+
+import java.util.UUID;
+
+/**
+ * One product of a bulk update, by id or by slug. price replaces the current
+ * price; stock replaces the current stock, stockDelta is added to it. Fields
+ * left out are not changed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkUpdateRow(UUID id, String slug, Double price, Integer stock, Integer stockDelta) {
+
+    // row numbers count from 1, in the order the rows were sent
+    void validate(long row) {
+        if ((id == null) == (slug == null || slug.isBlank())) {
+            throw new BadRequestException("row " + row + ": either a product id or a slug is required");
+        }
+        if (price == null && stock == null && stockDelta == null) {
+            throw new BadRequestException("row " + row + ": nothing to update, give a price, stock or stockDelta");
+        }
+        if (price != null && (price < 0 || price.isNaN() || price.isInfinite())) {
+            throw new BadRequestException("row " + row + ": product price must be >= 0");
+        }
+        if (stock != null && stockDelta != null) {
+            throw new BadRequestException("row " + row + ": give either stock or stockDelta, not both");
+        }
+        if (stock != null && stock < 0) {
+            throw new BadRequestException("row " + row + ": product stock must be >= 0");
+        }
+    }
+
+    // the same update, keyed by the id the slug resolved to
+    BulkUpdateRow withId(UUID productId) {
+        return new BulkUpdateRow(productId, null, price, stock, stockDelta);
+    }
+
+    String product() {
+        return id != null ? id.toString() : slug;
+    }
+}
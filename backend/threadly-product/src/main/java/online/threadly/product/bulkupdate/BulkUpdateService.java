@@ -0,0 +1,151 @@
+package online.threadly.product.bulkupdate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import online.threadly.product.exception.BadRequestException;
+import online.threadly.product.exception.ResourceNotFoundException;
+import online.threadly.product.model.BulkUpdateChunk;
+import online.threadly.product.model.BulkUpdateJob;
+import online.threadly.product.model.BulkUpdateJobStatus;
+import online.threadly.product.projection.ProductKeyView;
+import online.threadly.product.repository.BulkUpdateChunkRepository;
+import online.threadly.product.repository.BulkUpdateJobRepository;
+import online.threadly.product.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Admin bulk price and stock updates. The request body is split into chunks
+ * as it streams in and stored, together with the job, in one transaction, so
+ * a job either exists with all of its rows or not at all; BulkUpdateJobRunner
+ * then applies the chunks in parallel.
+ */
+@Service
+public class BulkUpdateService {
+
+    // keeps a chunk's statement well below the driver's limit on bind parameters
+    private static final int MAX_CHUNK_SIZE = 5000;
+
+    @Autowired
+    private BulkUpdateJobRepository jobRepository;
+
+    @Autowired
+    private BulkUpdateChunkRepository chunkRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BulkUpdateJobRunner runner;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${threadly.bulk-updates.chunk-size:1000}")
+    private int defaultChunkSize;
+
+    @Value("${threadly.bulk-updates.stale-after:2m}")
+    private Duration staleAfter;
+
+    public BulkUpdateJob submit(InputStream body, Integer chunkSize) {
+        int size = chunkSize == null ? defaultChunkSize : chunkSize;
+        if (size < 1 || size > MAX_CHUNK_SIZE) {
+            throw new BadRequestException("chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+        BulkUpdateJob job = transactionTemplate.execute(status -> store(body, size));
+        runner.start(job.getId());
+        return job;
+    }
+
+    public BulkUpdateJob getJob(UUID id) {
+        return jobRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("bulk update job not found"));
+    }
+
+    // chunks already committed stay applied; resume applies the rest
+    public BulkUpdateJob cancel(UUID id) {
+        Integer cancelled = transactionTemplate.execute(status -> jobRepository.finish(id, BulkUpdateJobStatus.RUNNING,
+                BulkUpdateJobStatus.CANCELLED, null, LocalDateTime.now()));
+        BulkUpdateJob job = getJob(id);
+        if (cancelled == 0) {
+            throw new BadRequestException("bulk update job is " + job.getStatus() + ", only a running job can be cancelled");
+        }
+        return job;
+    }
+
+    public BulkUpdateJob resume(UUID id) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer resumed = transactionTemplate.execute(status -> jobRepository.resume(id,
+                EnumSet.of(BulkUpdateJobStatus.CANCELLED, BulkUpdateJobStatus.FAILED, BulkUpdateJobStatus.INTERRUPTED),
+                BulkUpdateJobStatus.RUNNING, now.minus(staleAfter), now));
+        BulkUpdateJob job = getJob(id);
+        if (resumed == 0) {
+            throw new BadRequestException("bulk update job is " + job.getStatus() + " and cannot be resumed");
+        }
+        runner.start(id);
+        return job;
+    }
+
+    private BulkUpdateJob store(InputStream body, int chunkSize) {
+        LocalDateTime now = LocalDateTime.now();
+        BulkUpdateJob job = new BulkUpdateJob();
+        job.setStatus(BulkUpdateJobStatus.RUNNING);
+        job.setChunkSize(chunkSize);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        jobRepository.save(job);
+
+        int[] chunks = {0};
+        long rows;
+        try {
+            rows = new BulkUpdateReader(objectMapper, chunkSize, this::resolveSlugs).read(body, rowsOfChunk -> {
+                BulkUpdateChunk chunk = new BulkUpdateChunk();
+                chunk.setJobId(job.getId());
+                chunk.setChunkNo(chunks[0]++);
+                chunk.setRowCount(rowsOfChunk.size());
+                chunk.setRows(write(rowsOfChunk));
+                chunkRepository.saveAndFlush(chunk);
+                // the persistence context keeps none of the chunks written, whatever the size of the body
+                entityManager.detach(chunk);
+            });
+        } catch (IOException exception) {
+            throw new UncheckedIOException("could not read bulk update", exception);
+        }
+        job.setTotalRows(rows);
+        job.setTotalChunks(chunks[0]);
+        return job;
+    }
+
+    private Map<String, UUID> resolveSlugs(Collection<String> slugs) {
+        return productRepository.findBySlugIn(slugs).stream()
+                .collect(Collectors.toMap(ProductKeyView::getSlug, ProductKeyView::getId, (first, second) -> first));
+    }
+
+    private String write(List<BulkUpdateRow> rows) {
+        try {
+            return objectMapper.writeValueAsString(rows);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException("could not store bulk update rows", exception);
+        }
+    }
+}
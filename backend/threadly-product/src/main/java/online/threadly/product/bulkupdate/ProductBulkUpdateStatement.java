@@ -0,0 +1,74 @@
+package online.threadly.product.bulkupdate;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Applies a chunk of rows with one set-based statement per key, instead of
+ * loading and saving every Product entity:
+ * <pre>
+ * UPDATE products p SET updated_at = ?, price = ..., stock = ...
+ * FROM (VALUES (?, ?, ?, ?), ...) AS v(product_key, price, stock, stock_delta)
+ * WHERE p.id = v.product_key ...
+ * RETURNING p.id
+ * </pre>
+ * Rows for unknown products, and stock deltas that would take stock below
+ * zero, match nothing and are left out of the returned ids.
+ */
+@Component
+public class ProductBulkUpdateStatement {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductBulkUpdateStatement(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // the ids of the products updated; must run inside the caller's transaction
+    public List<UUID> apply(List<BulkUpdateRow> rows) {
+        List<BulkUpdateRow> byId = new ArrayList<>();
+        List<BulkUpdateRow> bySlug = new ArrayList<>();
+        for (BulkUpdateRow row : rows) {
+            (row.id() != null ? byId : bySlug).add(row);
+        }
+        List<UUID> updated = new ArrayList<>(rows.size());
+        if (!byId.isEmpty()) {
+            updated.addAll(update("id", "uuid", byId, BulkUpdateRow::id));
+        }
+        if (!bySlug.isEmpty()) {
+            updated.addAll(update("slug", "varchar", bySlug, BulkUpdateRow::slug));
+        }
+        return updated;
+    }
+
+    private List<UUID> update(String keyColumn, String keyType, List<BulkUpdateRow> rows, Function<BulkUpdateRow, Object> key) {
+        StringBuilder sql = new StringBuilder(128 + rows.size() * 110)
+                .append("UPDATE products AS p SET updated_at = ?, price = COALESCE(v.price, p.price), ")
+                .append("stock = COALESCE(v.stock, COALESCE(p.stock, 0) + v.stock_delta, p.stock) FROM (VALUES ");
+        Object[] arguments = new Object[1 + rows.size() * 4];
+        arguments[0] = LocalDateTime.now();
+        for (int i = 0; i < rows.size(); i++) {
+            BulkUpdateRow row = rows.get(i);
+            // cast every placeholder: a column whose values are all null has no type to infer
+            sql.append(i == 0 ? "" : ", ").append("(CAST(? AS ").append(keyType)
+                    .append("), CAST(? AS double precision), CAST(? AS integer), CAST(? AS integer))");
+            arguments[1 + i * 4] = key.apply(row);
+            // typed, so nulls do not cost a round trip asking the driver for parameter types
+            arguments[2 + i * 4] = new SqlParameterValue(Types.DOUBLE, row.price());
+            arguments[3 + i * 4] = new SqlParameterValue(Types.INTEGER, row.stock());
+            arguments[4 + i * 4] = new SqlParameterValue(Types.INTEGER, row.stockDelta());
+        }
+        sql.append(") AS v(product_key, price, stock, stock_delta) WHERE p.").append(keyColumn).append(" = v.product_key")
+                .append(" AND (v.stock_delta IS NULL OR COALESCE(p.stock, 0) + v.stock_delta >= 0) RETURNING p.id");
+        return jdbcTemplate.queryForList(sql.toString(), UUID.class, arguments);
+    }
+}
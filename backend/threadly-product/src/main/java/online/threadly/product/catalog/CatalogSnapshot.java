@@ -0,0 +1,275 @@
+package online.threadly.product.catalog;
+
+import online.threadly.product.model.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * A read-only view of a catalog snapshot file, memory-mapped so the products
+ * live in the page cache rather than on the heap; a Product is only built when
+ * one is asked for. Written by CatalogSnapshotWriter.
+ * <pre>
+ * header   64 bytes: magic, format version, watermark, written-at, record count,
+ *          slug count, slug index offset, string pool offset and length, CRC32C
+ *          of everything after the header
+ * records  RECORD_SIZE bytes per product, ascending id (unsigned, as PostgreSQL
+ *          orders uuids), so an id is found by binary search
+ * slugs    (FNV-1a hash of the slug, record number) per product with a slug,
+ *          ascending hash
+ * strings  UTF-8 bytes; records refer to them by (offset, length), length -1
+ *          for null, and short repeated strings such as brands are stored once
+ * </pre>
+ * Numbers are big-endian. Null numbers are stored as Integer.MIN_VALUE, NaN and
+ * Long.MIN_VALUE, timestamps as microseconds since the epoch.
+ */
+public final class CatalogSnapshot {
+
+    static final int MAGIC = 0x54434154; // "TCAT"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 104;
+    static final int SLUG_ENTRY_SIZE = 12;
+
+    static final int ID = 0;
+    static final int NAME = 16;
+    static final int SLUG = 24;
+    static final int BRAND = 32;
+    static final int DESCRIPTION = 40;
+    static final int IMAGES = 48;
+    static final int STOCK = 56;
+    static final int RATING_COUNT = 60;
+    static final int PRICE = 64;
+    static final int RATING = 72;
+    static final int CREATED_AT = 80;
+    static final int UPDATED_AT = 88;
+    static final int FEATURED = 96;
+
+    // images are joined into one pooled string
+    static final String IMAGE_SEPARATOR = "\n";
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final LocalDateTime watermark;
+    private final int size;
+    private final int slugCount;
+    private final int slugIndexOffset;
+    private final int poolOffset;
+
+    private CatalogSnapshot(Path path, MappedByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a catalog snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException(path + " has snapshot format " + buffer.getInt(4) + ", expected " + FORMAT_VERSION);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.slice(HEADER_SIZE, buffer.limit() - HEADER_SIZE));
+        if ((int) checksum.getValue() != buffer.getInt(56)) {
+            throw new IOException(path + " is corrupt: checksum mismatch");
+        }
+        this.path = path;
+        this.buffer = buffer;
+        this.watermark = decodeTime(buffer.getLong(8));
+        this.size = buffer.getInt(24);
+        this.slugCount = buffer.getInt(28);
+        this.slugIndexOffset = (int) buffer.getLong(32);
+        this.poolOffset = (int) buffer.getLong(40);
+    }
+
+    public static CatalogSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than a mapped buffer can address");
+            }
+            // the mapping stays valid after the channel is closed, and after the file is replaced
+            return new CatalogSnapshot(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    // the newest created or updated time among the products, null for an empty catalog
+    public LocalDateTime watermark() {
+        return watermark;
+    }
+
+    public Instant writtenAt() {
+        return Instant.ofEpochMilli(buffer.getLong(16));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long byteSize() {
+        return buffer.limit();
+    }
+
+    // the record number of the product, or -1
+    public int indexOf(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = record(middle);
+            int comparison = Long.compareUnsigned(buffer.getLong(record + ID), msb);
+            if (comparison == 0) {
+                comparison = Long.compareUnsigned(buffer.getLong(record + ID + 8), lsb);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // the record number of the product, or -1
+    public int indexOfSlug(String slug) {
+        byte[] wanted = slug.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(wanted);
+        int low = 0;
+        int high = slugCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = buffer.getLong(slugIndexOffset + middle * SLUG_ENTRY_SIZE);
+            if (candidate < hash) {
+                low = middle + 1;
+            } else if (candidate > hash) {
+                high = middle - 1;
+            } else {
+                // hashes can collide: walk back to the first entry with this hash, then check each
+                int entry = middle;
+                while (entry > 0 && buffer.getLong(slugIndexOffset + (entry - 1) * SLUG_ENTRY_SIZE) == hash) {
+                    entry--;
+                }
+                for (; entry < slugCount && buffer.getLong(slugIndexOffset + entry * SLUG_ENTRY_SIZE) == hash; entry++) {
+                    int index = buffer.getInt(slugIndexOffset + entry * SLUG_ENTRY_SIZE + 8);
+                    if (stringEquals(record(index) + SLUG, wanted)) {
+                        return index;
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    public UUID id(int index) {
+        int record = record(index);
+        return new UUID(buffer.getLong(record + ID), buffer.getLong(record + ID + 8));
+    }
+
+    public LocalDateTime updatedAt(int index) {
+        return decodeTime(buffer.getLong(record(index) + UPDATED_AT));
+    }
+
+    public Product product(int index) {
+        int record = record(index);
+        Product product = new Product();
+        product.setId(new UUID(buffer.getLong(record + ID), buffer.getLong(record + ID + 8)));
+        product.setName(string(record + NAME));
+        product.setSlug(string(record + SLUG));
+        product.setBrand(string(record + BRAND));
+        product.setDescription(string(record + DESCRIPTION));
+        String images = string(record + IMAGES);
+        product.setImages(images == null ? null : images.isEmpty() ? new String[0] : images.split(IMAGE_SEPARATOR, -1));
+        int stock = buffer.getInt(record + STOCK);
+        product.setStock(stock == Integer.MIN_VALUE ? null : stock);
+        int ratingCount = buffer.getInt(record + RATING_COUNT);
+        product.setRatingCount(ratingCount == Integer.MIN_VALUE ? null : ratingCount);
+        double price = buffer.getDouble(record + PRICE);
+        product.setPrice(Double.isNaN(price) ? null : price);
+        double rating = buffer.getDouble(record + RATING);
+        product.setRating(Double.isNaN(rating) ? null : rating);
+        product.setCreatedAt(decodeTime(buffer.getLong(record + CREATED_AT)));
+        product.setUpdatedAt(decodeTime(buffer.getLong(record + UPDATED_AT)));
+        byte featured = buffer.get(record + FEATURED);
+        product.setIsFeatured(featured < 0 ? null : featured == 1);
+        return product;
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private String string(int reference) {
+        int length = buffer.getInt(reference + 4);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(poolOffset + buffer.getInt(reference), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int reference, byte[] wanted) {
+        if (buffer.getInt(reference + 4) != wanted.length) {
+            return false;
+        }
+        int offset = poolOffset + buffer.getInt(reference);
+        for (int i = 0; i < wanted.length; i++) {
+            if (buffer.get(offset + i) != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a, 64 bit
+    static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static long encodeTime(LocalDateTime time) {
+        return time == null ? Long.MIN_VALUE : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static LocalDateTime decodeTime(long micros) {
+        return micros == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    static ByteBuffer header(LocalDateTime watermark, int size, int slugCount, long slugIndexOffset,
+                             long poolOffset, long poolLength, int checksum) {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putLong(encodeTime(watermark))
+                .putLong(System.currentTimeMillis())
+                .putInt(size)
+                .putInt(slugCount)
+                .putLong(slugIndexOffset)
+                .putLong(poolOffset)
+                .putLong(poolLength)
+                .putInt(checksum)
+                .putInt(0)
+                .flip();
+    }
+}
@@ -0,0 +1,175 @@
+package online.threadly.product.catalog;
+
+import online.threadly.product.model.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Streams products, in ascending id order, into a new snapshot file; see
+ * CatalogSnapshot for the layout. Records go straight to disk and strings to a
+ * second temporary file, so the heap only holds the slug hashes and a bounded
+ * table of pooled short strings. finish() puts the file in place with an
+ * atomic move; readers that still map the previous file keep their mapping.
+ */
+public final class CatalogSnapshotWriter implements Closeable {
+
+    // brands and the like; longer strings are rarely repeated
+    private static final int POOLED_MAX_LENGTH = 32;
+    private static final int POOLED_MAX_ENTRIES = 100_000;
+
+    private final Path target;
+    private final Path file;
+    private final Path stringsFile;
+    private LocalDateTime watermark;
+    private final CRC32C checksum = new CRC32C();
+    private final DataOutputStream records;
+    private final OutputStream strings;
+    private final Map<String, Long> pooled = new HashMap<>();
+    private long stringsLength;
+    private long[] slugHashes = new long[1024];
+    private int[] slugRecords = new int[1024];
+    private int slugCount;
+    private int size;
+    private long lastMsb;
+    private long lastLsb;
+    private boolean finished;
+
+    public CatalogSnapshotWriter(Path target) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        this.target = target;
+        this.file = Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+        this.stringsFile = Files.createTempFile(directory, target.getFileName() + ".", ".strings.tmp");
+        OutputStream out = Files.newOutputStream(file);
+        // the header is written last, once the offsets and the checksum are known
+        out.write(new byte[CatalogSnapshot.HEADER_SIZE]);
+        this.records = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(out, checksum), 1 << 16));
+        this.strings = new BufferedOutputStream(Files.newOutputStream(stringsFile), 1 << 16);
+    }
+
+    public void add(Product product) throws IOException {
+        long msb = product.getId().getMostSignificantBits();
+        long lsb = product.getId().getLeastSignificantBits();
+        if (size > 0) {
+            int comparison = Long.compareUnsigned(msb, lastMsb);
+            if (comparison < 0 || comparison == 0 && Long.compareUnsigned(lsb, lastLsb) <= 0) {
+                throw new IllegalArgumentException("products must be added in ascending id order, " + product.getId() + " was not");
+            }
+        }
+        lastMsb = msb;
+        lastLsb = lsb;
+        watermark = newest(watermark, newest(product.getCreatedAt(), product.getUpdatedAt()));
+
+        records.writeLong(msb);
+        records.writeLong(lsb);
+        writeString(product.getName());
+        writeString(product.getSlug());
+        writeString(product.getBrand());
+        writeString(product.getDescription());
+        writeString(product.getImages() == null ? null : String.join(CatalogSnapshot.IMAGE_SEPARATOR, product.getImages()));
+        records.writeInt(product.getStock() == null ? Integer.MIN_VALUE : product.getStock());
+        records.writeInt(product.getRatingCount() == null ? Integer.MIN_VALUE : product.getRatingCount());
+        records.writeDouble(product.getPrice() == null ? Double.NaN : product.getPrice());
+        records.writeDouble(product.getRating() == null ? Double.NaN : product.getRating());
+        records.writeLong(CatalogSnapshot.encodeTime(product.getCreatedAt()));
+        records.writeLong(CatalogSnapshot.encodeTime(product.getUpdatedAt()));
+        records.writeByte(product.getIsFeatured() == null ? -1 : product.getIsFeatured() ? 1 : 0);
+        records.write(new byte[CatalogSnapshot.RECORD_SIZE - CatalogSnapshot.FEATURED - 1]);
+
+        if (product.getSlug() != null) {
+            if (slugCount == slugHashes.length) {
+                slugHashes = Arrays.copyOf(slugHashes, slugCount * 2);
+                slugRecords = Arrays.copyOf(slugRecords, slugCount * 2);
+            }
+            slugHashes[slugCount] = CatalogSnapshot.hash(product.getSlug().getBytes(StandardCharsets.UTF_8));
+            slugRecords[slugCount++] = size;
+        }
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void finish() throws IOException {
+        Integer[] order = new Integer[slugCount];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> slugHashes[i]).thenComparingInt(i -> slugRecords[i]));
+        for (int entry : order) {
+            records.writeLong(slugHashes[entry]);
+            records.writeInt(slugRecords[entry]);
+        }
+        strings.close();
+        Files.copy(stringsFile, records);
+        records.close();
+
+        long slugIndexOffset = CatalogSnapshot.HEADER_SIZE + (long) size * CatalogSnapshot.RECORD_SIZE;
+        long stringsOffset = slugIndexOffset + (long) slugCount * CatalogSnapshot.SLUG_ENTRY_SIZE;
+        if (stringsOffset + stringsLength > Integer.MAX_VALUE) {
+            throw new IOException("catalog of " + size + " products is too large for a single mapped snapshot");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(CatalogSnapshot.header(watermark, size, slugCount, slugIndexOffset,
+                    stringsOffset, stringsLength, (int) checksum.getValue()), 0);
+            channel.force(true);
+        }
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(stringsFile);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            records.close();
+            strings.close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(stringsFile);
+        }
+    }
+
+    private static LocalDateTime newest(LocalDateTime first, LocalDateTime second) {
+        return first == null || second != null && second.isAfter(first) ? second : first;
+    }
+
+    // (offset into the string pool, length in bytes), length -1 for null
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            records.writeInt(0);
+            records.writeInt(-1);
+            return;
+        }
+        Long reference = value.length() <= POOLED_MAX_LENGTH ? pooled.get(value) : null;
+        if (reference == null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (stringsLength + bytes.length > Integer.MAX_VALUE) {
+                throw new IOException("catalog strings are too large for a single mapped snapshot");
+            }
+            reference = stringsLength << 32 | bytes.length;
+            strings.write(bytes);
+            stringsLength += bytes.length;
+            if (value.length() <= POOLED_MAX_LENGTH && pooled.size() < POOLED_MAX_ENTRIES) {
+                pooled.put(value, reference);
+            }
+        }
+        records.writeInt((int) (reference >>> 32));
+        records.writeInt((int) (long) reference);
+    }
+}
@@ -0,0 +1,324 @@
+package online.threadly.product.catalog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import online.threadly.product.model.Product;
+import online.threadly.product.repository.ProductRepository;
+import online.threadly.product.serialization.ProductResponseCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The catalog the product read endpoints are served from: a memory-mapped
+ * CatalogSnapshot, plus the products changed since it was written, which are
+ * the only ones held on the heap.
+ * <p>
+ * On start the snapshot file is mapped as it is, or written from the database
+ * when there is none, and the products updated since its watermark are loaded.
+ * From then on products updated in the database (by updated_at) are polled
+ * every delta-interval, and dropped from ProductResponseCache as they come in;
+ * this instance's own writes are applied as soon as they commit. Once the
+ * changes outgrow max-delta, or the snapshot is older than rebuild-interval, a
+ * new snapshot is written in the background and swapped in. Products written
+ * to the database without setting updated_at only show up with the next
+ * snapshot.
+ * <p>
+ * The database is read in read-only transactions, so a replica can serve
+ * them; delta-overlap re-reads a margin of recent changes to cover commits
+ * that land out of updated_at order.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "threadly.catalog.enabled", havingValue = "true")
+public class ProductCatalog {
+
+    private static final String SNAPSHOT_QUERY = "SELECT id, name, slug, images, brand, description, stock, price, "
+            + "rating, rating_count, is_featured, created_at, updated_at FROM products ORDER BY id";
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ProductRepository productRepository;
+    private final ProductResponseCache productResponseCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path snapshotPath;
+    private final Duration deltaInterval;
+    private final Duration deltaOverlap;
+    private final int maxDelta;
+    private final Duration rebuildInterval;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Map<UUID, Product> changes = new ConcurrentHashMap<>();
+    private final Map<String, UUID> changedSlugs = new ConcurrentHashMap<>();
+    private volatile CatalogSnapshot snapshot;
+    private volatile LocalDateTime changesSince;
+
+    public ProductCatalog(ProductRepository productRepository, ProductResponseCache productResponseCache,
+                          DataSource dataSource, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                          @Value("${threadly.catalog.snapshot-path:./catalog/products.snapshot}") Path snapshotPath,
+                          @Value("${threadly.catalog.delta-interval:1s}") Duration deltaInterval,
+                          @Value("${threadly.catalog.delta-overlap:10s}") Duration deltaOverlap,
+                          @Value("${threadly.catalog.max-delta:50000}") int maxDelta,
+                          @Value("${threadly.catalog.rebuild-interval:6h}") Duration rebuildInterval) {
+        this.productRepository = productRepository;
+        this.productResponseCache = productResponseCache;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.snapshotPath = snapshotPath;
+        this.deltaInterval = deltaInterval;
+        this.deltaOverlap = deltaOverlap;
+        this.maxDelta = maxDelta;
+        this.rebuildInterval = rebuildInterval;
+        // two threads, so polling goes on while a new snapshot is written
+        this.scheduler = Executors.newScheduledThreadPool(2, Thread.ofPlatform().name("product-catalog-", 0).daemon(true).factory());
+        Gauge.builder("product.catalog.snapshot.products", this, catalog -> catalog.snapshot == null ? 0 : catalog.snapshot.size())
+                .register(meterRegistry);
+        Gauge.builder("product.catalog.snapshot.bytes", this, catalog -> catalog.snapshot == null ? 0 : catalog.snapshot.byteSize())
+                .register(meterRegistry);
+        Gauge.builder("product.catalog.changes", changes, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        long started = System.nanoTime();
+        try {
+            snapshot = CatalogSnapshot.open(snapshotPath);
+        } catch (NoSuchFileException exception) {
+            log.info("No catalog snapshot at {}, writing one", snapshotPath);
+            rebuild();
+        } catch (IOException exception) {
+            log.warn("Catalog snapshot {} cannot be used ({}), writing a new one", snapshotPath, exception.getMessage());
+            rebuild();
+        }
+        changesSince = snapshot.watermark() == null ? BEGINNING : snapshot.watermark();
+        applyChanges();
+        log.info("Catalog of {} products ({} changed since the snapshot) ready in {} ms", snapshot.size(), changes.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        scheduler.scheduleWithFixedDelay(this::applyChangesQuietly, deltaInterval.toMillis(), deltaInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    public Optional<Product> findById(UUID id) {
+        Product changed = changes.get(id);
+        if (changed != null) {
+            return Optional.of(changed);
+        }
+        CatalogSnapshot current = snapshot;
+        int index = current.indexOf(id);
+        return index < 0 ? Optional.empty() : Optional.of(current.product(index));
+    }
+
+    public Optional<Product> findBySlug(String slug) {
+        UUID changedId = changedSlugs.get(slug);
+        Product changed = changedId == null ? null : changes.get(changedId);
+        if (changed != null && slug.equals(changed.getSlug())) {
+            return Optional.of(changed);
+        }
+        CatalogSnapshot current = snapshot;
+        int index = current.indexOfSlug(slug);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        // the product may have moved to another slug since the snapshot
+        changed = changes.get(current.id(index));
+        if (changed != null) {
+            return slug.equals(changed.getSlug()) ? Optional.of(changed) : Optional.empty();
+        }
+        return Optional.of(current.product(index));
+    }
+
+    // products that do not exist are left out
+    public List<Product> findAllById(Collection<UUID> ids) {
+        List<Product> products = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            findById(id).ifPresent(products::add);
+        }
+        return products;
+    }
+
+    // in id order, then the products created since the snapshot
+    public List<Product> findAll() {
+        CatalogSnapshot current = snapshot;
+        List<Product> products = new ArrayList<>(current.size() + changes.size());
+        for (int index = 0; index < current.size(); index++) {
+            Product changed = changes.isEmpty() ? null : changes.get(current.id(index));
+            products.add(changed != null ? changed : current.product(index));
+        }
+        for (Product changed : changes.values()) {
+            if (current.indexOf(changed.getId()) < 0) {
+                products.add(changed);
+            }
+        }
+        return products;
+    }
+
+    // this instance's writes, once the surrounding transaction commits; polling would only pick them up later
+    public void putAfterCommit(Collection<Product> products) {
+        List<Product> committed = List.copyOf(products);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed.forEach(this::apply);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed.forEach(ProductCatalog.this::apply);
+            }
+        });
+    }
+
+    void applyChanges() {
+        LocalDateTime since = changesSince.minus(deltaOverlap);
+        List<Product> updated = readOnlyTransaction.execute(status -> productRepository.findAllByUpdatedAtAfter(since));
+        List<UUID> applied = new ArrayList<>();
+        LocalDateTime newest = changesSince;
+        for (Product product : updated) {
+            if (apply(product)) {
+                applied.add(product.getId());
+            }
+            if (product.getUpdatedAt() != null && product.getUpdatedAt().isAfter(newest)) {
+                newest = product.getUpdatedAt();
+            }
+        }
+        changesSince = newest;
+        if (!applied.isEmpty()) {
+            productResponseCache.invalidate(applied);
+        }
+        if (changes.size() > maxDelta || snapshot.writtenAt().plus(rebuildInterval).isBefore(Instant.now())) {
+            rebuildInBackground();
+        }
+    }
+
+    // writes a new snapshot from the database and swaps it in
+    void rebuild() throws IOException {
+        long started = System.nanoTime();
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(snapshotPath)) {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(SNAPSHOT_QUERY, (RowCallbackHandler) row -> {
+                try {
+                    writer.add(product(row));
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }));
+            writer.finish();
+        }
+        CatalogSnapshot rebuilt = CatalogSnapshot.open(snapshotPath);
+        snapshot = rebuilt;
+        // changes older than the newest one in the snapshot, less the overlap, are in it
+        if (rebuilt.watermark() != null) {
+            LocalDateTime covered = rebuilt.watermark().minus(deltaOverlap);
+            changes.values().removeIf(product -> product.getUpdatedAt() == null || product.getUpdatedAt().isBefore(covered));
+            changedSlugs.values().removeIf(id -> !changes.containsKey(id));
+        }
+        log.info("Wrote catalog snapshot {} with {} products ({} bytes) in {} ms", snapshotPath, rebuilt.size(),
+                rebuilt.byteSize(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    // true if the product is newer than the version the catalog had
+    private boolean apply(Product product) {
+        boolean[] applied = {false};
+        changes.compute(product.getId(), (id, current) -> {
+            LocalDateTime known = current != null ? current.getUpdatedAt() : updatedInSnapshot(id);
+            if (known != null && product.getUpdatedAt() != null && !product.getUpdatedAt().isAfter(known)) {
+                return current;
+            }
+            applied[0] = true;
+            return product;
+        });
+        if (applied[0] && product.getSlug() != null) {
+            changedSlugs.put(product.getSlug(), product.getId());
+        }
+        return applied[0];
+    }
+
+    private LocalDateTime updatedInSnapshot(UUID id) {
+        CatalogSnapshot current = snapshot;
+        int index = current == null ? -1 : current.indexOf(id);
+        return index < 0 ? null : current.updatedAt(index);
+    }
+
+    private void applyChangesQuietly() {
+        try {
+            applyChanges();
+        } catch (RuntimeException exception) {
+            log.warn("Could not poll catalog changes: {}", exception.getMessage());
+        }
+    }
+
+    private void rebuildInBackground() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.execute(() -> {
+            try {
+                rebuild();
+            } catch (IOException | RuntimeException exception) {
+                log.warn("Could not write a new catalog snapshot", exception);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    private static Product product(ResultSet row) throws SQLException {
+        Product product = new Product();
+        product.setId(row.getObject("id", UUID.class));
+        product.setName(row.getString("name"));
+        product.setSlug(row.getString("slug"));
+        Array images = row.getArray("images");
+        if (images != null) {
+            Object[] values = (Object[]) images.getArray();
+            product.setImages(Arrays.copyOf(values, values.length, String[].class));
+        }
+        product.setBrand(row.getString("brand"));
+        product.setDescription(row.getString("description"));
+        product.setStock(row.getObject("stock", Integer.class));
+        product.setPrice(row.getObject("price", Double.class));
+        product.setRating(row.getObject("rating", Double.class));
+        product.setRatingCount(row.getObject("rating_count", Integer.class));
+        product.setIsFeatured(row.getObject("is_featured", Boolean.class));
+        product.setCreatedAt(row.getObject("created_at", LocalDateTime.class));
+        product.setUpdatedAt(row.getObject("updated_at", LocalDateTime.class));
+        return product;
+    }
+}
@@ -0,0 +1,46 @@
+package online.threadly.product.controller;
+
+import online.threadly.product.bulkupdate.BulkUpdateService;
+import online.threadly.product.dao.Response;
+import online.threadly.product.model.BulkUpdateJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/admin/products/bulk-updates")
+public class BulkUpdateController {
+
+    @Autowired
+    private BulkUpdateService bulkUpdateService;
+
+    // body: a JSON array, or one JSON object per line, of {"id" or "slug", "price", "stock" or "stockDelta"}
+    // curl -X POST -H 'Content-Type: application/x-ndjson' --data-binary @prices.ndjson http://localhost:8082/api/v1/admin/products/bulk-updates
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Response> submit(InputStream body, @RequestParam(required = false) Integer chunkSize) {
+        BulkUpdateJob job = bulkUpdateService.submit(body, chunkSize);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/admin/products/bulk-updates/" + job.getId()))
+                .body(new Response("bulk update job started", job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Response> getJob(@PathVariable UUID id) {
+        return ResponseEntity.ok(new Response("bulk update job fetched successfully", bulkUpdateService.getJob(id)));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<Response> cancel(@PathVariable UUID id) {
+        return ResponseEntity.ok(new Response("bulk update job cancelled", bulkUpdateService.cancel(id)));
+    }
+
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<Response> resume(@PathVariable UUID id) {
+        return ResponseEntity.ok(new Response("bulk update job resumed", bulkUpdateService.resume(id)));
+    }
+}
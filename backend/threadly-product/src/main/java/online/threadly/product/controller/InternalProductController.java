@@ -0,0 +1,32 @@
+package online.threadly.product.controller;
+
+import online.threadly.product.dao.StockReservationRequest;
+import online.threadly.product.model.Product;
+import online.threadly.product.service.ProductService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// service-to-service endpoints, the gateway has no route for /api/v1/internal/**
+@RestController
+@RequestMapping("/api/v1/internal/products")
+public class InternalProductController {
+
+    private final ProductService productService;
+
+    public InternalProductController(ProductService productService) {
+        this.productService = productService;
+    }
+
+    @PostMapping("/reservations")
+    public ResponseEntity<List<Product>> reserveStock(@RequestBody List<StockReservationRequest> reservations) {
+        return ResponseEntity.ok(productService.reserveStock(reservations));
+    }
+
+    @PostMapping("/reservations/release")
+    public ResponseEntity<Void> releaseStock(@RequestBody List<StockReservationRequest> reservations) {
+        productService.releaseStock(reservations);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -2,6 +2,9 @@ package online.threadly.product.controller;
 
 import online.threadly.product.dao.Response;
 import online.threadly.product.model.Product;
+import online.threadly.product.serialization.EncodedProduct;
+import online.threadly.product.serialization.EncodedProducts;
+import online.threadly.product.serialization.ProductResponseCache;
 import online.threadly.product.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -9,7 +12,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 @RestController
@@ -19,6 +21,9 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductResponseCache productResponseCache;
+
     // this needs to be converted to a ADMIN API
     @PostMapping("/admin/products")
     public ResponseEntity<Response> createProduct(@RequestBody Product product) {
@@ -40,27 +45,22 @@ public class ProductController {
 
     // http://localhost:8082/api/v1/products/slug/men-slim-fit-smart-formal-shirt
     @GetMapping("/products/slug/{slug}")
-    public ResponseEntity<Response> getProductBySlug(@PathVariable String slug) {
-        Product product = productService.getProductBySlug(slug);
-        if (product == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("product not found", null));
-        }
-        return ResponseEntity.ok(new Response("product fetched successfully", product));
+    public ResponseEntity<EncodedProducts> getProductBySlug(@PathVariable String slug) {
+        EncodedProduct product = productResponseCache.bySlug(slug, productService::getProductBySlug);
+        return ResponseEntity.ok(EncodedProducts.wrapped("product fetched successfully", product));
     }
 
     // http://localhost:8082/api/v1/products/ea1e7f2f-409d-4681-b3e9-d80fd3a7b042
     @GetMapping("/products/{id}")
-    public ResponseEntity<Response> getProduct(@PathVariable UUID id) {
-        Product product = productService.getProduct(id);
-        if (product == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("product not found", null));
-        }
-        return ResponseEntity.ok(new Response("product fetched successfully", product));
+    public ResponseEntity<EncodedProducts> getProduct(@PathVariable UUID id) {
+        EncodedProduct product = productResponseCache.byId(id, productService::getProduct);
+        return ResponseEntity.ok(EncodedProducts.wrapped("product fetched successfully", product));
     }
 
+    // served from cached JSON or CBOR bytes, see ProductResponseCache
     @PostMapping("/products/bulk")
-    public ResponseEntity<List<Product>> getProductsByIds(@RequestBody List<UUID> productIds) {
-        List<Product> products = productService.getProductsByIds(productIds);
-        return ResponseEntity.ok(products);
+    public ResponseEntity<EncodedProducts> getProductsByIds(@RequestBody List<UUID> productIds) {
+        List<EncodedProduct> products = productResponseCache.byIds(productIds, productService::getProductsByIds);
+        return ResponseEntity.ok(EncodedProducts.array(products));
     }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package online.threadly.product.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces Spring Boot's single DataSource once threadly.read-replicas.urls is
+ * set: read-only transactions are served by the replicas, everything else by
+ * spring.datasource. The pools are created here rather than as beans of their
+ * own, so JPA sees one DataSource and SQL statistics wrap it once.
+ */
+@Configuration
+@ConditionalOnProperty(name = "threadly.read-replicas.urls")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    public ReadYourWritesWindow readYourWritesWindow(
+            @Value("${threadly.read-replicas.read-your-writes-window:2s}") Duration window) {
+        return new ReadYourWritesWindow(window);
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+                                                 ReadYourWritesWindow readYourWritesWindow,
+                                                 @Value("${threadly.read-replicas.urls}") List<String> urls,
+                                                 @Value("${threadly.read-replicas.maximum-pool-size:10}") int maximumPoolSize,
+                                                 @Value("${threadly.read-replicas.connection-timeout:1s}") Duration connectionTimeout,
+                                                 @Value("${threadly.read-replicas.health-check-interval:5s}") Duration healthCheckInterval) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        List<HikariDataSource> replicaPools = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicaPools.size() + 1));
+            replica.setJdbcUrl(url);
+            replica.setUsername(environment.getProperty("threadly.read-replicas.username", primary.getUsername()));
+            replica.setPassword(environment.getProperty("threadly.read-replicas.password", primary.getPassword()));
+            replica.setMaximumPoolSize(maximumPoolSize);
+            // a dead replica must fail fast so the read falls back to the primary within the request
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            replicaPools.add(replica);
+        }
+
+        return new ReadWriteRoutingDataSource(primary,
+                new ReadReplicaDataSource(primary, replicaPools, readYourWritesWindow, healthCheckInterval));
+    }
+}
@@ -0,0 +1,143 @@
+package online.threadly.product.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The read side of the product database: one connection pool per replica behind
+ * a single DataSource. Each connection comes from the healthy replica with the
+ * fewest active connections. With no healthy replica, or while the current
+ * request's read-your-writes window is open, it comes from the primary instead.
+ * <p>
+ * A replica is marked down as soon as it fails to hand out a connection, and
+ * back up by the periodic health check once it validates a connection again.
+ */
+@Slf4j
+public class ReadReplicaDataSource extends AbstractDataSource implements Closeable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWritesWindow readYourWritesWindow;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    public ReadReplicaDataSource(DataSource primary, List<HikariDataSource> replicaPools,
+                                 ReadYourWritesWindow readYourWritesWindow, Duration healthCheckInterval) {
+        this.primary = primary;
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.readYourWritesWindow = readYourWritesWindow;
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("read-replica-health")
+                .daemon(true)
+                .factory());
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckInterval.toMillis(),
+                healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (readYourWritesWindow.isOpen()) {
+            return primary.getConnection();
+        }
+        for (Replica replica = choose(); replica != null; replica = choose()) {
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException exception) {
+                markDown(replica, exception.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("replica connections use the configured credentials");
+    }
+
+    void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean valid;
+            String reason = "connection failed validation";
+            try (Connection connection = replica.pool.getConnection()) {
+                valid = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException | RuntimeException exception) {
+                valid = false;
+                reason = exception.getMessage();
+            }
+            if (valid && !replica.healthy) {
+                replica.healthy = true;
+                log.info("Read replica {} is back up", replica.pool.getPoolName());
+            } else if (!valid) {
+                markDown(replica, reason);
+            }
+        }
+    }
+
+    List<HikariDataSource> replicaPools() {
+        return replicas.stream().map(replica -> replica.pool).toList();
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    // least active connections among the healthy replicas, ties broken round-robin
+    private Replica choose() {
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        Replica best = null;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            int active = replica.activeConnections();
+            if (active < bestActive) {
+                best = replica;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+
+    private void markDown(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Read replica {} is down, reading from the primary until it recovers: {}",
+                    replica.pool.getPoolName(), reason);
+        }
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private volatile boolean healthy = true;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private int activeConnections() {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            return bean == null ? 0 : bean.getActiveConnections();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package online.threadly.product.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.io.Closeable;
+
+/**
+ * Defers fetching a physical connection until the first statement, by which
+ * time a read-only transaction has marked the connection read-only; such
+ * connections then come from the replicas, every other one from the primary.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final HikariDataSource primary;
+    private final ReadReplicaDataSource replicas;
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, ReadReplicaDataSource replicas) {
+        super(primary);
+        setReadOnlyDataSource(replicas);
+        this.primary = primary;
+        this.replicas = replicas;
+    }
+
+    public ReadReplicaDataSource getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void close() {
+        replicas.close();
+        primary.close();
+    }
+}
@@ -0,0 +1,93 @@
+package online.threadly.product.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+/**
+ * Read-your-writes for the client that wrote. A read-write transaction committed
+ * by a request under /api/v1/admin/ opens a window for that client only: the
+ * rest of the request, and the client's requests carrying the cookie set on the
+ * response, read from the primary until it closes, so an admin who has just
+ * edited a product reads it back even if the replicas lag behind. Every other
+ * write opens no window, notably the stock reservations made on every checkout
+ * and the chunks of bulk update jobs, which run outside any request. Spring Boot
+ * registers it on the transaction manager as an execution listener.
+ */
+public class ReadYourWritesWindow implements TransactionExecutionListener {
+
+    public static final String COOKIE = "threadly-read-your-writes";
+    private static final String ADMIN_PATH = "/api/v1/admin/";
+    private static final String WRITTEN_UNTIL = ReadYourWritesWindow.class.getName() + ".WRITTEN_UNTIL";
+
+    private final Duration window;
+
+    public ReadYourWritesWindow(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (commitFailure != null || transaction.isReadOnly()
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || !attributes.getRequest().getRequestURI().startsWith(ADMIN_PATH)) {
+            return;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        boolean cookieSet = request.getAttribute(WRITTEN_UNTIL) != null;
+        // wall-clock time, since the next request may land on another instance
+        long writtenUntil = System.currentTimeMillis() + window.toMillis();
+        request.setAttribute(WRITTEN_UNTIL, writtenUntil);
+
+        HttpServletResponse response = attributes.getResponse();
+        if (!cookieSet && response != null && !response.isCommitted()) {
+            ResponseCookie cookie = ResponseCookie.from(COOKIE, Long.toString(writtenUntil))
+                    .path("/api/v1")
+                    .maxAge((window.toMillis() + 999) / 1000)
+                    .httpOnly(true)
+                    .sameSite("Strict")
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        }
+    }
+
+    /**
+     * Whether the current request reads from the primary: it wrote itself, or
+     * carries the cookie of a recent write. Outside a request it never does.
+     */
+    public boolean isOpen() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        Object writtenUntil = request.getAttribute(WRITTEN_UNTIL);
+        if (writtenUntil instanceof Long until) {
+            return System.currentTimeMillis() < until;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    // a tag further out than one window was not set here, so it cannot pin a client to the primary
+                    long until = Long.parseLong(cookie.getValue());
+                    long now = System.currentTimeMillis();
+                    return now < until && until - now <= window.toMillis();
+                } catch (NumberFormatException exception) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
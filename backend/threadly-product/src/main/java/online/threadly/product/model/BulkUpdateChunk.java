@@ -0,0 +1,34 @@
+package online.threadly.product.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import online.threadly.commons.id.UuidV7Generator;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.util.UUID;
+
+@Data
+@Entity
+@Table(name = "product_bulk_update_chunks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_bulk_update_chunk", columnNames = {"job_id", "chunk_no"}))
+public class BulkUpdateChunk {
+
+    @Id
+    @UuidGenerator(algorithm = UuidV7Generator.class)
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID jobId;
+
+    private int chunkNo;
+
+    private int rowCount;
+
+    // the chunk's BulkUpdateRows as a JSON array
+    @Column(nullable = false, columnDefinition = "text")
+    private String rows;
+
+    private boolean applied;
+
+    private int rowsUpdated;
+}
@@ -0,0 +1,46 @@
+package online.threadly.product.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import online.threadly.commons.id.UuidV7Generator;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// progress of an admin bulk price/stock update; the rows themselves are kept per chunk in BulkUpdateChunk
+@Data
+@Entity
+@Table(name = "product_bulk_update_jobs")
+public class BulkUpdateJob {
+
+    @Id
+    @UuidGenerator(algorithm = UuidV7Generator.class)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BulkUpdateJobStatus status;
+
+    private int chunkSize;
+
+    private long totalRows;
+
+    private int totalChunks;
+
+    private int chunksDone;
+
+    private long rowsUpdated;
+
+    // unknown ids or slugs, and stock deltas that would take stock below zero
+    private long rowsSkipped;
+
+    @Column(length = 1000)
+    private String error;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime finishedAt;
+}
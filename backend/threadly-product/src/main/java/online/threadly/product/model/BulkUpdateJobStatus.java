@@ -0,0 +1,10 @@
+package online.threadly.product.model;
+
+public enum BulkUpdateJobStatus {
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED,
+    // the instance running it shut down; resumable like a cancelled or failed job
+    INTERRUPTED
+}
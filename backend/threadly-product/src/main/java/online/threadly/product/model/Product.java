@@ -2,17 +2,25 @@ package online.threadly.product.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import online.threadly.commons.id.UuidV7Generator;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+@Slf4j
 @Data
 @Entity
-@Table(name = "products")
+// slug: product pages and bulk updates look products up by it; updated_at: ProductCatalog polls changes by it
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_slug", columnList = "slug"),
+        @Index(name = "idx_products_updated_at", columnList = "updatedAt")
+})
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @Column(nullable = false)
@@ -38,9 +46,18 @@ public class Product {
 
     private LocalDateTime createdAt;
 
+    // also set by writes that bypass the entity, such as bulk updates
+    private LocalDateTime updatedAt;
+
     @PrePersist
     protected void onCreate() {
-        System.out.println("Hello, I am printing my name because I want to do it before saving a new product to the database.");
+        log.debug("Creating product {}", name);
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 }
@@ -0,0 +1,8 @@
+package online.threadly.product.projection;
+
+import java.util.UUID;
+
+public interface ProductKeyView {
+    UUID getId();
+    String getSlug();
+}
@@ -0,0 +1,26 @@
+package online.threadly.product.repository;
+
+import jakarta.persistence.LockModeType;
+import online.threadly.product.model.BulkUpdateChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface BulkUpdateChunkRepository extends JpaRepository<BulkUpdateChunk, UUID> {
+
+    // ids only: the rows are loaded one chunk at a time by the worker applying it
+    @Query("SELECT c.id FROM BulkUpdateChunk c WHERE c.jobId = :jobId AND c.applied = false ORDER BY c.chunkNo")
+    List<UUID> findPendingIds(@Param("jobId") UUID jobId);
+
+    // held until the chunk's transaction ends, so two runs of a job cannot apply the same chunk twice
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM BulkUpdateChunk c WHERE c.id = :id")
+    Optional<BulkUpdateChunk> findByIdForUpdate(@Param("id") UUID id);
+}
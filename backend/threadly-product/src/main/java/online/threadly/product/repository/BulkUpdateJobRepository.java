@@ -0,0 +1,48 @@
+package online.threadly.product.repository;
+
+import online.threadly.product.model.BulkUpdateJob;
+import online.threadly.product.model.BulkUpdateJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface BulkUpdateJobRepository extends JpaRepository<BulkUpdateJob, UUID> {
+
+    @Query("SELECT j.status FROM BulkUpdateJob j WHERE j.id = :id")
+    Optional<BulkUpdateJobStatus> findStatusById(@Param("id") UUID id);
+
+    // only while the job is still in the given status, so a chunk that finishes after a cancel is rolled back
+    @Modifying
+    @Query("UPDATE BulkUpdateJob j SET j.chunksDone = j.chunksDone + 1, j.rowsUpdated = j.rowsUpdated + :updated, "
+            + "j.rowsSkipped = j.rowsSkipped + :skipped, j.updatedAt = :now WHERE j.id = :id AND j.status = :status")
+    int recordChunk(@Param("id") UUID id, @Param("status") BulkUpdateJobStatus status, @Param("updated") long updated,
+                    @Param("skipped") long skipped, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE BulkUpdateJob j SET j.status = :to, j.error = :error, j.updatedAt = :now, j.finishedAt = :now "
+            + "WHERE j.id = :id AND j.status = :from")
+    int finish(@Param("id") UUID id, @Param("from") BulkUpdateJobStatus from, @Param("to") BulkUpdateJobStatus to,
+               @Param("error") String error, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE BulkUpdateJob j SET j.status = :to, j.updatedAt = :now, j.finishedAt = :now "
+            + "WHERE j.id = :id AND j.status = :from AND j.chunksDone = j.totalChunks")
+    int complete(@Param("id") UUID id, @Param("from") BulkUpdateJobStatus from, @Param("to") BulkUpdateJobStatus to,
+                 @Param("now") LocalDateTime now);
+
+    // a job still marked running that has not moved since staleBefore lost the instance running it
+    @Modifying
+    @Query("UPDATE BulkUpdateJob j SET j.status = :to, j.error = null, j.updatedAt = :now, j.finishedAt = null "
+            + "WHERE j.id = :id AND (j.status IN :resumable OR (j.status = :to AND j.updatedAt < :staleBefore))")
+    int resume(@Param("id") UUID id, @Param("resumable") Collection<BulkUpdateJobStatus> resumable,
+               @Param("to") BulkUpdateJobStatus to, @Param("staleBefore") LocalDateTime staleBefore,
+               @Param("now") LocalDateTime now);
+}
@@ -1,9 +1,17 @@
 package online.threadly.product.repository;
 
 import online.threadly.product.model.Product;
+import online.threadly.product.projection.ProductKeyView;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,6 +20,21 @@ import java.util.UUID;
 public interface ProductRepository extends JpaRepository<Product, UUID> {
     Optional<Product> findBySlug(String slug);
 
+    // bulk updates key their rows by id, so the slugs of an upload are looked up a chunk at a time
+    List<ProductKeyView> findBySlugIn(Collection<String> slugs);
+
     // SELECT * FROM products WHERE brand = 'POLO';
     List<Product> findAllByBrand(String brand);
+
+    // what ProductCatalog polls to catch up on changes made since its snapshot
+    List<Product> findAllByUpdatedAtAfter(LocalDateTime since);
+
+    // what a new instance loads first while warming up
+    @Query("SELECT p.id FROM Product p ORDER BY p.isFeatured DESC NULLS LAST, p.ratingCount DESC NULLS LAST, p.id")
+    List<UUID> findHotProductIds(Pageable pageable);
+
+    // rows are locked in id order so concurrent reservations cannot deadlock each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> findAllByIdForUpdate(@Param("ids") Collection<UUID> ids);
 }
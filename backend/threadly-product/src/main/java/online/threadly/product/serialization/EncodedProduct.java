@@ -0,0 +1,10 @@
+package online.threadly.product.serialization;
+
+import java.util.UUID;
+
+/**
+ * One product already encoded as JSON and as CBOR, exactly as Jackson writes
+ * it in a response body.
+ */
+public record EncodedProduct(UUID id, String slug, byte[] json, byte[] cbor, long encodedAtNanos) {
+}
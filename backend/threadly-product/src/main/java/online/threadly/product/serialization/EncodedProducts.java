@@ -0,0 +1,39 @@
+package online.threadly.product.serialization;
+
+import java.util.List;
+
+/**
+ * A response body assembled from cached product fragments: either one product
+ * wrapped like dao.Response ({"message": …, "data": product}) or a bare array
+ * of products. Written by EncodedProductsHttpMessageConverter.
+ */
+public final class EncodedProducts {
+
+    private final String message;
+    private final List<EncodedProduct> products;
+
+    private EncodedProducts(String message, List<EncodedProduct> products) {
+        this.message = message;
+        this.products = products;
+    }
+
+    public static EncodedProducts wrapped(String message, EncodedProduct product) {
+        return new EncodedProducts(message, List.of(product));
+    }
+
+    public static EncodedProducts array(List<EncodedProduct> products) {
+        return new EncodedProducts(null, products);
+    }
+
+    public boolean isWrapped() {
+        return message != null;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public List<EncodedProduct> getProducts() {
+        return products;
+    }
+}
@@ -0,0 +1,158 @@
+package online.threadly.product.serialization;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes EncodedProducts as JSON or CBOR, whichever the client accepts, by
+ * copying the cached product bytes between a few envelope bytes straight into
+ * the response body. Nothing is re-encoded, except the envelope's message
+ * string the first time it is seen.
+ */
+public class EncodedProductsHttpMessageConverter extends AbstractHttpMessageConverter<EncodedProducts> {
+
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    private static final byte[] JSON_MESSAGE = "{\"message\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_DATA = ",\"data\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_OBJECT_END = {'}'};
+    private static final byte[] JSON_ARRAY_START = {'['};
+    private static final byte[] JSON_ARRAY_END = {']'};
+    private static final byte[] JSON_SEPARATOR = {','};
+
+    // as Jackson's CBORGenerator writes them: beans as indefinite-length maps, lists with their length up front
+    private static final byte[] CBOR_MAP_START = {(byte) 0xBF};
+    private static final byte[] CBOR_BREAK = {(byte) 0xFF};
+    private static final byte[][] SHORT_CBOR_ARRAY_HEADERS = new byte[24][];
+
+    static {
+        for (int length = 0; length < 24; length++) {
+            SHORT_CBOR_ARRAY_HEADERS[length] = new byte[]{(byte) (0x80 | length)};
+        }
+    }
+
+    private final ProductEncoding encoding;
+    private final byte[] cborMessageKey;
+    private final byte[] cborDataKey;
+    private final Map<String, byte[]> jsonMessages = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> cborMessages = new ConcurrentHashMap<>();
+
+    public EncodedProductsHttpMessageConverter(ProductEncoding encoding) {
+        super(MediaType.APPLICATION_JSON, CBOR);
+        this.encoding = encoding;
+        this.cborMessageKey = encoding.cbor("message");
+        this.cborDataKey = encoding.cbor("data");
+    }
+
+    @Override
+    protected boolean supports(Class<?> type) {
+        return EncodedProducts.class.equals(type);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected EncodedProducts readInternal(Class<? extends EncodedProducts> type, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("EncodedProducts can only be written", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(EncodedProducts body, MediaType contentType) {
+        List<EncodedProduct> products = body.getProducts();
+        boolean cbor = CBOR.isCompatibleWith(contentType);
+        long length = 0;
+        for (EncodedProduct product : products) {
+            length += cbor ? product.cbor().length : product.json().length;
+        }
+        if (body.isWrapped()) {
+            return cbor
+                    ? length + CBOR_MAP_START.length + cborMessageKey.length + cborMessage(body).length + cborDataKey.length + CBOR_BREAK.length
+                    : length + JSON_MESSAGE.length + jsonMessage(body).length + JSON_DATA.length + JSON_OBJECT_END.length;
+        }
+        return cbor
+                ? length + cborArrayHeader(products.size()).length
+                : length + JSON_ARRAY_START.length + Math.max(products.size() - 1, 0) * JSON_SEPARATOR.length + JSON_ARRAY_END.length;
+    }
+
+    @Override
+    protected void writeInternal(EncodedProducts body, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        if (CBOR.isCompatibleWith(outputMessage.getHeaders().getContentType())) {
+            writeCbor(body, out);
+        } else {
+            writeJson(body, out);
+        }
+    }
+
+    private void writeJson(EncodedProducts body, OutputStream out) throws IOException {
+        List<EncodedProduct> products = body.getProducts();
+        if (body.isWrapped()) {
+            out.write(JSON_MESSAGE);
+            out.write(jsonMessage(body));
+            out.write(JSON_DATA);
+            out.write(products.get(0).json());
+            out.write(JSON_OBJECT_END);
+            return;
+        }
+        out.write(JSON_ARRAY_START);
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) {
+                out.write(JSON_SEPARATOR);
+            }
+            out.write(products.get(i).json());
+        }
+        out.write(JSON_ARRAY_END);
+    }
+
+    private void writeCbor(EncodedProducts body, OutputStream out) throws IOException {
+        List<EncodedProduct> products = body.getProducts();
+        if (body.isWrapped()) {
+            out.write(CBOR_MAP_START);
+            out.write(cborMessageKey);
+            out.write(cborMessage(body));
+            out.write(cborDataKey);
+            out.write(products.get(0).cbor());
+            out.write(CBOR_BREAK);
+            return;
+        }
+        out.write(cborArrayHeader(products.size()));
+        for (EncodedProduct product : products) {
+            out.write(product.cbor());
+        }
+    }
+
+    private byte[] jsonMessage(EncodedProducts body) {
+        return jsonMessages.computeIfAbsent(body.getMessage(), encoding::json);
+    }
+
+    private byte[] cborMessage(EncodedProducts body) {
+        return cborMessages.computeIfAbsent(body.getMessage(), encoding::cbor);
+    }
+
+    // major type 4 with the length in the low bits or in the 1, 2 or 4 bytes that follow
+    private static byte[] cborArrayHeader(int length) {
+        if (length < 24) {
+            return SHORT_CBOR_ARRAY_HEADERS[length];
+        }
+        if (length < 0x100) {
+            return new byte[]{(byte) 0x98, (byte) length};
+        }
+        if (length < 0x10000) {
+            return new byte[]{(byte) 0x99, (byte) (length >>> 8), (byte) length};
+        }
+        return new byte[]{(byte) 0x9A, (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length};
+    }
+}
@@ -0,0 +1,53 @@
+package online.threadly.product.serialization;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import online.threadly.product.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+
+/**
+ * The two ObjectMappers product responses are written with: Spring Boot's
+ * for JSON and, for CBOR, one built the way Spring MVC builds the mapper of
+ * its default CBOR converter. Cached fragments are therefore byte for byte
+ * what the message converters would have written.
+ */
+@Component
+public class ProductEncoding {
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    @Autowired
+    public ProductEncoding(ObjectMapper jsonMapper) {
+        this(jsonMapper, Jackson2ObjectMapperBuilder.cbor().build());
+    }
+
+    public ProductEncoding(ObjectMapper jsonMapper, ObjectMapper cborMapper) {
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = cborMapper;
+    }
+
+    public EncodedProduct encode(Product product) {
+        return new EncodedProduct(product.getId(), product.getSlug(), json(product), cbor(product), System.nanoTime());
+    }
+
+    public byte[] json(Object value) {
+        return write(jsonMapper, value);
+    }
+
+    public byte[] cbor(Object value) {
+        return write(cborMapper, value);
+    }
+
+    private static byte[] write(ObjectMapper mapper, Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
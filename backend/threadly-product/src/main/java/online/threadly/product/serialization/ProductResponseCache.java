@@ -0,0 +1,175 @@
+package online.threadly.product.serialization;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import online.threadly.product.exception.BadRequestException;
+import online.threadly.product.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Encoded bytes of recently served products, so product-detail and bulk
+ * responses are copied from memory instead of loading and re-encoding the
+ * entities on every request.
+ * <p>
+ * Stock reservations and releases made by this instance drop the affected
+ * entries once they commit. Writes made elsewhere (other instances, the
+ * database directly) are picked up when an entry reaches its max-age. A load
+ * that overlaps an invalidation is served but not cached, so it cannot put
+ * back bytes read before the write committed.
+ */
+@Component
+public class ProductResponseCache {
+
+    private final ProductEncoding encoding;
+    private final Map<UUID, EncodedProduct> products = new ConcurrentHashMap<>();
+    private final Map<String, UUID> idsBySlug = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ProductResponseCache(ProductEncoding encoding, MeterRegistry meterRegistry,
+                                @Value("${threadly.product-response-cache.max-entries:10000}") int maxEntries,
+                                @Value("${threadly.product-response-cache.max-age:5s}") Duration maxAge) {
+        this.encoding = encoding;
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAge.toNanos();
+        this.hits = Counter.builder("product.response_cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("product.response_cache.requests").tag("result", "miss").register(meterRegistry);
+    }
+
+    public EncodedProduct byId(UUID id, Function<UUID, Product> loader) {
+        EncodedProduct cached = fresh(id);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long stamp = invalidations.get();
+        return cache(encoding.encode(loader.apply(id)), stamp);
+    }
+
+    public EncodedProduct bySlug(String slug, Function<String, Product> loader) {
+        UUID id = slug == null ? null : idsBySlug.get(slug);
+        EncodedProduct cached = id == null ? null : fresh(id);
+        if (cached != null && slug.equals(cached.slug())) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long stamp = invalidations.get();
+        return cache(encoding.encode(loader.apply(slug)), stamp);
+    }
+
+    // in the order asked for, without duplicates; ids that do not exist are left out
+    public List<EncodedProduct> byIds(List<UUID> ids, Function<List<UUID>, List<Product>> loader) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("productids cannot be empty");
+        }
+        Set<UUID> requested = new LinkedHashSet<>(ids);
+        Map<UUID, EncodedProduct> found = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : requested) {
+            EncodedProduct cached = fresh(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        hits.increment(found.size());
+        misses.increment(missing.size());
+        if (!missing.isEmpty()) {
+            long stamp = invalidations.get();
+            for (Product product : loader.apply(missing)) {
+                found.put(product.getId(), cache(encoding.encode(product), stamp));
+            }
+        }
+
+        List<EncodedProduct> result = new ArrayList<>(found.size());
+        for (UUID id : requested) {
+            EncodedProduct product = found.get(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    // after the surrounding transaction commits, so a concurrent load cannot re-cache the old row
+    public void invalidateAfterCommit(Collection<UUID> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(ids);
+            return;
+        }
+        List<UUID> invalidated = List.copyOf(ids);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(invalidated);
+            }
+        });
+    }
+
+    public void invalidate(Collection<UUID> ids) {
+        invalidations.incrementAndGet();
+        ids.forEach(products::remove);
+    }
+
+    private EncodedProduct fresh(UUID id) {
+        EncodedProduct cached = products.get(id);
+        if (cached == null || System.nanoTime() - cached.encodedAtNanos() > maxAgeNanos) {
+            return null;
+        }
+        return cached;
+    }
+
+    private EncodedProduct cache(EncodedProduct product, long stamp) {
+        if (invalidations.get() != stamp) {
+            return product;
+        }
+        if (products.size() >= maxEntries && !products.containsKey(product.id())) {
+            evictOne();
+        }
+        products.put(product.id(), product);
+        // an invalidation that ran between the check above and the put
+        if (invalidations.get() != stamp) {
+            products.remove(product.id(), product);
+            return product;
+        }
+        if (product.slug() != null) {
+            idsBySlug.put(product.slug(), product.id());
+        }
+        return product;
+    }
+
+    // any entry will do: the bound only has to keep memory in check, max-age keeps entries current
+    private void evictOne() {
+        Iterator<EncodedProduct> iterator = products.values().iterator();
+        if (iterator.hasNext()) {
+            EncodedProduct evicted = iterator.next();
+            iterator.remove();
+            if (evicted.slug() != null) {
+                idsBySlug.remove(evicted.slug(), evicted.id());
+            }
+        }
+    }
+}
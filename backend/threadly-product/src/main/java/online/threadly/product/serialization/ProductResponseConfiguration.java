@@ -0,0 +1,22 @@
+package online.threadly.product.serialization;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class ProductResponseConfiguration implements WebMvcConfigurer {
+
+    private final ProductEncoding encoding;
+
+    public ProductResponseConfiguration(ProductEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new EncodedProductsHttpMessageConverter(encoding));
+    }
+}
@@ -1,13 +1,20 @@
 package online.threadly.product.service;
 
+import online.threadly.product.catalog.ProductCatalog;
+import online.threadly.product.dao.StockReservationRequest;
 import online.threadly.product.model.Product;
 import online.threadly.product.repository.ProductRepository;
 import online.threadly.product.exception.BadRequestException;
 import online.threadly.product.exception.ResourceNotFoundException;
+import online.threadly.product.serialization.ProductResponseCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -16,6 +23,13 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductResponseCache productResponseCache;
+
+    // reads come from the catalog snapshot when threadly.catalog.enabled, from the database otherwise
+    @Autowired(required = false)
+    private ProductCatalog productCatalog;
+
     public Product createProduct(Product product) {
         if (product == null) {
             throw new BadRequestException("product payload is required");
@@ -29,11 +43,16 @@ public class ProductService {
         if (product.getStock() != null && product.getStock() < 0) {
             throw new BadRequestException("product stock must be >= 0");
         }
-        return productRepository.save(product);
+        Product created = productRepository.save(product);
+        if (productCatalog != null) {
+            productCatalog.putAfterCommit(List.of(created));
+        }
+        return created;
     }
 
+    @Transactional(readOnly = true)
     public List<Product> getProducts() {
-        List<Product> products = productRepository.findAll();
+        List<Product> products = productCatalog != null ? productCatalog.findAll() : productRepository.findAll();
         if (products.isEmpty()) {
             throw new ResourceNotFoundException("products not found");
         }
@@ -41,6 +60,7 @@ public class ProductService {
     }
 
     // SELECT * FROM products WHERE id = id;
+    @Transactional(readOnly = true)
     public Product getProduct(UUID id) {
         // Optional<Product> product = productRepository.findById(id);
         // if(product.isPresent()) {
@@ -50,24 +70,81 @@ public class ProductService {
         if (id == null) {
             throw new BadRequestException("product id is required");
         }
-        return productRepository.findById(id)
+        return (productCatalog != null ? productCatalog.findById(id) : productRepository.findById(id))
                 .orElseThrow(() -> new ResourceNotFoundException("product not found"));
     }
 
     // SELECT * FROM products WHERE slug = 'men-slim-fit-smart-formal-shirt';
+    @Transactional(readOnly = true)
     public Product getProductBySlug(String slug) {
         if (slug == null || slug.trim().isEmpty()) {
             throw new BadRequestException("product slug is required");
         }
-        return productRepository.findBySlug(slug)
+        return (productCatalog != null ? productCatalog.findBySlug(slug) : productRepository.findBySlug(slug))
                 .orElseThrow(() -> new ResourceNotFoundException("product not found"));
     }
 
+    @Transactional(readOnly = true)
     public List<Product> getProductsByIds(List<UUID> productIds) {
         if(productIds.isEmpty()) {
             throw new BadRequestException("productids cannot be empty");
         }
-        return productRepository.findAllById(productIds);
+        return productCatalog != null ? productCatalog.findAllById(productIds) : productRepository.findAllById(productIds);
+    }
+
+    // reserves stock for every line of an order at once: all lines succeed or none do
+    @Transactional
+    public List<Product> reserveStock(List<StockReservationRequest> reservations) {
+        Map<UUID, Integer> quantities = mergeReservations(reservations);
+        List<Product> products = productRepository.findAllByIdForUpdate(quantities.keySet());
+        if (products.size() != quantities.size()) {
+            throw new ResourceNotFoundException("product not found");
+        }
+        for (Product product : products) {
+            int requested = quantities.get(product.getId());
+            if (product.getStock() == null || product.getStock() < requested) {
+                throw new BadRequestException("insufficient stock for product " + product.getId());
+            }
+            product.setStock(product.getStock() - requested);
+        }
+        changedAfterCommit(products, quantities.keySet());
+        return products;
+    }
+
+    @Transactional
+    public void releaseStock(List<StockReservationRequest> reservations) {
+        Map<UUID, Integer> quantities = mergeReservations(reservations);
+        List<Product> products = productRepository.findAllByIdForUpdate(quantities.keySet());
+        for (Product product : products) {
+            int current = product.getStock() == null ? 0 : product.getStock();
+            product.setStock(current + quantities.get(product.getId()));
+        }
+        changedAfterCommit(products, quantities.keySet());
+    }
+
+    // the catalog first, so a response re-cached right after the invalidation is built from the new stock
+    private void changedAfterCommit(List<Product> products, Collection<UUID> ids) {
+        if (productCatalog != null) {
+            productCatalog.putAfterCommit(products);
+        }
+        productResponseCache.invalidateAfterCommit(ids);
+    }
+
+    private Map<UUID, Integer> mergeReservations(List<StockReservationRequest> reservations) {
+        if (reservations == null || reservations.isEmpty()) {
+            throw new BadRequestException("reservations cannot be empty");
+        }
+        Map<UUID, Integer> quantities = new LinkedHashMap<>();
+        for (StockReservationRequest reservation : reservations) {
+            if (reservation.getProductId() == null) {
+                throw new BadRequestException("product id is required");
+            }
+            if (reservation.getQuantity() == null || reservation.getQuantity() <= 0) {
+                throw new BadRequestException("reserved quantity must be > 0");
+            }
+            quantities.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+        }
+        return quantities;
     }
 
 }
@@ -0,0 +1,98 @@
+package online.threadly.product.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+import online.threadly.commons.warmup.SyntheticTraffic;
+import online.threadly.commons.warmup.WarmUpHealthIndicator;
+import online.threadly.commons.warmup.WarmUpRunner;
+import online.threadly.commons.warmup.WarmUpSettings;
+import online.threadly.product.repository.ProductRepository;
+import online.threadly.product.serialization.EncodedProduct;
+import online.threadly.product.serialization.ProductResponseCache;
+import online.threadly.product.service.ProductService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The product service's warm-up: connections on the primary and on the read
+ * side, then the featured and most-rated products loaded through
+ * ProductResponseCache, then detail, slug, bulk (JSON and CBOR), list and
+ * not-found requests for those products replayed until latency settles.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "threadly.warm-up.enabled", havingValue = "true")
+public class WarmUpOrchestrator extends WarmUpRunner {
+
+    private static final int BULK_SIZE = 20;
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ProductResponseCache productResponseCache;
+    private final int hotProducts;
+
+    public WarmUpOrchestrator(ApplicationContext applicationContext, DataSource dataSource,
+                              PlatformTransactionManager transactionManager, ProductRepository productRepository,
+                              ProductService productService, ProductResponseCache productResponseCache,
+                              WarmUpHealthIndicator health, WarmUpSettings settings,
+                              @Value("${threadly.warm-up.hot-products:200}") int hotProducts) {
+        super(applicationContext, dataSource, transactionManager, health, settings);
+        this.productRepository = productRepository;
+        this.productService = productService;
+        this.productResponseCache = productResponseCache;
+        this.hotProducts = hotProducts;
+    }
+
+    @Override
+    protected List<ConnectionTarget> connectionTargets() {
+        return List.of(ConnectionTarget.primary(), ConnectionTarget.readSide());
+    }
+
+    @Override
+    protected List<SyntheticTraffic.Request> preload() {
+        return mix(preloadCatalog());
+    }
+
+    private List<EncodedProduct> preloadCatalog() {
+        try {
+            List<UUID> ids = productRepository.findHotProductIds(PageRequest.of(0, hotProducts));
+            List<EncodedProduct> products = ids.isEmpty()
+                    ? List.of()
+                    : productResponseCache.byIds(ids, productService::getProductsByIds);
+            log.info("Warm-up loaded {} products", products.size());
+            return products;
+        } catch (RuntimeException exception) {
+            log.warn("Warm-up could not load the catalog: {}", exception.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<SyntheticTraffic.Request> mix(List<EncodedProduct> products) {
+        List<SyntheticTraffic.Request> mix = new ArrayList<>();
+        for (EncodedProduct product : products) {
+            mix.add(SyntheticTraffic.Request.get("/api/v1/products/" + product.id(), "application/json"));
+            if (product.slug() != null) {
+                mix.add(SyntheticTraffic.Request.get("/api/v1/products/slug/" + product.slug(), "application/json"));
+            }
+        }
+        for (int from = 0; from < products.size(); from += BULK_SIZE) {
+            String ids = products.subList(from, Math.min(from + BULK_SIZE, products.size())).stream()
+                    .map(product -> "\"" + product.id() + "\"")
+                    .collect(Collectors.joining(",", "[", "]"));
+            mix.add(SyntheticTraffic.Request.post("/api/v1/products/bulk", "application/json", ids));
+            mix.add(SyntheticTraffic.Request.post("/api/v1/products/bulk", "application/cbor", ids));
+        }
+        mix.add(SyntheticTraffic.Request.get("/api/v1/products", "application/json"));
+        mix.add(SyntheticTraffic.Request.get("/api/v1/products/" + UUID.randomUUID(), "application/json"));
+        return mix;
+    }
+}
@@ -0,0 +1,285 @@
+package online.threadly.product.bulkupdate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.product.model.BulkUpdateJob;
+import online.threadly.product.model.BulkUpdateJobStatus;
+import online.threadly.product.model.Product;
+import online.threadly.product.repository.BulkUpdateChunkRepository;
+import online.threadly.product.repository.BulkUpdateJobRepository;
+import online.threadly.product.repository.ProductRepository;
+import online.threadly.product.serialization.ProductResponseCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs bulk update jobs on H2 with one worker and one row per chunk. The
+ * set-based statement is mocked, since H2 has no UPDATE ... RETURNING; it
+ * records the products of every chunk it is given and returns them as updated.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:bulk-updates;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "threadly.bulk-updates.parallelism=1",
+        "threadly.catalog.enabled=false",
+        "threadly.warm-up.enabled=false",
+        "eureka.client.enabled=false"
+})
+class BulkUpdateJobRunnerTest {
+
+    @Autowired
+    private BulkUpdateService bulkUpdateService;
+
+    @Autowired
+    private BulkUpdateJobRepository jobRepository;
+
+    @Autowired
+    private BulkUpdateChunkRepository chunkRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductResponseCache productResponseCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private ProductBulkUpdateStatement statement;
+
+    private final List<UUID> applied = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void applyEverything() {
+        reset(statement);
+        when(statement.apply(anyList())).thenAnswer(invocation -> record(invocation.getArgument(0)));
+    }
+
+    @Test
+    void aChunkHittingALockFailureIsRetried() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        when(statement.apply(anyList())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new CannotAcquireLockException("deadlock detected");
+            }
+            return record(invocation.getArgument(0));
+        });
+
+        BulkUpdateJob job = awaitStatus(submit(2), BulkUpdateJobStatus.COMPLETED);
+
+        assertThat(job.getChunksDone()).isEqualTo(2);
+        assertThat(job.getRowsUpdated()).isEqualTo(2);
+        verify(statement, times(4)).apply(anyList());
+    }
+
+    @Test
+    void aChunkFailingEveryAttemptFailsTheJobWhichResumesFromThere() throws InterruptedException {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        when(statement.apply(anyList())).thenAnswer(invocation -> {
+            if (failing.get()) {
+                throw new CannotAcquireLockException("deadlock detected");
+            }
+            return record(invocation.getArgument(0));
+        });
+
+        BulkUpdateJob failed = awaitStatus(submit(2), BulkUpdateJobStatus.FAILED);
+        assertThat(failed.getError()).contains("deadlock detected");
+        assertThat(failed.getChunksDone()).isZero();
+        assertThat(failed.getFinishedAt()).isNotNull();
+        verify(statement, times(3)).apply(anyList());
+
+        failing.set(false);
+        bulkUpdateService.resume(failed.getId());
+
+        assertThat(awaitStatus(failed.getId(), BulkUpdateJobStatus.COMPLETED).getChunksDone()).isEqualTo(2);
+    }
+
+    @Test
+    void knownSlugsAreStoredAsTheirProductIds() throws InterruptedException {
+        UUID productId = insertProduct("polo-tee");
+        String body = "{\"slug\":\"polo-tee\",\"price\":12}\n{\"slug\":\"no-such-product\",\"price\":1}";
+
+        UUID jobId = bulkUpdateService.submit(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 2).getId();
+
+        awaitStatus(jobId, BulkUpdateJobStatus.COMPLETED);
+        verify(statement).apply(List.of(new BulkUpdateRow(productId, null, 12.0, null, null),
+                new BulkUpdateRow(null, "no-such-product", 1.0, null, null)));
+    }
+
+    @Test
+    void cancellingRollsBackTheChunkInFlight() throws InterruptedException {
+        UUID productId = insertProduct("linen-shirt");
+        Blocking blocking = blockOnChunk(1, () -> jdbcTemplate.update("UPDATE products SET price = 99 WHERE id = ?", productId));
+
+        UUID jobId = submit(2);
+        cancelWhileApplying(jobId, blocking);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT price FROM products WHERE id = ?", Double.class, productId)).isEqualTo(10.0);
+        BulkUpdateJob job = bulkUpdateService.getJob(jobId);
+        assertThat(job.getStatus()).isEqualTo(BulkUpdateJobStatus.CANCELLED);
+        assertThat(job.getChunksDone()).isZero();
+        assertThat(pendingChunks(jobId)).isEqualTo(2);
+    }
+
+    @Test
+    void resumingAppliesOnlyTheChunksNotYetCommitted() throws InterruptedException {
+        Blocking blocking = blockOnChunk(2, () -> {
+        });
+        UUID jobId = submit(3);
+        cancelWhileApplying(jobId, blocking);
+        assertThat(bulkUpdateService.getJob(jobId).getChunksDone()).isEqualTo(1);
+        List<UUID> committed = List.copyOf(applied.subList(0, 1));
+
+        bulkUpdateService.resume(jobId);
+
+        BulkUpdateJob job = awaitStatus(jobId, BulkUpdateJobStatus.COMPLETED);
+        assertThat(job.getChunksDone()).isEqualTo(3);
+        assertThat(job.getRowsUpdated()).isEqualTo(3);
+        // the rolled-back chunk is applied again, the committed one is not
+        assertThat(applied).hasSize(4);
+        assertThat(Collections.frequency(applied, committed.get(0))).isEqualTo(1);
+    }
+
+    @Test
+    void chunksStillQueuedAtShutdownLeaveTheJobInterrupted() throws InterruptedException {
+        Blocking blocking = blockOnChunk(1, () -> {
+        });
+        UUID jobId = submit(2);
+        cancelWhileApplying(jobId, blocking);
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> jobRepository.resume(jobId,
+                EnumSet.of(BulkUpdateJobStatus.CANCELLED), BulkUpdateJobStatus.RUNNING, now, now));
+
+        BulkUpdateJobRunner runner = new BulkUpdateJobRunner(jobRepository, chunkRepository, statement, productResponseCache,
+                transactionTemplate, objectMapper, new SimpleMeterRegistry(), 1);
+        Blocking shuttingDown = blockOnChunk(1, () -> {
+        });
+        runner.start(jobId);
+        assertThat(shuttingDown.applying.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread shutdown = Thread.ofPlatform().start(() -> {
+            try {
+                runner.shutdown();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // waiting for the workers means the runner has stopped taking chunks
+        while (shutdown.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        shuttingDown.proceed.countDown();
+        shutdown.join(5000);
+
+        BulkUpdateJob job = bulkUpdateService.getJob(jobId);
+        assertThat(job.getStatus()).isEqualTo(BulkUpdateJobStatus.INTERRUPTED);
+        assertThat(job.getError()).isEqualTo("the instance running the job shut down");
+        assertThat(job.getChunksDone()).isEqualTo(1);
+        assertThat(pendingChunks(jobId)).isEqualTo(1);
+    }
+
+    private UUID submit(int rows) {
+        String body = IntStream.range(0, rows)
+                .mapToObj(row -> "{\"id\":\"" + UUID.randomUUID() + "\",\"price\":" + (row + 1) + "}")
+                .collect(Collectors.joining("\n"));
+        return bulkUpdateService.submit(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 1).getId();
+    }
+
+    private UUID insertProduct(String slug) {
+        Product product = new Product();
+        product.setName(slug);
+        product.setSlug(slug);
+        product.setPrice(10.0);
+        return productRepository.save(product).getId();
+    }
+
+    private List<UUID> record(List<BulkUpdateRow> rows) {
+        // a row still keyed by slug is for a product that does not exist, and matches nothing
+        List<UUID> ids = rows.stream().map(BulkUpdateRow::id).filter(Objects::nonNull).toList();
+        applied.addAll(ids);
+        return ids;
+    }
+
+    // the statement's call number `call` writes through `write`, then waits inside the chunk's transaction
+    private Blocking blockOnChunk(int call, Runnable write) {
+        Blocking blocking = new Blocking();
+        AtomicInteger calls = new AtomicInteger();
+        when(statement.apply(anyList())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == call) {
+                write.run();
+                blocking.applying.countDown();
+                blocking.proceed.await(5, TimeUnit.SECONDS);
+            }
+            return record(invocation.getArgument(0));
+        });
+        return blocking;
+    }
+
+    private void cancelWhileApplying(UUID jobId, Blocking blocking) throws InterruptedException {
+        assertThat(blocking.applying.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bulkUpdateService.cancel(jobId).getStatus()).isEqualTo(BulkUpdateJobStatus.CANCELLED);
+        blocking.proceed.countDown();
+        // the chunk rows stay locked until the worker's transaction has rolled back
+        transactionTemplate.executeWithoutResult(status ->
+                chunkRepository.findPendingIds(jobId).forEach(chunkRepository::findByIdForUpdate));
+    }
+
+    private int pendingChunks(UUID jobId) {
+        return transactionTemplate.execute(status -> chunkRepository.findPendingIds(jobId)).size();
+    }
+
+    private BulkUpdateJob awaitStatus(UUID jobId, BulkUpdateJobStatus status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            BulkUpdateJob job = bulkUpdateService.getJob(jobId);
+            if (job.getStatus() == status || System.nanoTime() > deadline) {
+                assertThat(job.getStatus()).isEqualTo(status);
+                return job;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class Blocking {
+
+        private final CountDownLatch applying = new CountDownLatch(1);
+        private final CountDownLatch proceed = new CountDownLatch(1);
+    }
+}
@@ -0,0 +1,109 @@
+package online.threadly.product.bulkupdate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import online.threadly.product.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkUpdateReaderTest {
+
+    private static final UUID HOODIE = UUID.randomUUID();
+
+    private final List<Integer> lookups = new ArrayList<>();
+    private final BulkUpdateReader reader = new BulkUpdateReader(new ObjectMapper(), 2, slugs -> {
+        lookups.add(slugs.size());
+        return slugs.contains("cotton-hoodie") ? Map.of("cotton-hoodie", HOODIE) : Map.of();
+    });
+
+    @Test
+    void readsAJsonArrayInChunks() throws IOException {
+        UUID id = UUID.randomUUID();
+        List<List<BulkUpdateRow>> chunks = new ArrayList<>();
+
+        long rows = reader.read(body("[{\"id\":\"" + id + "\",\"price\":19.5},"
+                + "{\"slug\":\"polo-tee\",\"stockDelta\":-2},"
+                + "{\"slug\":\"linen-shirt\",\"stock\":40}]"), chunks::add);
+
+        assertThat(rows).isEqualTo(3);
+        assertThat(chunks).containsExactly(
+                List.of(new BulkUpdateRow(id, null, 19.5, null, null), new BulkUpdateRow(null, "polo-tee", null, null, -2)),
+                List.of(new BulkUpdateRow(null, "linen-shirt", null, 40, null)));
+    }
+
+    @Test
+    void readsNewlineDelimitedJson() throws IOException {
+        List<List<BulkUpdateRow>> chunks = new ArrayList<>();
+
+        long rows = reader.read(body("{\"slug\":\"polo-tee\",\"price\":10}\n{\"slug\":\"linen-shirt\",\"price\":12}\n"), chunks::add);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(chunks).hasSize(1);
+        assertThat(chunks.get(0)).extracting(BulkUpdateRow::slug).containsExactly("polo-tee", "linen-shirt");
+    }
+
+    @Test
+    void refusesAProductListedTwice() {
+        assertThatThrownBy(() -> reader.read(body("{\"slug\":\"polo-tee\",\"price\":10}\n{\"slug\":\"polo-tee\",\"stock\":1}"), chunk -> {
+        }))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("row 2: product polo-tee is listed more than once");
+    }
+
+    @Test
+    void knownSlugsAreHandedOnAsIdsAChunkAtATime() throws IOException {
+        List<List<BulkUpdateRow>> chunks = new ArrayList<>();
+
+        reader.read(body("{\"slug\":\"cotton-hoodie\",\"price\":30}\n{\"slug\":\"polo-tee\",\"price\":10}\n"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"price\":12}"), chunks::add);
+
+        assertThat(chunks.get(0)).containsExactly(
+                new BulkUpdateRow(HOODIE, null, 30.0, null, null), new BulkUpdateRow(null, "polo-tee", 10.0, null, null));
+        assertThat(lookups).containsExactly(2);
+    }
+
+    @Test
+    void refusesAProductListedOnceByIdAndOnceBySlug() {
+        assertThatThrownBy(() -> reader.read(body("{\"id\":\"" + HOODIE + "\",\"price\":10}\n{\"slug\":\"cotton-hoodie\",\"stock\":1}"), chunk -> {
+        }))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("row 2: product cotton-hoodie is listed more than once");
+        // and in different chunks
+        assertThatThrownBy(() -> reader.read(body("{\"slug\":\"cotton-hoodie\",\"price\":10}\n{\"slug\":\"polo-tee\",\"price\":1}\n"
+                + "{\"id\":\"" + HOODIE + "\",\"stock\":1}"), chunk -> {
+        }))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("row 3: product " + HOODIE + " is listed more than once");
+    }
+
+    @Test
+    void refusesInvalidRowsWithTheirRowNumber() {
+        assertThatThrownBy(() -> reader.read(body("[{\"slug\":\"polo-tee\",\"price\":10},{\"slug\":\"linen-shirt\"}]"), chunk -> {
+        }))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageStartingWith("row 2: nothing to update");
+        assertThatThrownBy(() -> reader.read(body("{\"id\":\"" + UUID.randomUUID() + "\",\"slug\":\"polo-tee\",\"price\":1}"), chunk -> {
+        }))
+                .hasMessage("row 1: either a product id or a slug is required");
+        assertThatThrownBy(() -> reader.read(body("{\"slug\":\"polo-tee\",\"stock\":1,\"stockDelta\":1}"), chunk -> {
+        }))
+                .hasMessage("row 1: give either stock or stockDelta, not both");
+        assertThatThrownBy(() -> reader.read(body(""), chunk -> {
+        }))
+                .hasMessage("bulk update has no rows");
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
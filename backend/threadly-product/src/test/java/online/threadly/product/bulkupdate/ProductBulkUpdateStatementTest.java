@@ -0,0 +1,109 @@
+package online.threadly.product.bulkupdate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the statement against PostgreSQL, since H2 has no UPDATE ... RETURNING:
+ * set THREADLY_TEST_POSTGRES_URL (with THREADLY_TEST_POSTGRES_USER and
+ * THREADLY_TEST_POSTGRES_PASSWORD if needed) to a database the test may create
+ * a schema in. Each test works in a schema of its own, dropped afterwards.
+ */
+@EnabledIfEnvironmentVariable(named = "THREADLY_TEST_POSTGRES_URL", matches = ".+")
+class ProductBulkUpdateStatementTest {
+
+    private static final LocalDateTime LAST_WEEK = LocalDateTime.now().minusDays(7).truncatedTo(ChronoUnit.SECONDS);
+
+    private final String schema = "bulk_update_" + UUID.randomUUID().toString().replace("-", "");
+    private JdbcTemplate database;
+    private ProductBulkUpdateStatement statement;
+
+    @BeforeEach
+    void createProducts() {
+        String url = System.getenv("THREADLY_TEST_POSTGRES_URL");
+        String user = System.getenv().getOrDefault("THREADLY_TEST_POSTGRES_USER", "postgres");
+        String password = System.getenv().getOrDefault("THREADLY_TEST_POSTGRES_PASSWORD", "");
+        new JdbcTemplate(new DriverManagerDataSource(url, user, password)).execute("CREATE SCHEMA " + schema);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema,
+                user, password);
+        database = new JdbcTemplate(dataSource);
+        database.execute("CREATE TABLE products (id uuid PRIMARY KEY, name varchar(255) NOT NULL, slug varchar(255), "
+                + "price double precision, stock integer, updated_at timestamp(6))");
+        statement = new ProductBulkUpdateStatement(dataSource);
+    }
+
+    @AfterEach
+    void dropProducts() {
+        database.execute("DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    @Test
+    void fieldsLeftOutKeepTheirValues() {
+        UUID tee = insert("polo-tee", 10.0, 5);
+        UUID shirt = insert("linen-shirt", 20.0, 8);
+
+        List<UUID> updated = statement.apply(List.of(
+                new BulkUpdateRow(tee, null, 12.5, null, null),
+                new BulkUpdateRow(null, "linen-shirt", null, 3, null)));
+
+        assertThat(updated).containsExactlyInAnyOrder(tee, shirt);
+        assertThat(product(tee)).containsEntry("price", 12.5).containsEntry("stock", 5);
+        assertThat(product(shirt)).containsEntry("price", 20.0).containsEntry("stock", 3);
+        assertThat((Timestamp) product(tee).get("updated_at")).isAfter(Timestamp.valueOf(LAST_WEEK));
+    }
+
+    @Test
+    void aStockDeltaIsAddedAndCountsMissingStockAsZero() {
+        UUID tee = insert("polo-tee", 10.0, 5);
+        UUID shirt = insert("linen-shirt", 20.0, null);
+
+        List<UUID> updated = statement.apply(List.of(
+                new BulkUpdateRow(tee, null, null, null, -2),
+                new BulkUpdateRow(shirt, null, null, null, 4)));
+
+        assertThat(updated).containsExactlyInAnyOrder(tee, shirt);
+        assertThat(product(tee)).containsEntry("stock", 3);
+        assertThat(product(shirt)).containsEntry("stock", 4);
+    }
+
+    @Test
+    void aDeltaTakingStockBelowZeroAndUnknownProductsAreLeftOut() {
+        UUID tee = insert("polo-tee", 10.0, 5);
+        UUID shirt = insert("linen-shirt", 20.0, 1);
+
+        List<UUID> updated = statement.apply(List.of(
+                new BulkUpdateRow(tee, null, 9.0, null, -6),
+                new BulkUpdateRow(shirt, null, null, null, -1),
+                new BulkUpdateRow(UUID.randomUUID(), null, 1.0, null, null),
+                new BulkUpdateRow(null, "no-such-product", 1.0, null, null)));
+
+        assertThat(updated).containsExactly(shirt);
+        assertThat(product(tee)).containsEntry("price", 10.0).containsEntry("stock", 5)
+                .containsEntry("updated_at", Timestamp.valueOf(LAST_WEEK));
+        assertThat(product(shirt)).containsEntry("stock", 0);
+    }
+
+    private UUID insert(String slug, Double price, Integer stock) {
+        UUID id = UUID.randomUUID();
+        database.update("INSERT INTO products (id, name, slug, price, stock, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                id, slug, slug, price, stock, Timestamp.valueOf(LAST_WEEK));
+        return id;
+    }
+
+    private Map<String, Object> product(UUID id) {
+        return database.queryForMap("SELECT price, stock, updated_at FROM products WHERE id = ?", id);
+    }
+}
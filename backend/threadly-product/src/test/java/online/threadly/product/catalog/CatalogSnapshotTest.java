@@ -0,0 +1,118 @@
+package online.threadly.product.catalog;
+
+import online.threadly.product.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsEveryProductByIdAndSlug() throws IOException {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            products.add(product(UUID.randomUUID(), "tee-" + i));
+        }
+        products.sort(Comparator.comparing(Product::getId, CatalogSnapshotTest::compareUnsigned));
+
+        CatalogSnapshot snapshot = write(products);
+
+        assertThat(snapshot.size()).isEqualTo(1_000);
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            assertThat(snapshot.indexOf(product.getId())).isEqualTo(i);
+            assertThat(snapshot.indexOfSlug(product.getSlug())).isEqualTo(i);
+            assertThat(snapshot.product(i)).isEqualTo(product);
+        }
+        assertThat(snapshot.indexOf(UUID.randomUUID())).isEqualTo(-1);
+        assertThat(snapshot.indexOfSlug("no-such-tee")).isEqualTo(-1);
+    }
+
+    @Test
+    void keepsNullsEmptyArraysAndUnicode() throws IOException {
+        Product bare = new Product();
+        bare.setId(new UUID(1, 1));
+        bare.setName("Kurta — रेशम");
+        Product noImages = product(new UUID(1, 2), "linen-kurta");
+        noImages.setImages(new String[0]);
+
+        CatalogSnapshot snapshot = write(List.of(bare, noImages));
+
+        assertThat(snapshot.product(0)).isEqualTo(bare);
+        assertThat(snapshot.product(1).getImages()).isEmpty();
+        assertThat(snapshot.indexOfSlug("linen-kurta")).isEqualTo(1);
+        assertThat(snapshot.watermark()).isEqualTo(noImages.getUpdatedAt());
+    }
+
+    @Test
+    void refusesProductsOutOfIdOrder() throws IOException {
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(directory.resolve("products.snapshot"))) {
+            // unsigned, as PostgreSQL orders uuids: 0x8... sorts after 0x1...
+            writer.add(product(new UUID(0x8000_0000_0000_0000L, 0), "second"));
+            assertThatThrownBy(() -> writer.add(product(new UUID(0x1000_0000_0000_0000L, 0), "first")))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void refusesACorruptFile() throws IOException {
+        write(List.of(product(new UUID(1, 1), "tee")));
+        try (FileChannel channel = FileChannel.open(directory.resolve("products.snapshot"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), CatalogSnapshot.HEADER_SIZE + 20);
+        }
+
+        assertThatThrownBy(() -> CatalogSnapshot.open(directory.resolve("products.snapshot")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    private CatalogSnapshot write(List<Product> products) throws IOException {
+        Path file = directory.resolve("products.snapshot");
+        try (CatalogSnapshotWriter writer = new CatalogSnapshotWriter(file)) {
+            for (Product product : products) {
+                writer.add(product);
+            }
+            writer.finish();
+        }
+        return CatalogSnapshot.open(file);
+    }
+
+    private static Product product(UUID id, String slug) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Slim Fit Tee " + slug);
+        product.setSlug(slug);
+        product.setBrand("POLO");
+        product.setDescription("Cotton tee");
+        product.setImages(new String[]{"https://cdn.threadly.online/" + slug + "/front.jpg", "https://cdn.threadly.online/" + slug + "/back.jpg"});
+        product.setStock(12);
+        product.setPrice(799.0);
+        product.setRating(4.5);
+        product.setRatingCount(120);
+        product.setIsFeatured(false);
+        product.setCreatedAt(LocalDateTime.of(2026, 1, 2, 3, 4, 5, 678_000));
+        product.setUpdatedAt(LocalDateTime.of(2026, 2, 3, 4, 5, 6, 789_000));
+        return product;
+    }
+
+    private static int compareUnsigned(UUID first, UUID second) {
+        int comparison = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+        return comparison != 0 ? comparison : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+    }
+}
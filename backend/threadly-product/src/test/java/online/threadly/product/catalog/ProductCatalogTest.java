@@ -0,0 +1,115 @@
+package online.threadly.product.catalog;
+
+import online.threadly.product.dao.StockReservationRequest;
+import online.threadly.product.model.Product;
+import online.threadly.product.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * An in-memory H2 database stands in for PostgreSQL. Changes are applied by
+ * calling applyChanges() rather than waiting for the poll.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=" + ProductCatalogTest.URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "threadly.catalog.enabled=true",
+        "threadly.catalog.delta-interval=1h",
+        "threadly.warm-up.enabled=false",
+        "eureka.client.enabled=false"
+})
+class ProductCatalogTest {
+
+    static final String URL = "jdbc:h2:mem:catalog;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final Path SNAPSHOT = temporaryDirectory().resolve("products.snapshot");
+
+    private final JdbcTemplate database = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @Autowired
+    private ProductService productService;
+
+    @DynamicPropertySource
+    static void snapshotPath(DynamicPropertyRegistry registry) {
+        registry.add("threadly.catalog.snapshot-path", SNAPSHOT::toString);
+    }
+
+    @Test
+    void servesOwnWritesAtOnceAndOtherWritesOncePolled() {
+        Product created = productService.createProduct(product("oxford-shirt"));
+        assertThat(productService.getProductBySlug("oxford-shirt").getId()).isEqualTo(created.getId());
+
+        productService.reserveStock(List.of(reservation(created.getId(), 3)));
+        assertThat(productService.getProduct(created.getId()).getStock()).isEqualTo(7);
+
+        // another instance renames and reprices it
+        database.update("UPDATE products SET slug = 'oxford-shirt-blue', price = 999, updated_at = ? WHERE id = ?",
+                LocalDateTime.now().plusSeconds(1), created.getId());
+        assertThat(productService.getProduct(created.getId()).getPrice()).isEqualTo(1299.0);
+
+        productCatalog.applyChanges();
+
+        assertThat(productService.getProduct(created.getId()).getPrice()).isEqualTo(999.0);
+        assertThat(productService.getProductBySlug("oxford-shirt-blue").getId()).isEqualTo(created.getId());
+        assertThat(productCatalog.findBySlug("oxford-shirt")).isEmpty();
+    }
+
+    @Test
+    void aNewSnapshotHoldsTheChangesAndIsServedFromTheFile() throws IOException {
+        Product created = productService.createProduct(product("linen-shirt"));
+        productService.reserveStock(List.of(reservation(created.getId(), 1)));
+
+        productCatalog.rebuild();
+
+        assertThat(Files.size(SNAPSHOT)).isGreaterThan(CatalogSnapshot.HEADER_SIZE);
+        CatalogSnapshot snapshot = CatalogSnapshot.open(SNAPSHOT);
+        int index = snapshot.indexOfSlug("linen-shirt");
+        assertThat(snapshot.product(index).getStock()).isEqualTo(9);
+        assertThat(productService.getProducts()).extracting(Product::getSlug).contains("linen-shirt");
+        assertThat(productService.getProductsByIds(List.of(created.getId(), UUID.randomUUID())))
+                .extracting(Product::getId).containsExactly(created.getId());
+    }
+
+    private static Product product(String slug) {
+        Product product = new Product();
+        product.setName(slug);
+        product.setSlug(slug);
+        product.setBrand("POLO");
+        product.setImages(new String[]{"https://cdn.threadly.online/" + slug + ".jpg"});
+        product.setPrice(1299.0);
+        product.setStock(10);
+        return product;
+    }
+
+    private static StockReservationRequest reservation(UUID productId, int quantity) {
+        return new StockReservationRequest(productId, quantity);
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("catalog-test");
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package online.threadly.product.datasource;
+
+import jakarta.servlet.http.Cookie;
+import online.threadly.product.dao.StockReservationRequest;
+import online.threadly.product.exception.ResourceNotFoundException;
+import online.threadly.product.model.Product;
+import online.threadly.product.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and a replica. Nothing
+ * replicates between them, so which database a read was served from shows in
+ * which rows it can see.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=" + ReadWriteRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "threadly.read-replicas.urls=" + ReadWriteRoutingTest.REPLICA_URL,
+        "threadly.read-replicas.read-your-writes-window=300ms",
+        "threadly.read-replicas.health-check-interval=1h",
+        "threadly.catalog.enabled=false",
+        "eureka.client.enabled=false"
+})
+class ReadWriteRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final JdbcTemplate primaryDatabase = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replicaDatabase = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ReadYourWritesWindow readYourWritesWindow;
+
+    @BeforeEach
+    void copySchemaToReplica() {
+        // the schema is the only thing "replicated": Hibernate creates it on the primary
+        for (String statement : primaryDatabase.queryForList("SCRIPT NODATA", String.class)) {
+            if (statement.startsWith("CREATE") && !statement.startsWith("CREATE USER")) {
+                replicaDatabase.execute(statement.replace("CREATE ", "CREATE IF NOT EXISTS ")
+                        .replace("CREATE IF NOT EXISTS MEMORY TABLE", "CREATE MEMORY TABLE IF NOT EXISTS")
+                        .replace("CREATE IF NOT EXISTS INDEX", "CREATE INDEX IF NOT EXISTS"));
+            }
+        }
+    }
+
+    @AfterEach
+    void leaveRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactionsAreServedByTheReplica() {
+        insert(replicaDatabase, "only-on-the-replica");
+
+        assertThat(productService.getProductBySlug("only-on-the-replica").getName()).isEqualTo("only-on-the-replica");
+    }
+
+    @Test
+    void anAdminsWriteGoesToThePrimaryAndTheirReadsFollowItForAShortWhile() throws InterruptedException {
+        MockHttpServletResponse response = inRequest(new MockHttpServletRequest("POST", "/api/v1/admin/products"));
+        Product product = new Product();
+        product.setName("written-by-an-admin");
+        product.setSlug("written-by-an-admin");
+        product.setPrice(10.0);
+        productService.createProduct(product);
+
+        assertThat(primaryDatabase.queryForObject("select count(*) from products where slug = ?", Integer.class,
+                "written-by-an-admin")).isEqualTo(1);
+        // read-your-writes: served by the primary although the replica has not caught up, in the same request
+        assertThat(productService.getProductBySlug("written-by-an-admin").getId()).isEqualTo(product.getId());
+
+        // and in the admin's next request, which carries the cookie
+        Cookie cookie = response.getCookie(ReadYourWritesWindow.COOKIE);
+        assertThat(cookie).isNotNull();
+        MockHttpServletRequest next = new MockHttpServletRequest("GET", "/api/v1/products/slug/written-by-an-admin");
+        next.setCookies(cookie);
+        inRequest(next);
+        assertThat(productService.getProductBySlug("written-by-an-admin").getId()).isEqualTo(product.getId());
+
+        // but not in anybody else's
+        inRequest(new MockHttpServletRequest("GET", "/api/v1/products/slug/written-by-an-admin"));
+        assertThatThrownBy(() -> productService.getProductBySlug("written-by-an-admin"))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        Thread.sleep(400);
+        inRequest(next);
+        assertThatThrownBy(() -> productService.getProductBySlug("written-by-an-admin"))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void readsStillReachTheReplicaUnderReservationTraffic() {
+        UUID productId = UUID.randomUUID();
+        primaryDatabase.update("insert into products (id, name, slug, price, stock) values (?, ?, ?, ?, ?)",
+                productId, "reserved", "reserved", 10.0, 100);
+        insert(replicaDatabase, "only-on-the-replica-while-checking-out");
+
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletResponse response =
+                    inRequest(new MockHttpServletRequest("POST", "/api/v1/internal/products/reservations"));
+            productService.reserveStock(List.of(new StockReservationRequest(productId, 1)));
+            assertThat(response.getCookie(ReadYourWritesWindow.COOKIE)).isNull();
+
+            inRequest(new MockHttpServletRequest("GET", "/api/v1/products/slug/only-on-the-replica-while-checking-out"));
+            assertThat(productService.getProductBySlug("only-on-the-replica-while-checking-out").getName())
+                    .isEqualTo("only-on-the-replica-while-checking-out");
+        }
+        assertThat(primaryDatabase.queryForObject("select stock from products where id = ?", Integer.class, productId))
+                .isEqualTo(95);
+    }
+
+    @Test
+    void aCookieReachingBeyondOneWindowIsIgnored() {
+        insert(replicaDatabase, "only-on-the-replica-despite-the-cookie");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/products");
+        request.setCookies(new Cookie(ReadYourWritesWindow.COOKIE, Long.toString(Long.MAX_VALUE)));
+        inRequest(request);
+
+        assertThat(readYourWritesWindow.isOpen()).isFalse();
+        assertThat(productService.getProductBySlug("only-on-the-replica-despite-the-cookie").getName())
+                .isEqualTo("only-on-the-replica-despite-the-cookie");
+    }
+
+    @Test
+    @DirtiesContext
+    void readsFallBackToThePrimaryWhenTheReplicaIsDown() throws SQLException {
+        insert(primaryDatabase, "only-on-the-primary");
+        assertThatThrownBy(() -> productService.getProductBySlug("only-on-the-primary"))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        ReadReplicaDataSource replicas = dataSource.unwrap(ReadWriteRoutingDataSource.class).getReplicas();
+        replicas.replicaPools().get(0).close();
+
+        // the failed connection attempt marks the replica down and the same read is retried on the primary
+        assertThat(productService.getProductBySlug("only-on-the-primary").getName()).isEqualTo("only-on-the-primary");
+        replicas.checkHealth();
+        assertThat(productService.getProductBySlug("only-on-the-primary").getName()).isEqualTo("only-on-the-primary");
+    }
+
+    private static MockHttpServletResponse inRequest(MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    private static void insert(JdbcTemplate database, String slug) {
+        database.update("insert into products (id, name, slug, price, stock) values (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), slug, slug, 10.0, 5);
+    }
+}
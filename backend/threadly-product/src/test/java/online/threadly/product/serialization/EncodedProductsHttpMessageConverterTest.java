@@ -0,0 +1,81 @@
+package online.threadly.product.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import online.threadly.product.dao.Response;
+import online.threadly.product.model.Product;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The assembled bodies must be exactly what Jackson writes for the same
+ * dao.Response or product list, in both encodings.
+ */
+class EncodedProductsHttpMessageConverterTest {
+
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    private final ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+    private final ProductEncoding encoding = new ProductEncoding(jsonMapper, cborMapper);
+    private final EncodedProductsHttpMessageConverter converter = new EncodedProductsHttpMessageConverter(encoding);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"application/json", "application/cbor"})
+    void wrappedProductMatchesJackson(String mediaType) throws IOException {
+        Product product = products(1).get(0);
+
+        byte[] written = write(EncodedProducts.wrapped("product fetched successfully", encoding.encode(product)), mediaType);
+
+        assertThat(written).isEqualTo(mapper(mediaType).writeValueAsBytes(new Response("product fetched successfully", product)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 23, 24, 300})
+    void productArraysMatchJackson(int count) throws IOException {
+        List<Product> products = products(count);
+        List<EncodedProduct> encoded = products.stream().map(encoding::encode).toList();
+
+        for (String mediaType : List.of("application/json", "application/cbor")) {
+            byte[] written = write(EncodedProducts.array(encoded), mediaType);
+            assertThat(written).as(mediaType).isEqualTo(mapper(mediaType).writeValueAsBytes(products));
+        }
+    }
+
+    private byte[] write(EncodedProducts body, String mediaType) throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(body, MediaType.valueOf(mediaType), message);
+        assertThat(message.getHeaders().getContentLength()).isEqualTo(message.getBodyAsBytes().length);
+        return message.getBodyAsBytes();
+    }
+
+    private ObjectMapper mapper(String mediaType) {
+        return CBOR.isCompatibleWith(MediaType.valueOf(mediaType)) ? cborMapper : jsonMapper;
+    }
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setId(UUID.randomUUID());
+            product.setName("Men Slim Fit Shirt \"" + i + "\" – blue");
+            product.setSlug("men-slim-fit-shirt-" + i);
+            product.setImages(new String[]{"https://cdn.threadly.online/" + i + ".jpg"});
+            product.setPrice(1499.0 + i);
+            product.setStock(i);
+            product.setCreatedAt(LocalDateTime.of(2026, 1, 1, 12, 0));
+            products.add(product);
+        }
+        return products;
+    }
+}
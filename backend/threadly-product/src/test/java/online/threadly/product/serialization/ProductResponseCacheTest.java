@@ -0,0 +1,104 @@
+package online.threadly.product.serialization;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import online.threadly.product.model.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductResponseCacheTest {
+
+    private final ProductEncoding encoding = new ProductEncoding(Jackson2ObjectMapperBuilder.json().build(),
+            Jackson2ObjectMapperBuilder.cbor().build());
+    private final Map<UUID, Product> database = new HashMap<>();
+    private final List<UUID> loaded = new ArrayList<>();
+
+    @Test
+    void servesRepeatedRequestsFromMemoryUntilInvalidated() {
+        ProductResponseCache cache = cache(Duration.ofMinutes(1));
+        Product product = product("tee", 10);
+
+        EncodedProduct first = cache.byId(product.getId(), this::load);
+        assertThat(cache.byId(product.getId(), this::load)).isSameAs(first);
+        assertThat(cache.bySlug("tee", slug -> load(product.getId()))).isSameAs(first);
+        assertThat(loaded).hasSize(1);
+
+        product.setStock(9);
+        cache.invalidate(List.of(product.getId()));
+
+        assertThat(new String(cache.byId(product.getId(), this::load).json())).contains("\"stock\":9");
+        assertThat(loaded).hasSize(2);
+    }
+
+    @Test
+    void entriesExpireAfterMaxAge() throws InterruptedException {
+        ProductResponseCache cache = cache(Duration.ofMillis(20));
+        Product product = product("tee", 10);
+
+        cache.byId(product.getId(), this::load);
+        Thread.sleep(30);
+        cache.byId(product.getId(), this::load);
+
+        assertThat(loaded).hasSize(2);
+    }
+
+    @Test
+    void aLoadOverlappingAnInvalidationIsNotCached() {
+        ProductResponseCache cache = cache(Duration.ofMinutes(1));
+        Product product = product("tee", 10);
+
+        cache.byId(product.getId(), id -> {
+            Product stale = load(id);
+            cache.invalidate(List.of(id));
+            return stale;
+        });
+        cache.byId(product.getId(), this::load);
+
+        assertThat(loaded).hasSize(2);
+    }
+
+    @Test
+    void bulkLoadsOnlyMissingProductsAndKeepsRequestOrder() {
+        ProductResponseCache cache = cache(Duration.ofMinutes(1));
+        Product a = product("a", 1);
+        Product b = product("b", 2);
+        Product c = product("c", 3);
+        cache.byId(b.getId(), this::load);
+        loaded.clear();
+
+        List<EncodedProduct> products = cache.byIds(List.of(c.getId(), b.getId(), UUID.randomUUID(), a.getId(), c.getId()),
+                ids -> ids.stream().map(database::get).filter(Objects::nonNull).peek(p -> loaded.add(p.getId())).toList());
+
+        assertThat(products).extracting(EncodedProduct::id).containsExactly(c.getId(), b.getId(), a.getId());
+        assertThat(loaded).containsExactlyInAnyOrder(c.getId(), a.getId());
+    }
+
+    private ProductResponseCache cache(Duration maxAge) {
+        return new ProductResponseCache(encoding, new SimpleMeterRegistry(), 100, maxAge);
+    }
+
+    private Product product(String slug, int stock) {
+        Product product = new Product();
+        product.setId(UUID.randomUUID());
+        product.setName(slug);
+        product.setSlug(slug);
+        product.setPrice(10.0);
+        product.setStock(stock);
+        database.put(product.getId(), product);
+        return product;
+    }
+
+    private Product load(UUID id) {
+        loaded.add(id);
+        return database.get(id);
+    }
+}
@@ -27,6 +27,8 @@ public class SecurityConfig {
             auth ->
                 auth.requestMatchers("/health")
                     .permitAll() // allow without authentication
+                    .requestMatchers("/actuator/health/**", "/actuator/sqlstats")
+                    .permitAll() // the gateway does not route /actuator, internal network only
                     .requestMatchers("/api/v1/auth/**")
                     .permitAll() // 👈 signup, login allowed
                     .requestMatchers("/api/v1/users/**")